@@ -0,0 +1,492 @@
+package coza.trojanc.receipt.format;
+
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.DisplayWidth;
+import coza.trojanc.receipt.shared.LineBreaker;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An abstract implementation of a builder of printer commands. The builder tracks the alignment, print mode, code
+ * page and barcode height the printer is in, and only sends a command when it changes one of them. The commands
+ * themselves come from the {@link CommandSet} of the printer dialect.
+ * <p>
+ * Lines composed in the char buffer keep the print mode of every column. Double width is not applied to composed
+ * lines, as the text would no longer fit the columns it was laid out in.
+ *
+ * @author Charl Thiem
+ */
+public abstract class AbstractCommandFormatBuilder extends AbstractPlainTextFormatBuilder {
+
+	/**
+	 * Most bytes of data of a QR code
+	 */
+	private static final int MAX_QR_CODE_DATA = 7089;
+
+	/**
+	 * Commands of the printer dialect
+	 */
+	protected final CommandSet commands;
+
+	/** Alignment printer is currently in */
+	protected Align current_alignment = Align.LEFT;
+	/** Print mode printer is currently in */
+	protected int current_mode = CommandSet.DEFAULT_MODE;
+	/** Code page printer is currently in, <code>null</code> if it is not known */
+	protected CodePage current_code_page;
+	/** Height of barcodes printer is currently set to */
+	protected int current_barcode_height = CommandSet.UNKNOWN_HEIGHT;
+
+	/** Print mode of every column in the char buffer */
+	protected int[] column_modes;
+
+	/** Bytes to send to the printer */
+	protected ByteArrayBuilder bytes;
+
+	/** Code pages the printer supports, in order of preference */
+	private final CodePage[] codePages;
+
+	/** Number of dots the printer prints on a line */
+	private int dotsPerLine;
+
+	/** Density raster images are printed at, as defined by the command set */
+	protected int rasterDensity;
+
+	/** Cache of the commands of raster images */
+	private RasterCache rasterCache;
+
+	/** Cache of the commands of raster images the builder was created with */
+	private final RasterCache defaultRasterCache;
+
+	/**
+	 * Creates a new instance of a <code>AbstractCommandFormatBuilder</code>. Images are scaled to 12 dots, the width
+	 * of the usual font, for every character of the line.
+	 *
+	 * @param line_width the line width
+	 * @param commands the commands of the printer dialect
+	 * @param rasterCache the cache of the commands of raster images, must only be shared by builders of the same dialect
+	 * @param codePages the code pages the printer supports, in order of preference
+	 */
+	protected AbstractCommandFormatBuilder(final int line_width, final CommandSet commands, final RasterCache rasterCache, final CodePage... codePages){
+		super(line_width);
+		if (codePages.length == 0){
+			throw new IllegalArgumentException("At least one code page is required");
+		}
+		for (CodePage codePage : codePages){
+			if (!commands.supports(codePage)){
+				throw new IllegalArgumentException("Printer can not select code page " + codePage);
+			}
+		}
+		this.commands = commands;
+		this.codePages = codePages.clone();
+		this.rasterCache = rasterCache;
+		this.defaultRasterCache = rasterCache;
+		this.dotsPerLine = line_width * 12;
+		// The super constructor initialized the builder before the commands were known
+		this.commands.initialize(this.bytes);
+		this.current_code_page = commands.getInitialCodePage();
+	}
+
+	@Override
+	public PrintFormatBuilder initialize(){
+		super.initialize();
+		// Called from the super constructor, before the fields are initialised
+		if (this.bytes == null){
+			this.bytes = new ByteArrayBuilder();
+		}
+		if (this.commands != null){
+			this.commands.initialize(this.bytes);
+			this.current_code_page = this.commands.getInitialCodePage();
+		}
+		this.current_alignment = Align.LEFT;
+		this.current_mode = CommandSet.DEFAULT_MODE;
+		this.current_barcode_height = CommandSet.UNKNOWN_HEIGHT;
+		return this;
+	}
+
+	/**
+	 * Clears the bytes, and restores the dots per line, raster density and raster cache the builder was created
+	 * with, so a reused builder prints images like a new one.
+	 */
+	@Override
+	public PrintFormatBuilder reset(){
+		this.bytes.setLength(0);
+		this.dotsPerLine = this.lineWidth * 12;
+		this.rasterDensity = 0;
+		this.rasterCache = this.defaultRasterCache;
+		return super.reset();
+	}
+
+	/**
+	 * Makes room in the bytes for the lines expected, the text is printed from the bytes and not the output.
+	 */
+	@Override
+	public PrintFormatBuilder expectLines(final int lines){
+		this.bytes.ensureCapacity(Math.max(lines, 0) * (this.lineWidth + 1));
+		return this;
+	}
+
+	/**
+	 * Gets the bytes to send to the printer. When paginating, the remaining bytes are flushed to the page
+	 * consumer and an empty array is returned.
+	 *
+	 * @return the bytes
+	 */
+	@Override
+	public Object getFormat(){
+		super.getFormat();
+		return this.toByteArray();
+	}
+
+	/**
+	 * Copies the bytes to send to the printer. Implementations override this to rewrite the bytes.
+	 *
+	 * @return the bytes
+	 */
+	protected byte[] toByteArray(){
+		return this.bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the bytes to send to the printer to a stream, without copying them.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		this.completeCharBuffer();
+		this.bytes.writeTo(out);
+	}
+
+	@Override
+	protected int getOutputLength(){
+		return this.bytes.length();
+	}
+
+	@Override
+	protected void writePage(final PageConsumer consumer) throws IOException {
+		consumer.accept(this.bytes.array(), 0, this.bytes.length());
+		this.bytes.setLength(0);
+	}
+
+	/**
+	 * Sets the number of dots the printer prints on a line, images are scaled down to fit it.
+	 *
+	 * @param dotsPerLine the number of dots
+	 */
+	public void setDotsPerLine(final int dotsPerLine){
+		if (dotsPerLine < 1){
+			throw new IllegalArgumentException("A line must have at least 1 dot");
+		}
+		this.dotsPerLine = dotsPerLine;
+	}
+
+	public int getDotsPerLine(){
+		return this.dotsPerLine;
+	}
+
+	/**
+	 * Sets the cache of the commands of raster images, builders of a dialect share a cache by default.
+	 *
+	 * @param rasterCache the cache
+	 */
+	public void setRasterCache(final RasterCache rasterCache){
+		this.rasterCache = rasterCache;
+	}
+
+	public RasterCache getRasterCache(){
+		return this.rasterCache;
+	}
+
+	/**
+	 * Prints an image. The image is decoded, scaled to the dots of the line, dithered and encoded once per width
+	 * and density, later prints copy the cached commands. A line composed in the char buffer is ended first, as
+	 * printers ignore images while they have text to print.
+	 */
+	@Override
+	public PrintFormatBuilder image(final byte[] image, final Align align){
+		return this.image(image, RasterCache.hash(image), align);
+	}
+
+	@Override
+	public PrintFormatBuilder image(final byte[] image, final long imageHash, final Align align){
+		this.endLine();
+		this.setAlignment(align);
+		final byte[] raster = this.rasterCache.get(image, imageHash, this.dotsPerLine, this.rasterDensity,
+				this.commands::raster);
+		this.bytes.append(raster, 0, raster.length);
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder cut(final CutMode mode){
+		this.endLine();
+		this.commands.cut(this.bytes, mode);
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder openDrawer(final int pin){
+		if (pin != 0 && pin != 1){
+			throw new IllegalArgumentException("Drawer pin must be 0 or 1");
+		}
+		this.commands.openDrawer(this.bytes, pin);
+		return this;
+	}
+
+	/**
+	 * Prints a barcode, the printer renders it and prints its data below it. Empty data prints nothing.
+	 */
+	@Override
+	public PrintFormatBuilder barcode(final BarcodeType type, final String data, final int height, final Align align){
+		if (data == null || data.isEmpty()){
+			return this;
+		}
+		for (int i = 0; i < data.length(); i++){
+			if (data.charAt(i) < 0x20 || data.charAt(i) > 0x7E){
+				throw new IllegalArgumentException("Barcode data must be printable ASCII");
+			}
+		}
+		final String barcodeData = this.commands.barcodeData(type, data);
+		this.endLine();
+		this.setAlignment(align);
+		final int barHeight = Math.max(1, Math.min(height, 255));
+		if (this.current_barcode_height != barHeight){
+			this.commands.barcodeHeight(this.bytes, this.current_barcode_height, barHeight);
+			this.current_barcode_height = barHeight;
+		}
+		this.commands.barcode(this.bytes, type, barcodeData, barHeight);
+		return this;
+	}
+
+	/**
+	 * Prints a QR code, the printer renders it. The data is encoded in UTF-8. Empty data prints nothing.
+	 */
+	@Override
+	public PrintFormatBuilder qrCode(final String data, final int moduleSize, final QrErrorCorrection errorCorrection, final Align align){
+		if (data == null || data.isEmpty()){
+			return this;
+		}
+		final byte[] qrData = data.getBytes(StandardCharsets.UTF_8);
+		if (qrData.length > MAX_QR_CODE_DATA){
+			throw new IllegalArgumentException("QR code data is longer than " + MAX_QR_CODE_DATA + " bytes");
+		}
+		this.endLine();
+		this.setAlignment(align);
+		this.commands.qrCode(this.bytes, qrData, moduleSize, errorCorrection == null ? QrErrorCorrection.M : errorCorrection);
+		return this;
+	}
+
+	/**
+	 * Ends a line composed in the char buffer, before something printed on a line of its own.
+	 */
+	private void endLine(){
+		if (this.lineBufferInUse){
+			this.nl();
+		}
+	}
+
+	@Override
+	protected void resetCharBuffer(){
+		super.resetCharBuffer();
+		// Called from the super constructor, before the fields are initialised
+		if (this.column_modes == null){
+			this.column_modes = new int[this.lineWidth];
+		}
+		Arrays.fill(this.column_modes, CommandSet.DEFAULT_MODE);
+	}
+
+	/**
+	 * Underlined and double height spaces are printed, so they are not trimmed.
+	 */
+	@Override
+	protected int getTrimmedEnd(){
+		int end = this.lineWidth;
+		while (end > 0 && this.charBuffer[end - 1] == ' '
+				&& (this.column_modes[end - 1] & (CommandSet.UNDERLINE | CommandSet.DOUBLE_HEIGHT)) == 0){
+			end--;
+		}
+		return end;
+	}
+
+	@Override
+	public PrintFormatBuilder left(final String text){
+		this.completeCharBuffer();
+		this.setAlignment(Align.LEFT);
+		this.printTextAsLines(text);
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder center(final String text){
+		this.completeCharBuffer();
+		this.setAlignment(Align.CENTER);
+		this.printTextAsLines(text);
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder right(final String text){
+		this.completeCharBuffer();
+		this.setAlignment(Align.RIGHT);
+		this.printTextAsLines(text);
+		return this;
+	}
+
+	@Override
+	protected void appendNewLine(){
+		this.commands.newLine(this.bytes);
+	}
+
+	/**
+	 * Appends a line composed in the char buffer, printed left aligned with the mode of every column. The mode
+	 * is only changed when it makes a difference, spaces keep the current mode unless the underline differs.
+	 * The filler after a wide char is printed as a space, as code pages print a wide char in one column.
+	 */
+	@Override
+	protected void appendText(final char[] text, final int from, final int to){
+		this.setAlignment(Align.LEFT);
+		for (int i = from ; i < to; i++){
+			final char c = text[i];
+			final int target = this.column_modes[i];
+			if (target != this.current_mode
+					&& !(c == ' ' && ((target ^ this.current_mode) & CommandSet.UNDERLINE) == 0)){
+				this.changeMode(target);
+			}
+			this.appendChar(c == DisplayWidth.FILLER ? ' ' : c);
+		}
+	}
+
+	@Override
+	protected void appendText(final CharSequence text, final int from, final int to){
+		for (int i = from ; i < to; i++){
+			final char c = text.charAt(i);
+			this.appendChar(c == DisplayWidth.FILLER ? ' ' : c);
+		}
+	}
+
+	/**
+	 * Encodes a char into the current code page, selecting the first supported code page that has the char
+	 * when the current one does not. Chars no code page has are printed as '?'.
+	 *
+	 * @param c the char
+	 */
+	private void appendChar(final char c){
+		// All code pages share ASCII, even when the current one is not known
+		int b = c < 0x80 ? c : (this.current_code_page != null ? this.current_code_page.encode(c) : -1);
+		if (b < 0){
+			for (CodePage codePage : this.codePages){
+				b = codePage.encode(c);
+				if (b >= 0){
+					this.setCodePage(codePage);
+					break;
+				}
+			}
+			if (b < 0){
+				b = '?';
+			}
+		}
+		this.bytes.append(b);
+	}
+
+	/**
+	 * Marks columns of the char buffer with the current mode, without double width.
+	 */
+	@Override
+	protected void markColumns(final int start, final int end){
+		final int columnMode = modeOf(this.mode) & ~CommandSet.DOUBLE_WIDTH;
+		for (int i = Math.max(start, 0) ; i < Math.min(end, this.lineWidth); i++){
+			this.column_modes[i] = columnMode;
+		}
+	}
+
+	/**
+	 * Splits the text specified into multiple lines, printed in the current mode. Like the other builders, the
+	 * last line is left open for the caller to end.
+	 */
+	private void printTextAsLines(String text){
+		text = super.fixCharacters(text);
+		final int textMode = modeOf(this.mode);
+		final boolean double_width = (textMode & CommandSet.DOUBLE_WIDTH) != 0;
+		final LineBreaker lines = super.breakLines(text, 0, text.length(), (double_width ? Math.max(lineWidth/2, 1) : lineWidth));
+		boolean first = true;
+		while (lines.next()){
+			if (!first){
+				this.nl();
+			}
+			first = false;
+			this.changeMode(textMode);
+			this.appendText(text, lines.getLineStart(), lines.getLineEnd());
+		}
+	}
+
+	/**
+	 * Gets the {@link CommandSet} mode bits of a mode
+	 *
+	 * @param mode the mode
+	 * @return the mode bits
+	 */
+	protected static int modeOf(final Mode mode){
+		int printMode = CommandSet.DEFAULT_MODE;
+		if (mode.isBold()){
+			printMode |= CommandSet.BOLD;
+		}
+		if (mode.isDoubleHeight()){
+			printMode |= CommandSet.DOUBLE_HEIGHT;
+		}
+		if (mode.isDoubleWidth()){
+			printMode |= CommandSet.DOUBLE_WIDTH;
+		}
+		if (mode.isUnderline()){
+			printMode |= CommandSet.UNDERLINE;
+		}
+		return printMode;
+	}
+
+	/**
+	 * Changes the alignment of printing, <code>null</code> centers.
+	 *
+	 * @param alignment the new alignment
+	 */
+	protected void setAlignment(final Align alignment){
+		final Align target = alignment == null ? Align.CENTER : alignment;
+		/* Only change the alignment if it REALY changed */
+		if (this.current_alignment != target){
+			this.current_alignment = target;
+			this.commands.alignment(this.bytes, target);
+		}
+	}
+
+	/**
+	 * Changes the printing mode of the printer
+	 *
+	 * @param mode the {@link CommandSet} mode bits
+	 */
+	protected void changeMode(final int mode){
+		// Only change the mode if it REALY changed
+		if (this.current_mode != mode){
+			this.commands.mode(this.bytes, this.current_mode, mode);
+			this.current_mode = mode;
+		}
+	}
+
+	/**
+	 * Changes the code page of the printer
+	 *
+	 * @param codePage The new code page.
+	 */
+	protected void setCodePage(final CodePage codePage){
+		// Only change the code page if it REALY changed
+		if (this.current_code_page != codePage){
+			this.current_code_page = codePage;
+			this.commands.codePage(this.bytes, codePage);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package coza.trojanc.receipt.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A {@link PageConsumer} that encodes pages through one reusable byte buffer, so writing a page does not
+ * allocate a byte array of the page size.
+ *
+ * @author Charl Thiem
+ */
+public abstract class AbstractEncodingPageConsumer implements PageConsumer {
+
+	/**
+	 * Default size of the buffer used to encode pages
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	/**
+	 * Encoder used to encode pages
+	 */
+	private final CharsetEncoder encoder;
+
+	/**
+	 * Buffer pages are encoded into before being written
+	 */
+	protected final ByteBuffer buffer;
+
+	/**
+	 * Creates a new instance of a <code>AbstractEncodingPageConsumer</code>.
+	 *
+	 * @param charset Charset to encode pages with
+	 * @param bufferSize Size of the buffer pages are encoded into
+	 */
+	protected AbstractEncodingPageConsumer(Charset charset, int bufferSize){
+		this.encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.buffer = ByteBuffer.allocate(bufferSize);
+	}
+
+	@Override
+	public void accept(CharSequence page) throws IOException {
+		final CharBuffer chars = CharBuffer.wrap(page);
+		encoder.reset();
+		CoderResult result;
+		do {
+			result = encoder.encode(chars, buffer, true);
+			if(result.isOverflow()){
+				flushBuffer();
+			}
+		} while(result.isOverflow());
+		while(encoder.flush(buffer).isOverflow()){
+			flushBuffer();
+		}
+		flushBuffer();
+		endPage();
+	}
+
+	@Override
+	public void accept(byte[] page, int offset, int length) throws IOException {
+		int written = 0;
+		while(written < length){
+			final int count = Math.min(buffer.remaining(), length - written);
+			buffer.put(page, offset + written, count);
+			written += count;
+			flushBuffer();
+		}
+		endPage();
+	}
+
+	/**
+	 * Writes the bytes in the buffer and clears the buffer.
+	 */
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		if(buffer.hasRemaining()){
+			write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Writes all remaining bytes of the buffer.
+	 *
+	 * @param bytes the buffer, positioned at the first byte to write
+	 * @throws IOException if the bytes could not be written
+	 */
+	protected abstract void write(ByteBuffer bytes) throws IOException;
+
+	/**
+	 * Called once all bytes of a page have been written.
+	 *
+	 * @throws IOException if the page could not be completed
+	 */
+	protected void endPage() throws IOException {
+	}
+}
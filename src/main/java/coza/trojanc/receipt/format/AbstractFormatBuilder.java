@@ -1,6 +1,10 @@
 package coza.trojanc.receipt.format;
 
 import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
 
 /**
  * @author Charl Thiem
@@ -14,6 +18,9 @@ public abstract class AbstractFormatBuilder implements PrintFormatBuilder {
 	/** Width of a line */
 	protected final int lineWidth;
 
+	/** Mode of the text inserted next */
+	protected Mode mode = Mode.NORMAL;
+
 	/**
 	 * Creates a new instance of a <code>AbstractFormatBuilder</code> setting
 	 * the line width.
@@ -31,6 +38,58 @@ public abstract class AbstractFormatBuilder implements PrintFormatBuilder {
 	}
 
 
+	@Override
+	public PrintFormatBuilder mode(Mode mode) {
+		this.mode = mode == null ? Mode.NORMAL : mode;
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder expectLines(int lines) {
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder image(byte[] image, Align align) {
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder cut(CutMode mode) {
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder openDrawer(int pin) {
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder barcode(BarcodeType type, String data, int height, Align align) {
+		return printCodeData(data, align);
+	}
+
+	@Override
+	public PrintFormatBuilder qrCode(String data, int moduleSize, QrErrorCorrection errorCorrection, Align align) {
+		return printCodeData(data, align);
+	}
+
+	/**
+	 * Prints the data of a code as text on its own lines, for builders that cannot print the code. A line in
+	 * progress is completed first.
+	 */
+	protected PrintFormatBuilder printCodeData(String data, Align align) {
+		if (this.lineBufferInUse) {
+			this.nl();
+		}
+		final Mode textMode = this.mode;
+		this.mode(Mode.NORMAL);
+		this.insertText(data == null ? "" : data, null, align);
+		this.nl();
+		this.mode(textMode);
+		return this;
+	}
+
 	@Override
 	public PrintFormatBuilder insertText(String text, Integer offset, Align align) {
 		if(align == Align.LEFT){
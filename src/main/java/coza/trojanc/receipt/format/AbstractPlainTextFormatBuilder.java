@@ -1,8 +1,21 @@
 package coza.trojanc.receipt.format;
 
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BreakPositionSource;
+import coza.trojanc.receipt.shared.CharacterSanitizer;
+import coza.trojanc.receipt.shared.DisplayWidth;
+import coza.trojanc.receipt.shared.LineBreaker;
 import coza.trojanc.receipt.shared.LineWrap;
+import coza.trojanc.receipt.shared.Mode;
 import coza.trojanc.receipt.shared.PrintStringUtil;
-
+import coza.trojanc.receipt.shared.TableColumn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,6 +27,11 @@ import java.util.regex.Pattern;
  */
 public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuilder {
 
+	/**
+	 * Char filling a cell of a column that does not wrap when the cell is longer than the column
+	 */
+	public static final char OVERFLOW_CHAR = '#';
+
 	/**
 	 * Builder used to create the text to display/print
 	 */
@@ -37,6 +55,72 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 	 */
 	protected final char invalidCharReplacement;
 
+	/**
+	 * Lookup table replacing invalid chars, <code>null</code> when there are none or the pattern could not be expanded
+	 */
+	protected final CharacterSanitizer sanitizer;
+
+	/**
+	 * Consumer receiving the pages of output, <code>null</code> when not paginating
+	 */
+	private PageConsumer pageConsumer;
+
+	/**
+	 * Number of lines after which a page is flushed, 0 when pages are not limited by lines
+	 */
+	private int pageLines;
+
+	/**
+	 * Number of chars after which a page is flushed, 0 when pages are not limited by size
+	 */
+	private int pageChars;
+
+	/**
+	 * Number of lines completed since the last page was flushed
+	 */
+	protected int pageLineCount;
+
+	/**
+	 * Source of precomputed break positions consulted before wrapping, <code>null</code> to always find them
+	 */
+	private BreakPositionSource breakPositionSource;
+
+	/**
+	 * Cache of the lines whole texts are wrapped into, <code>null</code> to wrap every text
+	 */
+	private WrapCache wrapCache;
+
+	/**
+	 * Breaker reused to wrap texts into the char buffer
+	 */
+	private final LineBreaker lineBreaker = new LineBreaker();
+
+	/**
+	 * Breakers wrapping the cells of a table row, one per column
+	 */
+	private LineBreaker[] cellBreakers = new LineBreaker[0];
+
+	/**
+	 * First column and width of every column of the table row being laid out
+	 */
+	private int[] cellStarts = new int[0];
+	private int[] cellWidths = new int[0];
+
+	/**
+	 * If the breaker of every column of the table row being laid out is on a line still to be printed
+	 */
+	private boolean[] cellPending = new boolean[0];
+
+	/**
+	 * If the trailing spaces of lines composed in the char buffer are left out of the output
+	 */
+	protected boolean trimTrailingSpaces;
+
+	/**
+	 * If text of chars not taking one column each was inserted into the char buffer, which may then hold
+	 * {@link DisplayWidth#FILLER} chars
+	 */
+	protected boolean wideColumns;
 
 	/**
 	 * Creates a new instance of a <code>AbstractThinClientPrintBuilder</code> setting
@@ -45,7 +129,7 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 	 * @param line_width The number of characters that can be displayed on a line
 	 */
 	protected AbstractPlainTextFormatBuilder(final int line_width){
-		this(line_width, null, ' ');
+		this(line_width, (Pattern) null, ' ');
 	}
 
 	/**
@@ -57,22 +141,108 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 	 * @param invalidCharReplacement The character that should be used to replace the invalid character
 	 */
 	protected AbstractPlainTextFormatBuilder(final int line_width, final String invalidCharsRegex, final char invalidCharReplacement){
+		this(line_width, invalidCharsRegex == null ? null : Pattern.compile(invalidCharsRegex), invalidCharReplacement);
+	}
+
+	/**
+	 * Creates a new instance of a <code>AbstractThinClientPrintBuilder</code> setting
+	 * the line width.
+	 *
+	 * @param line_width The number of characters that can be displayed on a line
+	 * @param invalidCharsPattern Compiled pattern of invalid characters
+	 * @param invalidCharReplacement The character that should be used to replace the invalid character
+	 */
+	protected AbstractPlainTextFormatBuilder(final int line_width, final Pattern invalidCharsPattern, final char invalidCharReplacement){
+		this(line_width, invalidCharsPattern, invalidCharReplacement,
+				invalidCharsPattern == null ? null : CharacterSanitizer.fromPattern(invalidCharsPattern, invalidCharReplacement));
+	}
+
+	/**
+	 * Creates a new instance of a <code>AbstractThinClientPrintBuilder</code> setting
+	 * the line width.
+	 *
+	 * @param line_width The number of characters that can be displayed on a line
+	 * @param sanitizer Sanitizer replacing invalid characters
+	 */
+	protected AbstractPlainTextFormatBuilder(final int line_width, final CharacterSanitizer sanitizer){
+		this(line_width, null, sanitizer == null ? ' ' : sanitizer.getReplacement(), sanitizer);
+	}
+
+	/**
+	 * Creates a new instance of a <code>AbstractThinClientPrintBuilder</code> setting
+	 * the line width.
+	 *
+	 * @param line_width The number of characters that can be displayed on a line
+	 * @param invalidCharsPattern Compiled pattern of invalid characters, used when there is no sanitizer
+	 * @param invalidCharReplacement The character that should be used to replace the invalid character
+	 * @param sanitizer Sanitizer replacing invalid characters
+	 */
+	protected AbstractPlainTextFormatBuilder(final int line_width, final Pattern invalidCharsPattern, final char invalidCharReplacement, final CharacterSanitizer sanitizer){
 		super(line_width);
 		this.defaultCharBuffer = PrintStringUtil.getLineBuffer(line_width);
 		this.builder = new StringBuilder();
 		this.charBuffer = new char[this.lineWidth];
-		if (invalidCharsRegex != null){
-			this.invalidCharsPattern = Pattern.compile(invalidCharsRegex);
-		}
-		else {
-			this.invalidCharsPattern = null;
-		}
+		this.invalidCharsPattern = invalidCharsPattern;
 		this.invalidCharReplacement = invalidCharReplacement;
+		this.sanitizer = sanitizer;
 		initialize();
 	}
 
 	/**
-	 * Checks a String and removes illegal characters
+	 * Sets the source of precomputed break positions consulted before wrapping a text.
+	 *
+	 * @param breakPositionSource the source, or <code>null</code> to find the break positions of every text
+	 */
+	public void setBreakPositionSource(final BreakPositionSource breakPositionSource){
+		this.breakPositionSource = breakPositionSource;
+	}
+
+	public BreakPositionSource getBreakPositionSource() {
+		return breakPositionSource;
+	}
+
+	/**
+	 * Sets the cache consulted before wrapping a whole text. Caches are thread safe and can be shared by builders.
+	 * The cache is dropped when the builder is reset, so a pooled builder does not carry the texts of one borrower
+	 * over to the next.
+	 *
+	 * @param wrapCache the cache, or <code>null</code> to wrap every text
+	 */
+	public void setWrapCache(final WrapCache wrapCache){
+		this.wrapCache = wrapCache;
+	}
+
+	public WrapCache getWrapCache() {
+		return wrapCache;
+	}
+
+	/**
+	 * Resets the line breaker of the builder to wrap a range of a text into lines of at most <code>width</code>
+	 * characters. The breaker is shared by the builder, so it must be done with before wrapping another text.
+	 *
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @param width the width
+	 * @return the line breaker
+	 */
+	protected LineBreaker breakLines(final CharSequence text, final int from, final int to, final int width){
+		return this.resetBreaker(this.lineBreaker, text, from, to, width);
+	}
+
+	private LineBreaker resetBreaker(final LineBreaker breaker, final CharSequence text, final int from, final int to, final int width){
+		final int[] breakPositions = (this.breakPositionSource != null && text instanceof String)
+				? this.breakPositionSource.getBreakPositions((String) text)
+				: null;
+		if (this.wrapCache != null && from == 0 && text instanceof String && to == text.length()) {
+			return this.wrapCache.reset(breaker, (String) text, width, breakPositions);
+		}
+		return breaker.reset(text, from, to, width, breakPositions);
+	}
+
+	/**
+	 * Checks a String and replaces illegal characters. Every char matched by a pattern is replaced on its own,
+	 * so the string keeps its length and the columns of a line stay in place.
 	 *
 	 * @param str the str
 	 * @return string string
@@ -82,9 +252,21 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 			return "";		//TODO confirm behaviour
 		}
 
-		if (this.invalidCharsPattern != null){
-			Matcher m = this.invalidCharsPattern.matcher(str);
-			return m.replaceAll(Character.toString(this.invalidCharReplacement));
+		if (this.sanitizer != null){
+			return this.sanitizer.sanitize(str);
+		}
+		else if (this.invalidCharsPattern != null){
+			final Matcher m = this.invalidCharsPattern.matcher(str);
+			if (!m.find()) {
+				return str;
+			}
+			final char[] chars = str.toCharArray();
+			do {
+				for (int i = m.start(); i < m.end(); i++) {
+					chars[i] = this.invalidCharReplacement;
+				}
+			} while (m.find());
+			return new String(chars);
 		}
 		else {
 			return str;
@@ -97,6 +279,7 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 	protected void resetCharBuffer() {
 		System.arraycopy(defaultCharBuffer, 0, this.charBuffer, 0, this.lineWidth);
 		this.lineBufferInUse = false;
+		this.wideColumns = false;
 	}
 
 	/**
@@ -109,10 +292,192 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 		return this;
 	}
 
+	/**
+	 * Clears the output, pagination, trimming, break position source and wrap cache, and initializes the builder
+	 * again.
+	 *
+	 * @return the print format builder
+	 */
+	@Override
+	public PrintFormatBuilder reset(){
+		this.builder.setLength(0);
+		this.pageConsumer = null;
+		this.pageLines = 0;
+		this.pageChars = 0;
+		this.pageLineCount = 0;
+		this.breakPositionSource = null;
+		this.wrapCache = null;
+		this.trimTrailingSpaces = false;
+		this.mode = Mode.NORMAL;
+		return this.initialize();
+	}
+
+	/**
+	 * Makes room in the output for the lines expected, every line taking the line width and a newline.
+	 */
+	@Override
+	public PrintFormatBuilder expectLines(final int lines) {
+		this.builder.ensureCapacity(this.builder.length() + Math.max(lines, 0) * (this.lineWidth + 1));
+		return this;
+	}
+
+	/**
+	 * Leaves the trailing spaces of every line out of the output, so short lines are not padded to the line width.
+	 * The layout of the lines stays the same.
+	 *
+	 * @param trim <code>true</code> to trim trailing spaces
+	 * @return the print format builder
+	 */
+	public PrintFormatBuilder trimTrailingSpaces(final boolean trim){
+		this.trimTrailingSpaces = trim;
+		return this;
+	}
+
+	/**
+	 * @return if trailing spaces are left out of the output
+	 */
+	public boolean isTrimmingTrailingSpaces(){
+		return this.trimTrailingSpaces;
+	}
+
+	/**
+	 * Switch to paginated mode, flushing the output to the <code>consumer</code> every <code>pageLines</code> lines.
+	 * The buffer is reused for every page, so memory use does not grow with the length of the output.
+	 *
+	 * @param consumer Consumer to receive the pages
+	 * @param pageLines Number of lines in a page
+	 * @return the print format builder
+	 */
+	public PrintFormatBuilder paginateByLines(final PageConsumer consumer, final int pageLines){
+		return this.paginate(consumer, pageLines, 0);
+	}
+
+	/**
+	 * Switch to paginated mode, flushing the output to the <code>consumer</code> once a page holds at least
+	 * <code>pageChars</code> characters. Pages are only flushed at the end of a line.
+	 *
+	 * @param consumer Consumer to receive the pages
+	 * @param pageChars Number of chars after which a page is flushed
+	 * @return the print format builder
+	 */
+	public PrintFormatBuilder paginateBySize(final PageConsumer consumer, final int pageChars){
+		return this.paginate(consumer, 0, pageChars);
+	}
+
+	/**
+	 * Switch to streaming mode, writing every completed line to the stream as soon as it is laid out, so a printer
+	 * can start printing before the rest of the output is laid out.
+	 *
+	 * @param out Stream to write lines to, flushed after every line
+	 * @param charset Charset to encode text with, not used for builders producing device bytes
+	 * @return the print format builder
+	 */
+	public PrintFormatBuilder streamTo(final OutputStream out, final Charset charset){
+		return this.paginateByLines(new OutputStreamPageConsumer(out, charset), 1);
+	}
+
+	/**
+	 * Switch to streaming mode, writing every completed line to the channel as soon as it is laid out, so a printer
+	 * can start printing before the rest of the output is laid out.
+	 *
+	 * @param channel Channel to write lines to
+	 * @param charset Charset to encode text with, not used for builders producing device bytes
+	 * @return the print format builder
+	 */
+	public PrintFormatBuilder streamTo(final WritableByteChannel channel, final Charset charset){
+		return this.paginateByLines(new ChannelPageConsumer(channel, charset), 1);
+	}
+
+	/**
+	 * Switch to streaming mode, writing the output to the writer in pages of about
+	 * {@link WriterPageConsumer#DEFAULT_BUFFER_SIZE} chars. The writer is not flushed, so many outputs can be written
+	 * to one buffered writer.
+	 *
+	 * @param out Writer to write the output to
+	 * @return the print format builder
+	 */
+	public PrintFormatBuilder streamTo(final Writer out){
+		return this.paginateBySize(new WriterPageConsumer(out), WriterPageConsumer.DEFAULT_BUFFER_SIZE);
+	}
+
+	private PrintFormatBuilder paginate(final PageConsumer consumer, final int pageLines, final int pageChars){
+		if (consumer == null){
+			throw new IllegalArgumentException("A page consumer is required");
+		}
+		if (pageLines < 0 || pageChars < 0 || pageLines + pageChars == 0){
+			throw new IllegalArgumentException("Page size must be larger than 0");
+		}
+		this.pageConsumer = consumer;
+		this.pageLines = pageLines;
+		this.pageChars = pageChars;
+		this.checkPage();
+		return this;
+	}
+
+	/**
+	 * Flush the current page if it is full.
+	 */
+	protected void checkPage(){
+		if (this.pageConsumer != null
+				&& ((this.pageLines > 0 && this.pageLineCount >= this.pageLines)
+				|| (this.pageChars > 0 && this.getOutputLength() >= this.pageChars))){
+			this.flushPage();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the output is handed to a page consumer
+	 */
+	protected boolean isPaginating(){
+		return this.pageConsumer != null;
+	}
+
+	/**
+	 * Hands the buffered output to the page consumer and clears the buffer for the next page.
+	 */
+	protected void flushPage(){
+		if (this.getOutputLength() > 0){
+			try {
+				this.writePage(this.pageConsumer);
+			}
+			catch (IOException e){
+				throw new UncheckedIOException("Failed to write page", e);
+			}
+		}
+		this.pageLineCount = 0;
+	}
+
+	/**
+	 * @return the length of the buffered output
+	 */
+	protected int getOutputLength(){
+		return this.builder.length();
+	}
+
+	/**
+	 * Hands the buffered output to a page consumer and clears it.
+	 *
+	 * @param consumer the page consumer
+	 * @throws IOException if the consumer failed
+	 */
+	protected void writePage(final PageConsumer consumer) throws IOException {
+		consumer.accept(this.builder);
+		this.builder.setLength(0);
+	}
+
+	/**
+	 * Gets the format. When paginating, the remaining output is flushed to the page consumer
+	 * and an empty string is returned.
+	 *
+	 * @return the format
+	 */
 	public Object getFormat(){
 		if (this.lineBufferInUse){
 			this.completeCharBuffer(); // Complete the line
 		}
+		if (this.pageConsumer != null){
+			this.flushPage();
+		}
 		return this.builder.toString();
 	}
 
@@ -205,30 +570,47 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 		if (text == null) {
 			return this;
 		}
+		return this.insertLeft(text, 0, text.length(), index, width, lineWrap);
+	}
 
+	/**
+	 * Inserts a range of a text left given a specific line width
+	 *
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @param index the position left
+	 * @param width the width
+	 * @param lineWrap the line wrap
+	 * @return print format builder
+	 */
+	protected PrintFormatBuilder insertLeft(final CharSequence text, final int from, final int to, final int index, final int width, final LineWrap lineWrap){
 		this.lineBufferInUse = true;
 		final int indexLeft = PrintStringUtil.indexLeft(width, index);
 		// If we are not wrapping, add as much as we can into the current line buffer
 		if(lineWrap == LineWrap.NO_WRAP) {
-			PrintStringUtil.insertLeftAligned(this.charBuffer, indexLeft, text, width);
+			PrintStringUtil.insertLeftAligned(this.charBuffer, indexLeft, text, from, to, width);
+			this.markColumns(indexLeft, indexLeft + Math.min(this.columnsOf(text, from, to), width));
 		}
 		else {
 			final int maxStringLength = width - indexLeft;
-			String[] lines = PrintStringUtil.getLines(text, maxStringLength, "");
+			final LineBreaker lines = this.breakLines(text, from, to, maxStringLength);
 			if(lineWrap == LineWrap.WRAP) {
-				int line = 0;
-				for (String lineStr : lines) {
-					this.insertLeft(lineStr, indexLeft, width, LineWrap.NO_WRAP);
-					if (lines.length > 1 && line++ < lines.length - 1) {
+				boolean first = true;
+				while (lines.next()) {
+					if (!first) {
 						this.nl();
 					}
+					first = false;
+					this.insertLeft(text, lines.getLineStart(), lines.getLineEnd(), indexLeft, width, LineWrap.NO_WRAP);
 				}
 			}
-			else if(lineWrap == LineWrap.WRAP_LEFT) {
-				this.insertLeft(lines[0], indexLeft, width, LineWrap.NO_WRAP);
-				if (lines.length > 1) {
+			else if(lineWrap == LineWrap.WRAP_LEFT && lines.next()) {
+				final int remainder = from + lines.getLineLength();
+				this.insertLeft(text, lines.getLineStart(), lines.getLineEnd(), indexLeft, width, LineWrap.NO_WRAP);
+				if (lines.next()) {
 					this.nl();
-					this.insertLeft(text.substring(lines[0].length(), text.length()), 0, width, LineWrap.WRAP);
+					this.insertLeft(text, remainder, to, 0, width, LineWrap.WRAP);
 				}
 			}
 		}
@@ -251,29 +633,46 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 		if (text == null) {
 			return this;
 		}
+		return this.insertRight(text, 0, text.length(), index, width, lineWrap);
+	}
+
+	/**
+	 * Inserts a range of a text right given a specific line width
+	 *
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @param index the position right
+	 * @param width the width
+	 * @param lineWrap the line wrap
+	 * @return print format builder
+	 */
+	protected PrintFormatBuilder insertRight(final CharSequence text, final int from, final int to, final int index, final int width, LineWrap lineWrap){
 		this.lineBufferInUse = true;
 		final int indexLeft = PrintStringUtil.indexLeft(width, index);
 		if (lineWrap == LineWrap.NO_WRAP) {
-			PrintStringUtil.insertRightAligned(this.charBuffer, indexLeft, text, width);
+			PrintStringUtil.insertRightAligned(this.charBuffer, indexLeft, text, from, to, width);
+			this.markColumns(indexLeft + 1 - Math.min(this.columnsOf(text, from, to), width), indexLeft + 1);
 		}
 		else{
 			// We have as much space as we are from the left
 			final int availableSpace = indexLeft+1;
-			String[] lines = PrintStringUtil.getLines(text, availableSpace, "");
-			this.insertRight(lines[0], indexLeft, width, LineWrap.NO_WRAP);
+			final LineBreaker lines = this.breakLines(text, from, to, availableSpace);
+			if (!lines.next()) {
+				return this;
+			}
+			final int remainder = from + lines.getLineLength();
+			this.insertRight(text, lines.getLineStart(), lines.getLineEnd(), indexLeft, width, LineWrap.NO_WRAP);
 			if (lineWrap == LineWrap.WRAP) {
-				int line = 0;
-				for (String lineStr : lines) {
-					this.insertRight(lineStr, indexLeft, width, LineWrap.NO_WRAP);
-					if (lines.length > 1 && line++ < lines.length - 1) {
-						this.nl();
-					}
+				while (lines.next()) {
+					this.nl();
+					this.insertRight(text, lines.getLineStart(), lines.getLineEnd(), indexLeft, width, LineWrap.NO_WRAP);
 				}
 			}
 			else if (lineWrap == LineWrap.WRAP_LEFT) {
-				if (lines.length > 1) {
+				if (lines.next()) {
 					this.nl();
-					this.insertLeft(text.substring(lines[0].length(), text.length()), 0, width, LineWrap.WRAP);
+					this.insertLeft(text, remainder, to, 0, width, LineWrap.WRAP);
 				}
 			}
 		}
@@ -296,33 +695,49 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 		if (text == null) {
 			return this;
 		}
+		return this.insertCenter(text, 0, text.length(), index, width, lineWrap);
+	}
 
+	/**
+	 * Inserts a range of a text centered given a specific line width
+	 *
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @param index the position
+	 * @param width the width
+	 * @param lineWrap the line wrap
+	 * @return print format builder
+	 */
+	protected PrintFormatBuilder insertCenter(final CharSequence text, final int from, final int to, final int index, final int width, LineWrap lineWrap) {
 		this.lineBufferInUse = true;
 
 		// The true position from the left to insert the string
 		final int indexLeft = PrintStringUtil.indexLeft(width, index);
 
 		if (lineWrap == LineWrap.NO_WRAP) {
-			PrintStringUtil.insertCenterAligned(this.charBuffer, indexLeft, text, width);
+			PrintStringUtil.insertCenterAligned(this.charBuffer, indexLeft, text, from, to, width);
+			final int columns = Math.min(this.columnsOf(text, from, to), width);
+			final int start = indexLeft - columns / 2;
+			this.markColumns(start, start + columns);
 		} else {
 			final int availableSpace = PrintStringUtil.maxStrLengthCenter(width, indexLeft);
-			String[] lines = PrintStringUtil.getLines(text, availableSpace, "");
+			final LineBreaker lines = this.breakLines(text, from, to, availableSpace);
 			if (lineWrap == LineWrap.WRAP) {
-				int line = 0;
-				for (String lineStr : lines) {
-					this.insertCenter(lineStr, indexLeft, width, LineWrap.NO_WRAP);
-					if (lines.length > 1 && line++ < lines.length - 1) {
+				boolean first = true;
+				while (lines.next()) {
+					if (!first) {
 						this.nl();
 					}
+					first = false;
+					this.insertCenter(text, lines.getLineStart(), lines.getLineEnd(), indexLeft, width, LineWrap.NO_WRAP);
 				}
-			} else if (lineWrap == LineWrap.WRAP_LEFT) {
-				// New offset if we need to move the center due to a smaller line
-				//                                       New offset                              Move on position left if uneven line length
-				final int centerOffset = indexLeft;//(positionLeft - ((width - lines[0].length()) / 2)) + (lines[0].length() % 2 > 0 ? 1 : 0) ;
-				this.insertCenter(lines[0], centerOffset, width, LineWrap.NO_WRAP);
-				if (lines.length > 1) {
+			} else if (lineWrap == LineWrap.WRAP_LEFT && lines.next()) {
+				final int remainder = from + lines.getLineLength();
+				this.insertCenter(text, lines.getLineStart(), lines.getLineEnd(), indexLeft, width, LineWrap.NO_WRAP);
+				if (lines.next()) {
 					this.nl();
-					this.insertLeft(text.substring(lines[0].length(), text.length()), 0, width, LineWrap.WRAP);
+					this.insertLeft(text, remainder, to, 0, width, LineWrap.WRAP);
 				}
 			}
 		}
@@ -332,26 +747,253 @@ public abstract class AbstractPlainTextFormatBuilder extends AbstractFormatBuild
 
 
 	/**
-	 * Flushes the char buffer
+	 * Lays out a table row in a single pass. Every wrapping column has its own breaker, and every printed line
+	 * takes the next line of each column that still has one, so the wrapped lines of the cells are inserted
+	 * into the char buffer side by side without being collected first.
+	 */
+	@Override
+	public PrintFormatBuilder row(final TableColumn[] columns, final int spacing, final String[] cells, final Mode[] modes){
+		if (columns.length != cells.length || columns.length != modes.length) {
+			throw new IllegalArgumentException("A row needs a cell and a mode for every column");
+		}
+		if (this.lineBufferInUse) {
+			this.nl();
+		}
+		this.layoutColumns(columns, spacing);
+		final Mode textMode = this.mode;
+		boolean pending = false;
+		for (int i = 0; i < columns.length; i++) {
+			final String cell = cells[i] == null ? "" : cells[i];
+			this.cellPending[i] = false;
+			if (this.cellWidths[i] == 0) {
+				continue;
+			}
+			this.mode(modes[i]);
+			if (columns[i].isWrap()) {
+				final LineBreaker breaker = this.resetBreaker(this.cellBreakers[i], cell, 0, cell.length(), this.cellWidths[i]);
+				if (breaker.next()) {
+					this.insertCell(cell, breaker.getLineStart(), breaker.getLineEnd(), i, columns[i].getAlignment());
+					this.cellPending[i] = breaker.next();
+					pending |= this.cellPending[i];
+				}
+			}
+			else if (this.columnsOf(cell, 0, cell.length()) > this.cellWidths[i]) {
+				// Cutting the cell could print a wrong amount, so the column shows it does not fit
+				final String overflow = PrintStringUtil.createStringOfChar(this.cellWidths[i], OVERFLOW_CHAR);
+				this.insertCell(overflow, 0, overflow.length(), i, Align.LEFT);
+			}
+			else {
+				this.insertCell(cell, 0, cell.length(), i, columns[i].getAlignment());
+			}
+		}
+		while (pending) {
+			this.nl();
+			pending = false;
+			for (int i = 0; i < columns.length; i++) {
+				if (this.cellPending[i]) {
+					final LineBreaker breaker = this.cellBreakers[i];
+					this.mode(modes[i]);
+					this.insertCell(cells[i], breaker.getLineStart(), breaker.getLineEnd(), i, columns[i].getAlignment());
+					this.cellPending[i] = breaker.next();
+					pending |= this.cellPending[i];
+				}
+			}
+		}
+		this.mode(textMode);
+		return this.nl();
+	}
+
+	/**
+	 * Works out the first column and width of every column of a table row. Columns without a width share what is
+	 * left of the line, columns reaching past the line are cut.
+	 */
+	private void layoutColumns(final TableColumn[] columns, final int spacing){
+		if (this.cellBreakers.length < columns.length) {
+			final LineBreaker[] breakers = new LineBreaker[columns.length];
+			System.arraycopy(this.cellBreakers, 0, breakers, 0, this.cellBreakers.length);
+			for (int i = this.cellBreakers.length; i < columns.length; i++) {
+				breakers[i] = new LineBreaker();
+			}
+			this.cellBreakers = breakers;
+			this.cellStarts = new int[columns.length];
+			this.cellWidths = new int[columns.length];
+			this.cellPending = new boolean[columns.length];
+		}
+		int fixed = spacing * Math.max(columns.length - 1, 0);
+		int shared = 0;
+		for (TableColumn column : columns) {
+			fixed += column.getWidth();
+			shared += column.getWidth() == 0 ? 1 : 0;
+		}
+		final int left = Math.max(this.lineWidth - fixed, 0);
+		int start = 0;
+		int sharedSeen = 0;
+		for (int i = 0; i < columns.length; i++) {
+			int width = columns[i].getWidth();
+			if (width == 0) {
+				sharedSeen++;
+				// The last shared column gets the columns the division left over
+				width = sharedSeen == shared ? left - (left / shared) * (shared - 1) : left / shared;
+			}
+			this.cellStarts[i] = start;
+			this.cellWidths[i] = Math.max(Math.min(width, this.lineWidth - start), 0);
+			start += width + spacing;
+		}
+	}
+
+	/**
+	 * Inserts a range of a cell into its column of the char buffer, in the current mode.
+	 */
+	private void insertCell(final CharSequence text, final int from, final int to, final int column, final Align align){
+		this.lineBufferInUse = true;
+		final int start = this.cellStarts[column];
+		final int width = this.cellWidths[column];
+		final int columns = Math.min(this.columnsOf(text, from, to), width);
+		if (align == Align.RIGHT) {
+			PrintStringUtil.insertRightAligned(this.charBuffer, start + width - 1, text, from, to, width);
+			this.markColumns(start + width - columns, start + width);
+		}
+		else if (align == Align.CENTER) {
+			PrintStringUtil.insertCenterAligned(this.charBuffer, start + width / 2, text, from, to, width);
+			this.markColumns(start + width / 2 - columns / 2, start + width / 2 - columns / 2 + columns);
+		}
+		else {
+			PrintStringUtil.insertLeftAligned(this.charBuffer, start, text, from, to, width);
+			this.markColumns(start, start + columns);
+		}
+	}
+
+	/**
+	 * Gets the number of columns a range of text takes in the char buffer, noting when it may hold fillers.
+	 */
+	private int columnsOf(final CharSequence text, final int from, final int to) {
+		if (DisplayWidth.isNarrow(text, from, to)) {
+			return to - from;
+		}
+		this.wideColumns = true;
+		return DisplayWidth.of(text, from, to);
+	}
+
+	/**
+	 * Called with the columns of the char buffer a text was inserted into, which may reach outside the line.
+	 * Implementations override this to keep the mode of every column.
+	 *
+	 * @param start first column (inclusive)
+	 * @param end last column (exclusive)
+	 */
+	protected void markColumns(final int start, final int end) {
+	}
+
+	/**
+	 * Flushes the char buffer, replacing invalid characters in it
 	 */
 	public void completeCharBuffer() {
 		if (this.lineBufferInUse){
-			this.builder.append(String.valueOf(charBuffer));
+			if (this.invalidCharsPattern != null && this.sanitizer == null){
+				final String line = this.wideColumns ? this.fixCharactersBetweenFillers() : this.fixCharacters(String.valueOf(this.charBuffer));
+				this.appendText(line, 0, this.trimTrailingSpaces ? PrintStringUtil.rtrimEnd(line, 0, line.length()) : line.length());
+			}
+			else {
+				if (this.sanitizer != null){
+					this.sanitizer.sanitize(this.charBuffer, 0, this.lineWidth);
+				}
+				this.appendText(this.charBuffer, 0, this.trimTrailingSpaces ? this.getTrimmedEnd() : this.lineWidth);
+			}
 			this.resetCharBuffer();
 		}
 	}
 
+	/**
+	 * Removes illegal characters from the char buffer, keeping the fillers of wide chars out of the pattern.
+	 *
+	 * @return the line
+	 */
+	private String fixCharactersBetweenFillers() {
+		final StringBuilder line = new StringBuilder(this.lineWidth);
+		int start = 0;
+		for (int i = 0; i < this.lineWidth; i++) {
+			if (this.charBuffer[i] == DisplayWidth.FILLER) {
+				line.append(this.fixCharacters(new String(this.charBuffer, start, i - start))).append(DisplayWidth.FILLER);
+				start = i + 1;
+			}
+		}
+		return line.append(this.fixCharacters(new String(this.charBuffer, start, this.lineWidth - start))).toString();
+	}
+
+	/**
+	 * Finds the end of the char buffer without the trailing spaces that can be left out of the output.
+	 * Implementations override this when some spaces are visible.
+	 *
+	 * @return end of the char buffer without trailing spaces
+	 */
+	protected int getTrimmedEnd() {
+		return PrintStringUtil.rtrimEnd(this.charBuffer, 0, this.lineWidth);
+	}
+
+	/**
+	 * Append text to the output, leaving out the fillers of wide chars.
+	 *
+	 * @param text the text
+	 * @param from start of the text (inclusive)
+	 * @param to end of the text (exclusive)
+	 */
+	protected void appendText(final char[] text, final int from, final int to) {
+		if (!this.wideColumns) {
+			this.builder.append(text, from, to - from);
+			return;
+		}
+		int start = from;
+		for (int i = from; i < to; i++) {
+			if (text[i] == DisplayWidth.FILLER) {
+				this.builder.append(text, start, i - start);
+				start = i + 1;
+			}
+		}
+		this.builder.append(text, start, to - start);
+	}
+
+	/**
+	 * Append text to the output, leaving out the fillers of wide chars.
+	 *
+	 * @param text the text
+	 * @param from start of the text (inclusive)
+	 * @param to end of the text (exclusive)
+	 */
+	protected void appendText(final CharSequence text, final int from, final int to) {
+		if (!this.wideColumns) {
+			this.builder.append(text, from, to);
+			return;
+		}
+		int start = from;
+		for (int i = from; i < to; i++) {
+			if (text.charAt(i) == DisplayWidth.FILLER) {
+				this.builder.append(text, start, i);
+				start = i + 1;
+			}
+		}
+		this.builder.append(text, start, to);
+	}
+
 
 	/**
-	 * Complete the current char buffer.
-	 * Be ware that implementations can override this and add newline characters to the string
+	 * Complete the current char buffer and end the line.
 	 * @return
 	 */
 	public PrintFormatBuilder nl() {
 		completeCharBuffer();
+		appendNewLine();
+		this.pageLineCount++;
+		checkPage();
 		return this;
 	}
 
+	/**
+	 * Append the sequence that moves the output to the next line.
+	 * Implementations override this to add their newline characters.
+	 */
+	protected void appendNewLine() {
+	}
+
 	public PrintFormatBuilder feed(){
 		this.nl();
 		this.nl();
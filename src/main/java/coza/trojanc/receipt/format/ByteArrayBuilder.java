@@ -0,0 +1,146 @@
+package coza.trojanc.receipt.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable array of bytes, the byte counterpart of a {@link StringBuilder}, used by builders producing
+ * device commands.
+ *
+ * @author Charl Thiem
+ */
+public class ByteArrayBuilder {
+
+	/**
+	 * Default initial capacity
+	 */
+	private static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * The bytes, of which the first <code>length</code> are in use
+	 */
+	private byte[] bytes;
+
+	/**
+	 * Number of bytes in use
+	 */
+	private int length;
+
+	/**
+	 * Creates a new instance of a <code>ByteArrayBuilder</code> with the default capacity.
+	 */
+	public ByteArrayBuilder(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new instance of a <code>ByteArrayBuilder</code>.
+	 * @param capacity Initial capacity
+	 */
+	public ByteArrayBuilder(int capacity){
+		this.bytes = new byte[Math.max(capacity, 16)];
+	}
+
+	/**
+	 * Makes sure there is capacity for <code>additional</code> more bytes.
+	 * @param additional Number of bytes about to be appended
+	 */
+	public void ensureCapacity(int additional){
+		final int required = this.length + additional;
+		if(required > this.bytes.length){
+			this.bytes = Arrays.copyOf(this.bytes, Math.max(required, this.bytes.length << 1));
+		}
+	}
+
+	/**
+	 * Appends a byte.
+	 * @param b The byte, only the lowest 8 bits are used
+	 * @return the byte array builder
+	 */
+	public ByteArrayBuilder append(int b){
+		ensureCapacity(1);
+		this.bytes[this.length++] = (byte) b;
+		return this;
+	}
+
+	/**
+	 * Appends bytes.
+	 * @param b The bytes, only the lowest 8 bits of each are used
+	 * @return the byte array builder
+	 */
+	public ByteArrayBuilder append(int... b){
+		ensureCapacity(b.length);
+		for(int value : b){
+			this.bytes[this.length++] = (byte) value;
+		}
+		return this;
+	}
+
+	/**
+	 * Appends a range of a byte array.
+	 * @param b The bytes
+	 * @param offset Start of the range
+	 * @param count Number of bytes
+	 * @return the byte array builder
+	 */
+	public ByteArrayBuilder append(byte[] b, int offset, int count){
+		ensureCapacity(count);
+		System.arraycopy(b, offset, this.bytes, this.length, count);
+		this.length += count;
+		return this;
+	}
+
+	/**
+	 * @param index Index of the byte
+	 * @return the byte at the index
+	 */
+	public byte byteAt(int index){
+		if(index < 0 || index >= this.length){
+			throw new IndexOutOfBoundsException("Index " + index + " outside length " + this.length);
+		}
+		return this.bytes[index];
+	}
+
+	/**
+	 * @return number of bytes in use
+	 */
+	public int length(){
+		return this.length;
+	}
+
+	/**
+	 * Truncates the bytes in use, keeping the capacity.
+	 * @param length The new length, no larger than the current length
+	 */
+	public void setLength(int length){
+		if(length < 0 || length > this.length){
+			throw new IndexOutOfBoundsException("Length " + length + " outside length " + this.length);
+		}
+		this.length = length;
+	}
+
+	/**
+	 * The backing array, valid up to {@link #length()} until the builder is modified.
+	 * @return the backing array
+	 */
+	public byte[] array(){
+		return this.bytes;
+	}
+
+	/**
+	 * @return a copy of the bytes in use
+	 */
+	public byte[] toByteArray(){
+		return Arrays.copyOf(this.bytes, this.length);
+	}
+
+	/**
+	 * Writes the bytes in use to a stream, without copying them.
+	 * @param out Stream to write to
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(this.bytes, 0, this.length);
+	}
+}
@@ -0,0 +1,49 @@
+package coza.trojanc.receipt.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link PageConsumer} that encodes pages and writes them to a {@link WritableByteChannel}. Pages of builders
+ * producing device bytes are copied through the same buffer without encoding.
+ *
+ * @author Charl Thiem
+ */
+public class ChannelPageConsumer extends AbstractEncodingPageConsumer {
+
+	/**
+	 * Channel to write pages to
+	 */
+	private final WritableByteChannel channel;
+
+	/**
+	 * Creates a new instance of a <code>ChannelPageConsumer</code>.
+	 *
+	 * @param channel Channel to write pages to
+	 * @param charset Charset to encode pages with
+	 */
+	public ChannelPageConsumer(WritableByteChannel channel, Charset charset){
+		this(channel, charset, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of a <code>ChannelPageConsumer</code>.
+	 *
+	 * @param channel Channel to write pages to
+	 * @param charset Charset to encode pages with
+	 * @param bufferSize Size of the buffer pages are encoded into
+	 */
+	public ChannelPageConsumer(WritableByteChannel channel, Charset charset, int bufferSize){
+		super(charset, bufferSize);
+		this.channel = channel;
+	}
+
+	@Override
+	protected void write(ByteBuffer bytes) throws IOException {
+		while(bytes.hasRemaining()){
+			channel.write(bytes);
+		}
+	}
+}
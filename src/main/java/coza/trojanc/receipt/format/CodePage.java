@@ -0,0 +1,86 @@
+package coza.trojanc.receipt.format;
+
+import java.nio.charset.Charset;
+
+/**
+ * Code pages of receipt printers, with precomputed tables to encode chars into the single byte of the code page.
+ * <p>
+ * All code pages share the ASCII range, the tables hold the mappings of the bytes 0x80 to 0xFF. A code page whose
+ * charset is not available in the runtime maps no chars outside the ASCII range.
+ * @author Charl Thiem
+ */
+public enum CodePage {
+
+	CP437(0, "IBM437"),
+	CP850(2, "IBM850"),
+	CP860(3, "IBM860"),
+	CP863(4, "IBM863"),
+	CP865(5, "IBM865"),
+	CP1252(16, "windows-1252"),
+	CP866(17, "IBM866"),
+	CP852(18, "IBM852"),
+	CP858(19, "IBM00858");
+
+	/**
+	 * Number selecting the code page with the ESC t command
+	 */
+	private final int escPosNumber;
+
+	/**
+	 * Name of the charset the table was computed from
+	 */
+	private final String charsetName;
+
+	/**
+	 * Bytes of chars, indexed by the high and then the low byte of the char. A page is <code>null</code> when no
+	 * chars in it are mapped, and a byte of 0 means the char is not mapped.
+	 */
+	private final byte[][] table = new byte[256][];
+
+	CodePage(int escPosNumber, String charsetName){
+		this.escPosNumber = escPosNumber;
+		this.charsetName = charsetName;
+		if(Charset.isSupported(charsetName)){
+			final Charset charset = Charset.forName(charsetName);
+			final byte[] value = new byte[1];
+			for(int b = 0x80; b <= 0xFF; b++){
+				value[0] = (byte) b;
+				final String decoded = new String(value, charset);
+				final char c = decoded.charAt(0);
+				if(decoded.length() == 1 && c != '\uFFFD' && c >= 0x80){
+					byte[] page = table[c >> 8];
+					if(page == null){
+						page = table[c >> 8] = new byte[256];
+					}
+					if(page[c & 0xFF] == 0){
+						page[c & 0xFF] = (byte) b;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Encodes a char into the byte of this code page.
+	 * @param c The char
+	 * @return the byte (0 to 255), or -1 if the code page does not have the char
+	 */
+	public int encode(char c){
+		if(c < 0x80){
+			return c;
+		}
+		final byte[] page = table[c >> 8];
+		if(page == null || page[c & 0xFF] == 0){
+			return -1;
+		}
+		return page[c & 0xFF] & 0xFF;
+	}
+
+	public int getEscPosNumber() {
+		return escPosNumber;
+	}
+
+	public String getCharsetName() {
+		return charsetName;
+	}
+}
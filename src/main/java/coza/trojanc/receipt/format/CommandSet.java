@@ -0,0 +1,129 @@
+package coza.trojanc.receipt.format;
+
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+
+/**
+ * The commands of a printer dialect. A command set only encodes commands, {@link AbstractCommandFormatBuilder}
+ * tracks the state the printer is in and only asks for the commands that change it. Command sets hold no state
+ * and can be shared by builders.
+ * <p>
+ * Print modes are passed as a combination of the mode bits of this interface.
+ *
+ * @author Charl Thiem
+ */
+public interface CommandSet {
+
+	/**
+	 * Mode of plain text
+	 */
+	int DEFAULT_MODE = 0x00;
+
+	/**
+	 * Mode bit of bold text
+	 */
+	int BOLD = 0x08;
+
+	/**
+	 * Mode bit of double height text
+	 */
+	int DOUBLE_HEIGHT = 0x10;
+
+	/**
+	 * Mode bit of double width text
+	 */
+	int DOUBLE_WIDTH = 0x20;
+
+	/**
+	 * Mode bit of underlined text
+	 */
+	int UNDERLINE = 0x80;
+
+	/**
+	 * Barcode height of a printer that was initialized since the last barcode
+	 */
+	int UNKNOWN_HEIGHT = -1;
+
+	/**
+	 * Initializes the printer. After it the printer prints left aligned in the default mode.
+	 */
+	void initialize(final ByteArrayBuilder out);
+
+	/**
+	 * Prints the line and moves to the next one.
+	 */
+	void newLine(final ByteArrayBuilder out);
+
+	/**
+	 * Changes the alignment of the lines that follow.
+	 */
+	void alignment(final ByteArrayBuilder out, final Align align);
+
+	/**
+	 * Changes the print mode of the characters that follow.
+	 * @param from The mode the printer is in
+	 * @param to The mode to change to, never the same as <code>from</code>
+	 */
+	void mode(final ByteArrayBuilder out, final int from, final int to);
+
+	/**
+	 * @return the code page the printer is in after it is initialized, <code>null</code> if it depends on the
+	 * settings of the printer
+	 */
+	CodePage getInitialCodePage();
+
+	/**
+	 * @return if the printer can select a code page
+	 */
+	boolean supports(final CodePage codePage);
+
+	/**
+	 * Changes the code page of the characters that follow.
+	 */
+	void codePage(final ByteArrayBuilder out, final CodePage codePage);
+
+	/**
+	 * Checks the data of a barcode and gets the data to send to the printer.
+	 * @param type The symbology
+	 * @param data The printable ASCII data
+	 * @return the data to send to the printer
+	 */
+	String barcodeData(final BarcodeType type, final String data);
+
+	/**
+	 * Changes the height of the barcodes that follow.
+	 * @param from The height the printer is set to, {@link #UNKNOWN_HEIGHT} after the printer is initialized
+	 * @param to The height to change to, 1 to 255 dots
+	 */
+	void barcodeHeight(final ByteArrayBuilder out, final int from, final int to);
+
+	/**
+	 * Prints a barcode on a line of its own.
+	 * @param data Data returned by {@link #barcodeData(BarcodeType, String)}
+	 * @param height Height in dots, already set with {@link #barcodeHeight(ByteArrayBuilder, int, int)}
+	 */
+	void barcode(final ByteArrayBuilder out, final BarcodeType type, final String data, final int height);
+
+	/**
+	 * Prints a QR code on a line of its own.
+	 */
+	void qrCode(final ByteArrayBuilder out, final byte[] data, final int moduleSize, final QrErrorCorrection errorCorrection);
+
+	/**
+	 * Encodes an image into the commands printing it, in the form of a {@link RasterCache.RasterEncoder}.
+	 */
+	byte[] raster(final byte[] image, final int dotsPerLine, final int density);
+
+	/**
+	 * Feeds the paper to the cutter and cuts it.
+	 */
+	void cut(final ByteArrayBuilder out, final CutMode mode);
+
+	/**
+	 * Opens a cash drawer.
+	 * @param pin The pin of the drawer, 0 or 1
+	 */
+	void openDrawer(final ByteArrayBuilder out, final int pin);
+}
@@ -0,0 +1,233 @@
+package coza.trojanc.receipt.format;
+
+import coza.trojanc.receipt.format.impl.EpsonPrintFormatBuilder;
+import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, thread safe pool of format builders, so builders keep the capacity of their buffers between documents.
+ * <p>
+ * Builders are pooled per type, line width and character options. A borrowed builder is returned by closing its
+ * {@link Lease}, which resets it. Builders returned while the pool of their kind is full are discarded.
+ * <pre>
+ * try(FormatBuilderPool.Lease&lt;PlainTextFormatBuilder&gt; lease = pool.borrowPlainText(42)){
+ *     printerService.print(processedTemplate, lease.get());
+ *     return (String)lease.get().getFormat();
+ * }
+ * </pre>
+ * @author Charl Thiem
+ */
+public class FormatBuilderPool {
+
+	/**
+	 * Maximum number of idle builders kept per kind
+	 */
+	private final int maxIdle;
+
+	/**
+	 * Idle builders per kind
+	 */
+	private final ConcurrentMap<Key, BlockingQueue<PrintFormatBuilder>> idle = new ConcurrentHashMap<>();
+
+	private final LongAdder borrowCount = new LongAdder();
+
+	private final LongAdder createCount = new LongAdder();
+
+	private final LongAdder returnCount = new LongAdder();
+
+	private final LongAdder discardCount = new LongAdder();
+
+	/**
+	 * Creates a new instance of a <code>FormatBuilderPool</code>.
+	 * @param maxIdle Maximum number of idle builders kept per type, width and character options.
+	 */
+	public FormatBuilderPool(int maxIdle){
+		if(maxIdle < 1){
+			throw new IllegalArgumentException("Pool must keep at least 1 idle builder");
+		}
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Borrows a plain text builder.
+	 * @param width Line width
+	 * @return the lease of the builder
+	 */
+	public Lease<PlainTextFormatBuilder> borrowPlainText(int width){
+		return borrow(PlainTextFormatBuilder.class, width, () -> new PlainTextFormatBuilder(width));
+	}
+
+	/**
+	 * Borrows a plain text builder replacing invalid characters.
+	 * @param width Line width
+	 * @param invalidCharsRegex Regular expression of invalid characters
+	 * @param invalidCharReplacement The character that replaces an invalid character
+	 * @return the lease of the builder
+	 */
+	public Lease<PlainTextFormatBuilder> borrowPlainText(int width, String invalidCharsRegex, char invalidCharReplacement){
+		return borrow(PlainTextFormatBuilder.class, width,
+				() -> new PlainTextFormatBuilder(width, invalidCharsRegex, invalidCharReplacement),
+				invalidCharsRegex, invalidCharReplacement);
+	}
+
+	/**
+	 * Borrows an Epson builder.
+	 * @param width Line width
+	 * @param codePages Code pages the printer supports, in order of preference
+	 * @return the lease of the builder
+	 */
+	public Lease<EpsonPrintFormatBuilder> borrowEpson(int width, CodePage... codePages){
+		final CodePage[] options = codePages.length == 0 ? EpsonPrintFormatBuilder.DEFAULT_CODE_PAGES : codePages.clone();
+		return borrow(EpsonPrintFormatBuilder.class, width, () -> new EpsonPrintFormatBuilder(width, options), (Object[]) options);
+	}
+
+	/**
+	 * Borrows a builder.
+	 * @param type Type of the builder
+	 * @param width Line width
+	 * @param factory Creates a builder when none is idle
+	 * @param options Character options the builder is created with, which must be equal for builders to be shared
+	 * @param <T> Type of the builder
+	 * @return the lease of the builder
+	 */
+	public <T extends PrintFormatBuilder> Lease<T> borrow(Class<T> type, int width, Supplier<? extends T> factory, Object... options){
+		final Key key = new Key(type, width, Arrays.asList(options));
+		borrowCount.increment();
+		PrintFormatBuilder builder = queue(key).poll();
+		if(builder == null){
+			builder = factory.get();
+			if(!type.isInstance(builder) || builder.getLineWidth() != width){
+				throw new IllegalArgumentException("Factory must create a " + type.getSimpleName() + " of width " + width);
+			}
+			createCount.increment();
+		}
+		return new Lease<>(key, type.cast(builder));
+	}
+
+	private BlockingQueue<PrintFormatBuilder> queue(Key key){
+		return idle.computeIfAbsent(key, k -> new ArrayBlockingQueue<>(maxIdle));
+	}
+
+	/**
+	 * Resets a builder and keeps it for the next borrower, unless the pool of its kind is full.
+	 */
+	private void giveBack(Key key, PrintFormatBuilder builder){
+		builder.reset();
+		returnCount.increment();
+		if(!queue(key).offer(builder)){
+			discardCount.increment();
+		}
+	}
+
+	/**
+	 * @return number of builders borrowed
+	 */
+	public long getBorrowCount() {
+		return borrowCount.sum();
+	}
+
+	/**
+	 * @return number of builders created because none was idle
+	 */
+	public long getCreateCount() {
+		return createCount.sum();
+	}
+
+	/**
+	 * @return number of builders returned
+	 */
+	public long getReturnCount() {
+		return returnCount.sum();
+	}
+
+	/**
+	 * @return number of returned builders discarded because the pool was full
+	 */
+	public long getDiscardCount() {
+		return discardCount.sum();
+	}
+
+	/**
+	 * @return number of idle builders in the pool
+	 */
+	public int getIdleCount() {
+		return idle.values().stream().mapToInt(BlockingQueue::size).sum();
+	}
+
+	/**
+	 * A borrowed builder, returned to the pool when closed. The builder must not be used once the lease is closed.
+	 * Closing a lease again, or from several threads, returns the builder once.
+	 * @param <T> Type of the builder
+	 */
+	public final class Lease<T extends PrintFormatBuilder> implements AutoCloseable {
+
+		private final Key key;
+
+		private final T builder;
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private Lease(Key key, T builder){
+			this.key = key;
+			this.builder = builder;
+		}
+
+		/**
+		 * @return the borrowed builder
+		 */
+		public T get(){
+			if(closed.get()){
+				throw new IllegalStateException("Builder has been returned to the pool");
+			}
+			return builder;
+		}
+
+		@Override
+		public void close() {
+			if(closed.compareAndSet(false, true)){
+				giveBack(key, builder);
+			}
+		}
+	}
+
+	/**
+	 * Kind of pooled builders.
+	 */
+	private static final class Key {
+
+		private final Class<?> type;
+
+		private final int width;
+
+		private final List<Object> options;
+
+		Key(Class<?> type, int width, List<Object> options){
+			this.type = type;
+			this.width = width;
+			this.options = options;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return width == key.width && type.equals(key.type) && options.equals(key.options);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, width, options);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package coza.trojanc.receipt.format;
+
+import coza.trojanc.receipt.shared.DisplayWidth;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The glyphs of a monospace font rasterized once into 1 byte per dot masks, so text can be drawn by copying dots
+ * instead of laying out and rasterizing strings. The glyphs of the chars 0x20 to 0xFF are rasterized when the
+ * atlas is created, other chars the first time they are drawn. Chars the font can not display are drawn as '?'.
+ * Wide chars, as counted by {@link DisplayWidth}, have glyphs of two cells.
+ * <p>
+ * Atlases are thread safe, and shared per font through {@link #of(Font)}.
+ *
+ * @author Charl Thiem
+ */
+public final class GlyphAtlas {
+
+	/**
+	 * Most atlases kept by {@link #of(Font)}
+	 */
+	private static final int MAX_ATLASES = 32;
+
+	/**
+	 * Most glyphs outside the precomputed range kept by an atlas
+	 */
+	private static final int MAX_EXTRA_GLYPHS = 1024;
+
+	private static final char FIRST = 0x20;
+
+	private static final char LAST = 0xFF;
+
+	private static final ConcurrentMap<Font, GlyphAtlas> ATLASES = new ConcurrentHashMap<>();
+
+	private final Font font;
+
+	private final int cellWidth;
+
+	private final int cellHeight;
+
+	private final int ascent;
+
+	/**
+	 * Masks of the precomputed glyphs, one cell after the other, 1 where a dot is inked
+	 */
+	private final byte[] glyphs;
+
+	private final ConcurrentMap<Character, byte[]> extraGlyphs = new ConcurrentHashMap<>();
+
+	/**
+	 * Scratch image of two cells glyphs are rasterized in, only used while holding its lock
+	 */
+	private final BufferedImage scratch;
+
+	/**
+	 * Creates a new instance of a <code>GlyphAtlas</code>, rasterizing the glyphs of the chars 0x20 to 0xFF.
+	 * @param font The font, which should be monospaced
+	 */
+	public GlyphAtlas(Font font){
+		this.font = font;
+		final BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+		final Graphics2D graphics = probe.createGraphics();
+		try{
+			final FontMetrics metrics = graphics.getFontMetrics(font);
+			this.cellWidth = Math.max(1, metrics.charWidth('M'));
+			this.cellHeight = Math.max(1, metrics.getAscent() + metrics.getDescent());
+			this.ascent = metrics.getAscent();
+		}
+		finally{
+			graphics.dispose();
+		}
+		this.scratch = new BufferedImage(2 * cellWidth, cellHeight, BufferedImage.TYPE_BYTE_GRAY);
+		final int cellSize = cellWidth * cellHeight;
+		this.glyphs = new byte[(LAST - FIRST + 1) * cellSize];
+		for(char c = FIRST; c <= LAST; c++){
+			final byte[] glyph = rasterize(c, 1);
+			System.arraycopy(glyph, 0, glyphs, (c - FIRST) * cellSize, cellSize);
+		}
+	}
+
+	/**
+	 * Gets the shared atlas of a font, creating it the first time.
+	 * @param font The font
+	 * @return the atlas
+	 */
+	public static GlyphAtlas of(Font font){
+		final GlyphAtlas atlas = ATLASES.get(font);
+		if(atlas != null){
+			return atlas;
+		}
+		if(ATLASES.size() >= MAX_ATLASES){
+			return new GlyphAtlas(font);
+		}
+		return ATLASES.computeIfAbsent(font, GlyphAtlas::new);
+	}
+
+	/**
+	 * Draws a glyph into a 1 byte per dot raster, setting its inked dots to black (0). Dots outside the raster
+	 * are not drawn. The glyph of a wide char covers two cells.
+	 *
+	 * @param c The char
+	 * @param pixels The raster, row after row
+	 * @param scanline Number of dots in a row of the raster
+	 * @param rows Number of rows of the raster
+	 * @param x Left of the cell
+	 * @param y Top of the cell
+	 * @param scaleX Number of times every dot is repeated horizontally
+	 * @param scaleY Number of times every dot is repeated vertically
+	 */
+	public void draw(char c, byte[] pixels, int scanline, int rows, int x, int y, int scaleX, int scaleY){
+		final byte[] mask;
+		final int offset;
+		final int width;
+		if(c >= FIRST && c <= LAST){
+			mask = glyphs;
+			offset = (c - FIRST) * cellWidth * cellHeight;
+			width = cellWidth;
+		}
+		else{
+			mask = glyph(c);
+			offset = 0;
+			width = mask.length / cellHeight;
+		}
+		for(int row = 0; row < cellHeight; row++){
+			final int maskRow = offset + row * width;
+			for(int column = 0; column < width; column++){
+				if(mask[maskRow + column] == 0){
+					continue;
+				}
+				for(int sy = 0; sy < scaleY; sy++){
+					final int py = y + row * scaleY + sy;
+					if(py < 0 || py >= rows){
+						continue;
+					}
+					for(int sx = 0; sx < scaleX; sx++){
+						final int px = x + column * scaleX + sx;
+						if(px >= 0 && px < scanline){
+							pixels[py * scanline + px] = 0;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the mask of a char outside the precomputed range.
+	 */
+	private byte[] glyph(char c){
+		byte[] glyph = extraGlyphs.get(c);
+		if(glyph == null){
+			glyph = rasterize(c, DisplayWidth.of(c) == 2 ? 2 : 1);
+			if(extraGlyphs.size() < MAX_EXTRA_GLYPHS){
+				extraGlyphs.putIfAbsent(c, glyph);
+			}
+		}
+		return glyph;
+	}
+
+	/**
+	 * Rasterizes the glyph of a char over a number of cells without anti-aliasing.
+	 */
+	private byte[] rasterize(char c, int cells){
+		final char shown = font.canDisplay(c) && !Character.isISOControl(c) ? c : '?';
+		final int width = cells * cellWidth;
+		final byte[] glyph = new byte[width * cellHeight];
+		synchronized(scratch){
+			final Graphics2D graphics = scratch.createGraphics();
+			try{
+				graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+				graphics.setColor(Color.BLACK);
+				graphics.fillRect(0, 0, 2 * cellWidth, cellHeight);
+				graphics.setColor(Color.WHITE);
+				graphics.setFont(font);
+				graphics.drawString(String.valueOf(shown), 0, ascent);
+			}
+			finally{
+				graphics.dispose();
+			}
+			final Raster raster = scratch.getRaster();
+			for(int y = 0; y < cellHeight; y++){
+				for(int x = 0; x < width; x++){
+					if(raster.getSample(x, y, 0) > 127){
+						glyph[y * width + x] = 1;
+					}
+				}
+			}
+		}
+		return glyph;
+	}
+
+	public Font getFont() {
+		return font;
+	}
+
+	/**
+	 * @return width of a glyph in dots
+	 */
+	public int getCellWidth() {
+		return cellWidth;
+	}
+
+	/**
+	 * @return height of a glyph in dots
+	 */
+	public int getCellHeight() {
+		return cellHeight;
+	}
+
+	/**
+	 * @return distance from the top of a glyph to its baseline in dots
+	 */
+	public int getAscent() {
+		return ascent;
+	}
+}
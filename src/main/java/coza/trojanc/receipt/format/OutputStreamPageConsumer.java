@@ -0,0 +1,59 @@
+package coza.trojanc.receipt.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link PageConsumer} that encodes pages and writes them to an {@link OutputStream}, flushing the stream after
+ * every page. Pages of builders producing device bytes are written without encoding.
+ *
+ * @author Charl Thiem
+ */
+public class OutputStreamPageConsumer extends AbstractEncodingPageConsumer {
+
+	/**
+	 * Stream to write pages to
+	 */
+	private final OutputStream out;
+
+	/**
+	 * Creates a new instance of a <code>OutputStreamPageConsumer</code>.
+	 *
+	 * @param out Stream to write pages to
+	 * @param charset Charset to encode pages with
+	 */
+	public OutputStreamPageConsumer(OutputStream out, Charset charset){
+		this(out, charset, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of a <code>OutputStreamPageConsumer</code>.
+	 *
+	 * @param out Stream to write pages to
+	 * @param charset Charset to encode pages with
+	 * @param bufferSize Size of the buffer pages are encoded into
+	 */
+	public OutputStreamPageConsumer(OutputStream out, Charset charset, int bufferSize){
+		super(charset, bufferSize);
+		this.out = out;
+	}
+
+	@Override
+	public void accept(byte[] page, int offset, int length) throws IOException {
+		out.write(page, offset, length);
+		endPage();
+	}
+
+	@Override
+	protected void write(ByteBuffer bytes) throws IOException {
+		out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+		bytes.position(bytes.limit());
+	}
+
+	@Override
+	protected void endPage() throws IOException {
+		out.flush();
+	}
+}
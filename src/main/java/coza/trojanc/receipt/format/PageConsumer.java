@@ -0,0 +1,39 @@
+package coza.trojanc.receipt.format;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A consumer receiving the output of a format builder one page at a time.
+ *
+ * @author Charl Thiem
+ */
+@FunctionalInterface
+public interface PageConsumer {
+
+	/**
+	 * Consume a page of output.
+	 * <p>
+	 * The page is backed by the builder's buffer, which is reused for the next page once this method returns.
+	 * Implementations must therefore not keep a reference to it.
+	 *
+	 * @param page the page of output
+	 * @throws IOException if the page could not be consumed
+	 */
+	void accept(CharSequence page) throws IOException;
+
+	/**
+	 * Consume a page of output of a builder producing device bytes.
+	 * <p>
+	 * By default the page is passed to {@link #accept(CharSequence)} with one char per byte, so no byte is lost.
+	 * Consumers writing bytes override this to write the page as is.
+	 *
+	 * @param page the buffer holding the page
+	 * @param offset start of the page in the buffer
+	 * @param length number of bytes in the page
+	 * @throws IOException if the page could not be consumed
+	 */
+	default void accept(byte[] page, int offset, int length) throws IOException {
+		this.accept(new String(page, offset, length, StandardCharsets.ISO_8859_1));
+	}
+}
@@ -0,0 +1,37 @@
+package coza.trojanc.receipt.format;
+
+/**
+ * A {@link PrintFormatBuilder} whose output can be laid out in independent partitions and joined again.
+ * <p>
+ * Only builders that carry no printer state from one line to the next can be partitioned, as the output of
+ * a partition may not depend on what was laid out before it.
+ *
+ * @author Charl Thiem
+ */
+public interface PartitionableFormatBuilder extends PrintFormatBuilder {
+
+	/**
+	 * Determines if the output can be laid out in partitions. Partitions are held in memory until they are joined,
+	 * so builders handing fixed size pages to a consumer are laid out sequentially.
+	 *
+	 * @return <code>true</code> if the output can be partitioned
+	 */
+	default boolean isPartitionable(){
+		return true;
+	}
+
+	/**
+	 * Creates a new, empty builder with the same configuration as this builder, into which a partition
+	 * of the output can be laid out.
+	 *
+	 * @return the partition builder
+	 */
+	PrintFormatBuilder fork();
+
+	/**
+	 * Appends the output of a partition created with {@link #fork()} to this builder.
+	 *
+	 * @param partition the partition to append
+	 */
+	void join(PrintFormatBuilder partition);
+}
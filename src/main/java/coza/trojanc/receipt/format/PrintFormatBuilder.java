@@ -1,7 +1,12 @@
 package coza.trojanc.receipt.format;
 
 import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
 import coza.trojanc.receipt.shared.LineWrap;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+import coza.trojanc.receipt.shared.TableColumn;
 
 /**
  * @author Charl Thiem
@@ -110,6 +115,99 @@ public interface PrintFormatBuilder {
 
 	PrintFormatBuilder right(final String text, final LineWrap lineWrap);
 
+	/**
+	 * Sets the mode of the text inserted after this call. Builders that cannot print a mode ignore it.
+	 *
+	 * @param mode the mode, <code>null</code> for {@link Mode#NORMAL}
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder mode(final Mode mode);
+
+	/**
+	 * Prints an image on its own lines, completing the current line first. Builders that cannot print images
+	 * ignore it.
+	 *
+	 * @param image the encoded image
+	 * @param align the alignment of the image
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder image(final byte[] image, final Align align);
+
+	/**
+	 * Prints an image of which the hash is known, so builders caching the image do not hash it again.
+	 *
+	 * @param image the encoded image
+	 * @param imageHash the hash of the image, as given by {@link RasterCache#hash(byte[])}
+	 * @param align the alignment of the image
+	 * @return the print format builder
+	 */
+	default PrintFormatBuilder image(final byte[] image, final long imageHash, final Align align){
+		return this.image(image, align);
+	}
+
+	/**
+	 * Prints a barcode on its own lines, completing the current line first. Builders that cannot print barcodes
+	 * print the data as text.
+	 *
+	 * @param type the symbology of the barcode
+	 * @param data the data
+	 * @param height the height of the bars in dots
+	 * @param align the alignment of the barcode
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder barcode(final BarcodeType type, final String data, final int height, final Align align);
+
+	/**
+	 * Prints a QR code on its own lines, completing the current line first. Builders that cannot print QR codes
+	 * print the data as text.
+	 *
+	 * @param data the data
+	 * @param moduleSize the size of a module in dots
+	 * @param errorCorrection the error correction level
+	 * @param align the alignment of the code
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder qrCode(final String data, final int moduleSize, final QrErrorCorrection errorCorrection, final Align align);
+
+	/**
+	 * Feeds the paper past the cutter and cuts it, completing the current line first. Builders that cannot cut
+	 * ignore it.
+	 *
+	 * @param mode the cut mode
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder cut(final CutMode mode);
+
+	/**
+	 * Opens a cash drawer connected to the printer. Builders that cannot open drawers ignore it.
+	 *
+	 * @param pin the connector pin of the drawer, 0 or 1
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder openDrawer(final int pin);
+
+	/**
+	 * Prints a row of a table on lines of its own, completing the current line first. Every cell is laid out in
+	 * its column, and cells of wrapping columns that are longer than their column continue on the next lines.
+	 * Cells of other columns that are longer than their column are printed as '#' filling the column.
+	 *
+	 * @param columns the columns
+	 * @param spacing the number of spaces between two columns
+	 * @param cells the text of every column, <code>null</code> for an empty cell
+	 * @param modes the mode of every column
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder row(final TableColumn[] columns, final int spacing, final String[] cells, final Mode[] modes);
+
+	/**
+	 * Tells the builder about how many lines are printed next, so it can allocate its output once instead of
+	 * growing it while printing. Builders that can not use the hint ignore it.
+	 *
+	 * @param lines the number of lines, as estimated by {@link coza.trojanc.receipt.template.compile.OutputSizeEstimator}
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder expectLines(final int lines);
+
 	/**
 	 * Nl print format builder.
 	 *
@@ -131,6 +229,14 @@ public interface PrintFormatBuilder {
 	 */
 	Object getFormat();
 
+	/**
+	 * Clears the output and all state, so the builder can be reused for the next document. The buffers of the
+	 * builder keep their capacity.
+	 *
+	 * @return the print format builder
+	 */
+	PrintFormatBuilder reset();
+
 	/**
 	 * Gets line width.
 	 *
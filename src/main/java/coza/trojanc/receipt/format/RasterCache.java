@@ -0,0 +1,163 @@
+package coza.trojanc.receipt.format;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe cache of the printer commands of images, keyed by the hash and length of the image, the width and
+ * the density it is printed at. An image is decoded, scaled, dithered and encoded once, every later print copies
+ * the cached commands. The cache does not keep the images, callers that print the same image again pass the hash
+ * of {@link #hash(byte[])} so the image is not hashed on every print.
+ * <p>
+ * The cache holds at most <code>maxEntries</code> images, images printed once the cache is full are encoded
+ * every time they are printed.
+ *
+ * @author Charl Thiem
+ */
+public class RasterCache {
+
+	/**
+	 * Encodes an image into printer commands.
+	 */
+	@FunctionalInterface
+	public interface RasterEncoder {
+
+		/**
+		 * @param image The encoded image
+		 * @param width Width in dots the image must fit in
+		 * @param density Density the image is printed at
+		 * @return the printer commands
+		 */
+		byte[] encode(byte[] image, int width, int density);
+	}
+
+	private final int maxEntries;
+
+	private final ConcurrentMap<Key, byte[]> commands = new ConcurrentHashMap<>();
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	/**
+	 * Creates a new instance of a <code>RasterCache</code>.
+	 * @param maxEntries Maximum number of cached images
+	 */
+	public RasterCache(int maxEntries){
+		if(maxEntries < 1){
+			throw new IllegalArgumentException("Cache must hold at least 1 image");
+		}
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Hashes the content of an image into the 64 bit FNV-1a hash the cache is keyed by.
+	 *
+	 * @param image The encoded image
+	 * @return the hash of the image
+	 */
+	public static long hash(byte[] image){
+		long hash = 0xCBF29CE484222325L;
+		for(byte b : image){
+			hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the printer commands of an image, encoding them if they are not cached. The image is hashed on every
+	 * call.
+	 *
+	 * @param image The encoded image
+	 * @param width Width in dots the image must fit in
+	 * @param density Density the image is printed at
+	 * @param encoder Encoder of the printer commands
+	 * @return the printer commands, must not be modified
+	 */
+	public byte[] get(byte[] image, int width, int density, RasterEncoder encoder){
+		return get(image, hash(image), width, density, encoder);
+	}
+
+	/**
+	 * Gets the printer commands of an image, encoding them if they are not cached.
+	 *
+	 * @param image The encoded image
+	 * @param imageHash The hash of the image, as given by {@link #hash(byte[])}
+	 * @param width Width in dots the image must fit in
+	 * @param density Density the image is printed at
+	 * @param encoder Encoder of the printer commands
+	 * @return the printer commands, must not be modified
+	 */
+	public byte[] get(byte[] image, long imageHash, int width, int density, RasterEncoder encoder){
+		final Key key = new Key(imageHash, image.length, width, density);
+		byte[] cached = commands.get(key);
+		if(cached != null){
+			hitCount.increment();
+			return cached;
+		}
+		missCount.increment();
+		final byte[] encoded = encoder.encode(image, width, density);
+		if(commands.size() < maxEntries){
+			cached = commands.putIfAbsent(key, encoded);
+		}
+		return cached != null ? cached : encoded;
+	}
+
+	/**
+	 * Removes all cached images.
+	 */
+	public void clear(){
+		commands.clear();
+	}
+
+	public int size(){
+		return commands.size();
+	}
+
+	public long getHitCount(){
+		return hitCount.sum();
+	}
+
+	public long getMissCount(){
+		return missCount.sum();
+	}
+
+	/**
+	 * Key of an image, which does not hold on to the image itself. The content of the images is never compared,
+	 * keys that are equal are assumed to be of equal images.
+	 */
+	private static final class Key {
+
+		private final long imageHash;
+
+		private final int length;
+
+		private final int width;
+
+		private final int density;
+
+		Key(long imageHash, int length, int width, int density){
+			this.imageHash = imageHash;
+			this.length = length;
+			this.width = width;
+			this.density = density;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return imageHash == key.imageHash
+					&& length == key.length
+					&& width == key.width
+					&& density == key.density;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((Long.hashCode(imageHash) * 31 + length) * 31 + width) * 31 + density;
+		}
+	}
+}
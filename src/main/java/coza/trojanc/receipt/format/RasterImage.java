@@ -0,0 +1,164 @@
+package coza.trojanc.receipt.format;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A 1 bit image for printers printing raster images, packed 8 dots per byte with the most significant bit the
+ * leftmost dot, and a set bit a printed dot. Every row starts at a new byte.
+ *
+ * @author Charl Thiem
+ */
+public class RasterImage {
+
+	private final int width;
+
+	private final int height;
+
+	private final int bytesPerRow;
+
+	private final byte[] data;
+
+	/**
+	 * Creates a new instance of a <code>RasterImage</code>.
+	 * @param width Width in dots
+	 * @param height Height in dots
+	 * @param data The packed dots, <code>height</code> rows of <code>(width + 7) / 8</code> bytes
+	 */
+	public RasterImage(int width, int height, byte[] data){
+		if(width < 1 || height < 1){
+			throw new IllegalArgumentException("Raster image must be at least 1 dot wide and high");
+		}
+		this.width = width;
+		this.height = height;
+		this.bytesPerRow = (width + 7) >>> 3;
+		if(data.length != this.bytesPerRow * height){
+			throw new IllegalArgumentException("Raster image of " + width + "x" + height + " needs " + (this.bytesPerRow * height) + " bytes");
+		}
+		this.data = data;
+	}
+
+	/**
+	 * Decodes an image, scales it down to fit a width and dithers it to 1 bit with Floyd-Steinberg error diffusion.
+	 * Transparent parts of the image are white.
+	 *
+	 * @param image The encoded image, in a format supported by {@link ImageIO}
+	 * @param maxWidth Maximum width in dots
+	 * @return the raster image
+	 */
+	public static RasterImage read(byte[] image, int maxWidth){
+		final BufferedImage decoded;
+		try{
+			decoded = ImageIO.read(new ByteArrayInputStream(image));
+		}
+		catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+		if(decoded == null){
+			throw new IllegalArgumentException("Image format is not supported");
+		}
+		return dither(scale(decoded, maxWidth));
+	}
+
+	/**
+	 * Scales an image down to fit a width, keeping its aspect ratio, onto a white background.
+	 */
+	private static BufferedImage scale(BufferedImage image, int maxWidth){
+		final int width = Math.min(image.getWidth(), maxWidth);
+		final int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D graphics = scaled.createGraphics();
+		try{
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, width, height);
+			graphics.drawImage(image, 0, 0, width, height, null);
+		}
+		finally{
+			graphics.dispose();
+		}
+		return scaled;
+	}
+
+	/**
+	 * Dithers a grey image to 1 bit, diffusing the error of every dot over the next dots of the row and the row
+	 * below. Only two rows of errors are kept.
+	 */
+	private static RasterImage dither(BufferedImage grey){
+		final int width = grey.getWidth();
+		final int height = grey.getHeight();
+		final int bytesPerRow = (width + 7) >>> 3;
+		final byte[] data = new byte[bytesPerRow * height];
+		final int[] row = new int[width];
+		int[] errors = new int[width + 2];
+		int[] nextErrors = new int[width + 2];
+
+		for(int y = 0; y < height; y++){
+			grey.getRaster().getSamples(0, y, width, 1, 0, row);
+			for(int x = 0; x < width; x++){
+				final int value = row[x] + (errors[x + 1] >> 4);
+				final int error;
+				if(value < 128){
+					data[y * bytesPerRow + (x >>> 3)] |= (byte) (0x80 >>> (x & 7));
+					error = value;
+				}
+				else{
+					error = value - 255;
+				}
+				errors[x + 2] += error * 7;
+				nextErrors[x] += error * 3;
+				nextErrors[x + 1] += error * 5;
+				nextErrors[x + 2] += error;
+			}
+			int[] swap = errors;
+			errors = nextErrors;
+			nextErrors = swap;
+			Arrays.fill(nextErrors, 0);
+		}
+		return new RasterImage(width, height, data);
+	}
+
+	/**
+	 * @return width in dots
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return height in dots
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return number of bytes of every row
+	 */
+	public int getBytesPerRow() {
+		return bytesPerRow;
+	}
+
+	/**
+	 * @return the packed dots, not copied
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * @param x column of the dot
+	 * @param y row of the dot
+	 * @return if the dot is printed
+	 */
+	public boolean isSet(int x, int y){
+		return (data[y * bytesPerRow + (x >>> 3)] & (0x80 >>> (x & 7))) != 0;
+	}
+}
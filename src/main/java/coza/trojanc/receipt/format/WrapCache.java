@@ -0,0 +1,195 @@
+package coza.trojanc.receipt.format;
+
+import coza.trojanc.receipt.shared.LineBreaker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe cache of the lines texts are wrapped into, keyed by the text and the width it is wrapped at.
+ * Product names, modifiers and footers are wrapped at the same widths on every receipt, a cached text is wrapped
+ * once and its lines replayed from then on. The alignment and wrap mode of a text only change the width it is
+ * wrapped at, so they are covered by the width.
+ * <p>
+ * The cache is split into segments, each locked on its own and evicting its least recently used texts when full.
+ * Texts longer than {@link #MAX_TEXT_LENGTH} are not cached.
+ *
+ * @author Charl Thiem
+ */
+public class WrapCache {
+
+	/**
+	 * Longest text that is cached
+	 */
+	public static final int MAX_TEXT_LENGTH = 512;
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Creates a new instance of a <code>WrapCache</code>.
+	 * @param maxEntries Maximum number of cached texts and widths
+	 */
+	public WrapCache(int maxEntries){
+		if(maxEntries < 1){
+			throw new IllegalArgumentException("Cache must hold at least 1 text");
+		}
+		final int segmentEntries = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+		for(int i = 0; i < SEGMENTS; i++){
+			segments[i] = new Segment(segmentEntries);
+		}
+	}
+
+	/**
+	 * Resets a line breaker to wrap a whole text, replaying the lines of the text when they are cached.
+	 *
+	 * @param breaker The breaker to reset
+	 * @param text The text
+	 * @param width The maximum number of columns of a line
+	 * @param breakPositions The break positions of the text, or <code>null</code> to scan the text
+	 * @return the line breaker
+	 */
+	public LineBreaker reset(LineBreaker breaker, String text, int width, int[] breakPositions){
+		if(text.length() > MAX_TEXT_LENGTH){
+			return breaker.reset(text, 0, text.length(), width, breakPositions);
+		}
+		final Key key = new Key(text, width);
+		final Segment segment = segments[(key.hashCode() ^ (key.hashCode() >>> 16)) & (SEGMENTS - 1)];
+		int[] lines;
+		synchronized(segment){
+			lines = segment.get(key);
+		}
+		if(lines != null){
+			hitCount.increment();
+			return breaker.replay(text, lines);
+		}
+		missCount.increment();
+		lines = wrap(breaker.reset(text, 0, text.length(), width, breakPositions));
+		synchronized(segment){
+			segment.put(key, lines);
+		}
+		return breaker.replay(text, lines);
+	}
+
+	/**
+	 * Collects the start and end of every line of a breaker.
+	 */
+	private static int[] wrap(LineBreaker breaker){
+		int[] lines = new int[8];
+		int length = 0;
+		while(breaker.next()){
+			if(length == lines.length){
+				final int[] grown = new int[lines.length * 2];
+				System.arraycopy(lines, 0, grown, 0, length);
+				lines = grown;
+			}
+			lines[length++] = breaker.getLineStart();
+			lines[length++] = breaker.getLineEnd();
+		}
+		final int[] trimmed = new int[length];
+		System.arraycopy(lines, 0, trimmed, 0, length);
+		return trimmed;
+	}
+
+	/**
+	 * Removes all cached texts.
+	 */
+	public void clear(){
+		for(Segment segment : segments){
+			synchronized(segment){
+				segment.clear();
+			}
+		}
+	}
+
+	public int size(){
+		int size = 0;
+		for(Segment segment : segments){
+			synchronized(segment){
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHitCount(){
+		return hitCount.sum();
+	}
+
+	public long getMissCount(){
+		return missCount.sum();
+	}
+
+	public long getEvictionCount(){
+		return evictionCount.sum();
+	}
+
+	/**
+	 * @return the share of lookups that were cached, 0 when there were none
+	 */
+	public double getHitRatio(){
+		final long hits = hitCount.sum();
+		final long lookups = hits + missCount.sum();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * A segment of the cache, in order of access.
+	 */
+	private final class Segment extends LinkedHashMap<Key, int[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxEntries;
+
+		Segment(int maxEntries){
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+			if(size() > maxEntries){
+				evictionCount.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Key of a text wrapped at a width.
+	 */
+	private static final class Key {
+
+		private final String text;
+
+		private final int width;
+
+		Key(String text, int width){
+			this.text = text;
+			this.width = width;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return width == key.width && text.equals(key.text);
+		}
+
+		@Override
+		public int hashCode() {
+			return text.hashCode() * 31 + width;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package coza.trojanc.receipt.format;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A {@link PageConsumer} that writes pages to a {@link Writer}. Pages held in a {@link StringBuilder} are copied
+ * through one reusable char buffer, so writing a page does not allocate a string of the page size. The writer is
+ * not flushed, which is left to the owner of the writer.
+ *
+ * @author Charl Thiem
+ */
+public class WriterPageConsumer implements PageConsumer {
+
+	/**
+	 * Default size of the buffer pages are copied through
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	/**
+	 * Writer to write pages to
+	 */
+	private final Writer out;
+
+	/**
+	 * Buffer pages are copied through before being written
+	 */
+	private final char[] buffer;
+
+	/**
+	 * Creates a new instance of a <code>WriterPageConsumer</code>.
+	 *
+	 * @param out Writer to write pages to
+	 */
+	public WriterPageConsumer(Writer out){
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of a <code>WriterPageConsumer</code>.
+	 *
+	 * @param out Writer to write pages to
+	 * @param bufferSize Size of the buffer pages are copied through
+	 */
+	public WriterPageConsumer(Writer out, int bufferSize){
+		if(bufferSize < 1){
+			throw new IllegalArgumentException("Buffer size must be larger than 0");
+		}
+		this.out = out;
+		this.buffer = new char[bufferSize];
+	}
+
+	@Override
+	public void accept(CharSequence page) throws IOException {
+		if(page instanceof StringBuilder){
+			final StringBuilder chars = (StringBuilder) page;
+			for(int offset = 0; offset < chars.length(); offset += buffer.length){
+				final int count = Math.min(buffer.length, chars.length() - offset);
+				chars.getChars(offset, offset + count, buffer, 0);
+				out.write(buffer, 0, count);
+			}
+		}
+		else{
+			out.append(page);
+		}
+	}
+}
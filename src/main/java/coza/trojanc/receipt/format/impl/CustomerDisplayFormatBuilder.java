@@ -0,0 +1,257 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.format.AbstractPlainTextFormatBuilder;
+import coza.trojanc.receipt.format.ByteArrayBuilder;
+import coza.trojanc.receipt.format.CodePage;
+import coza.trojanc.receipt.format.PrintFormatBuilder;
+import coza.trojanc.receipt.shared.DisplayWidth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A format builder for customer displays, such as 2 line by 20 column pole displays. Lines are laid out with the
+ * alignment of the other builders into a window of the rows of the display, lines below the window are left out.
+ * Print modes, images, cuts and the drawer do not apply to a display.
+ * <p>
+ * Every call of {@link #getFormat()} ends an update of the display. The builder keeps a copy of what the display
+ * shows, and the update only holds the commands moving the cursor to the chars that changed and the changed chars,
+ * so a display on a slow serial line is not redrawn on every scan. Short runs of unchanged chars between changes
+ * are written again when that is shorter than moving the cursor over them. The window is cleared for the next
+ * update, which lays out the whole window again.
+ * <p>
+ * The commands are the ESC/POS customer display commands of Epson DM-D and compatible displays, implementations
+ * override {@link #appendClear(ByteArrayBuilder)} and
+ * {@link #appendCursorMove(ByteArrayBuilder, int, int)} for other displays.
+ *
+ * @author Charl Thiem
+ */
+public class CustomerDisplayFormatBuilder extends AbstractPlainTextFormatBuilder {
+
+	/**
+	 * Number of rows of a pole display
+	 */
+	public static final int DEFAULT_ROWS = 2;
+
+	/**
+	 * Number of columns of a pole display
+	 */
+	public static final int DEFAULT_COLUMNS = 20;
+
+	/** Number of rows of the display */
+	private final int rows;
+
+	/** Code page of the display */
+	private final CodePage codePage;
+
+	/** Chars of the window being laid out, row after row */
+	private final char[] window;
+
+	/** Chars the display shows, row after row */
+	private final char[] shown;
+
+	/** <code>false</code> when it is not known what the display shows */
+	private boolean shownKnown;
+
+	/** Position of the cursor of the display in {@link #shown}, -1 when it is not known */
+	private int cursor;
+
+	/** Row and column the next char is laid out in */
+	private int row;
+	private int column;
+
+	/** Commands of the update */
+	private ByteArrayBuilder bytes;
+
+	/**
+	 * Creates a new instance of a <code>CustomerDisplayFormatBuilder</code> for a 2 by 20 display showing code
+	 * page 437.
+	 */
+	public CustomerDisplayFormatBuilder() {
+		this(DEFAULT_COLUMNS, DEFAULT_ROWS, CodePage.CP437);
+	}
+
+	/**
+	 * Creates a new instance of a <code>CustomerDisplayFormatBuilder</code>
+	 *
+	 * @param columns the number of columns of the display
+	 * @param rows the number of rows of the display
+	 * @param codePage the code page of the display
+	 */
+	public CustomerDisplayFormatBuilder(int columns, int rows, CodePage codePage) {
+		super(columns);
+		if (rows < 1) {
+			throw new IllegalArgumentException("A display must have at least 1 row");
+		}
+		this.rows = rows;
+		this.codePage = codePage;
+		this.window = new char[rows * columns];
+		this.shown = new char[rows * columns];
+		Arrays.fill(this.window, ' ');
+	}
+
+	@Override
+	public PrintFormatBuilder initialize() {
+		super.initialize();
+		// Called from the super constructor, before the fields are initialised
+		if (this.bytes == null) {
+			this.bytes = new ByteArrayBuilder();
+		}
+		if (this.window != null) {
+			Arrays.fill(this.window, ' ');
+		}
+		this.bytes.setLength(0);
+		this.row = 0;
+		this.column = 0;
+		return this;
+	}
+
+	/**
+	 * Gets the update of the display, and clears the window for the next update.
+	 *
+	 * @return the commands updating the display, empty when nothing changed
+	 */
+	@Override
+	public Object getFormat() {
+		this.completeCharBuffer();
+		this.appendChanges();
+		final byte[] update = this.bytes.toByteArray();
+		this.initialize();
+		return update;
+	}
+
+	/**
+	 * Writes the update of the display to a stream, and clears the window for the next update.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		this.completeCharBuffer();
+		this.appendChanges();
+		this.bytes.writeTo(out);
+		this.initialize();
+	}
+
+	/**
+	 * Forgets what the display shows, so the next update clears it and writes the whole window. Used when the
+	 * display was reset or written to by something else.
+	 */
+	public void invalidate() {
+		this.shownKnown = false;
+	}
+
+	/**
+	 * @return the number of rows of the display
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	protected void appendText(char[] text, int from, int to) {
+		for (int i = from; i < to; i++) {
+			this.putChar(text[i]);
+		}
+	}
+
+	@Override
+	protected void appendText(CharSequence text, int from, int to) {
+		for (int i = from; i < to; i++) {
+			this.putChar(text.charAt(i));
+		}
+	}
+
+	@Override
+	protected void appendNewLine() {
+		this.row++;
+		this.column = 0;
+	}
+
+	/**
+	 * Appends the command clearing the display and moving the cursor to the first column of the first row.
+	 *
+	 * @param bytes the bytes to append to
+	 */
+	protected void appendClear(ByteArrayBuilder bytes) {
+		bytes.append(0x0C);
+	}
+
+	/**
+	 * Appends the command moving the cursor.
+	 *
+	 * @param bytes the bytes to append to
+	 * @param row the row, from 0
+	 * @param column the column, from 0
+	 */
+	protected void appendCursorMove(ByteArrayBuilder bytes, int row, int column) {
+		bytes.append(0x1F, 0x24, column + 1, row + 1);
+	}
+
+	/**
+	 * @return the number of bytes of the command moving the cursor
+	 */
+	protected int getCursorMoveLength() {
+		return 4;
+	}
+
+	/**
+	 * Lays out a char in the window, the filler of a wide char is shown as a space.
+	 */
+	private void putChar(char c) {
+		if (this.row < this.rows && this.column < this.lineWidth) {
+			this.window[this.row * this.lineWidth + this.column] = c == DisplayWidth.FILLER ? ' ' : c;
+		}
+		this.column++;
+	}
+
+	/**
+	 * Appends the commands changing what the display shows into the window.
+	 */
+	private void appendChanges() {
+		if (!this.shownKnown) {
+			this.appendClear(this.bytes);
+			Arrays.fill(this.shown, ' ');
+			this.shownKnown = true;
+			this.cursor = 0;
+		}
+		final int moveLength = this.getCursorMoveLength();
+		for (int row = 0; row < this.rows; row++) {
+			final int offset = row * this.lineWidth;
+			int column = 0;
+			while (column < this.lineWidth) {
+				if (this.window[offset + column] == this.shown[offset + column]) {
+					column++;
+					continue;
+				}
+				// Join the changes that follow closer than a cursor move
+				int last = column;
+				for (int i = column + 1; i < this.lineWidth && i - last - 1 < moveLength; i++) {
+					if (this.window[offset + i] != this.shown[offset + i]) {
+						last = i;
+					}
+				}
+				if (this.cursor != offset + column) {
+					this.appendCursorMove(this.bytes, row, column);
+				}
+				for (int i = column; i <= last; i++) {
+					this.appendChar(this.window[offset + i]);
+					this.shown[offset + i] = this.window[offset + i];
+				}
+				column = last + 1;
+				// Displays differ in where the cursor goes after the last column
+				this.cursor = column < this.lineWidth ? offset + column : -1;
+			}
+		}
+	}
+
+	/**
+	 * Encodes a char into the code page of the display, chars it does not have and control chars are shown
+	 * as '?'.
+	 */
+	private void appendChar(char c) {
+		final int b = c < 0x20 || c == 0x7F ? -1 : this.codePage.encode(c);
+		this.bytes.append(b < 0 ? '?' : b);
+	}
+}
@@ -1,14 +1,20 @@
 package coza.trojanc.receipt.format.impl;
 
-import coza.trojanc.receipt.format.AbstractPlainTextFormatBuilder;
+import coza.trojanc.receipt.format.AbstractCommandFormatBuilder;
+import coza.trojanc.receipt.format.CodePage;
+import coza.trojanc.receipt.format.CommandSet;
+import coza.trojanc.receipt.format.PageConsumer;
 import coza.trojanc.receipt.format.PrintFormatBuilder;
-import coza.trojanc.receipt.shared.PrintStringUtil;
+import coza.trojanc.receipt.format.RasterCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
- * The type Epson print format builder.
+ * The type Epson print format builder, driving the printer with {@link EscPosCommandSet}.
  * @author Charl Thiem
  */
-public class EpsonPrintFormatBuilder extends AbstractPlainTextFormatBuilder {
+public class EpsonPrintFormatBuilder extends AbstractCommandFormatBuilder {
 
 	/**
 	 * Paper sensors<br>
@@ -134,16 +140,53 @@ public class EpsonPrintFormatBuilder extends AbstractPlainTextFormatBuilder {
 	}
 	
 	
-	/** Alignment printer is currently in */
-	private byte current_alignment = Print_Align.LEFT;
-	/** Print mode printer is currently in */
-	private byte current_mode = Print_Mode.DEFAULT;
+	/**
+	 * Densities of raster images
+	 * NOTE: Adding this inline will not change the density, it has
+	 * to be applied <strong>with</strong> the command
+	 */
+	public static class Raster_Density {
+		/**
+		 * The constant NORMAL.
+		 */
+		public static final byte	NORMAL			= 0x00;
+		/**
+		 * The constant DOUBLE_WIDTH.
+		 */
+		public static final byte	DOUBLE_WIDTH	= 0x01;
+		/**
+		 * The constant DOUBLE_HEIGHT.
+		 */
+		public static final byte	DOUBLE_HEIGHT	= 0x02;
+		/**
+		 * The constant QUADRUPLE.
+		 */
+		public static final byte	QUADRUPLE		= 0x03;
+	}
+
+	/**
+	 * Commands of Epson printers
+	 */
+	private static final CommandSet COMMANDS = new EscPosCommandSet();
+
+	/**
+	 * Commands of raster images shared by Epson builders that have no cache of their own
+	 */
+	private static final RasterCache DEFAULT_RASTER_CACHE = new RasterCache(64);
+
+	/**
+	 * Code pages used when the printer is not told otherwise
+	 */
+	public static final CodePage[] DEFAULT_CODE_PAGES = {CodePage.CP437, CodePage.CP858, CodePage.CP1252};
+
+	/** Optimizer the bytes are passed through before they are sent, <code>null</code> to send them as is */
+	private EscPosOptimizer optimizer;
 
 	/**
 	 * Creates a new instance of a <code>EpsonPrintBuilder</code>
 	 */
 	public EpsonPrintFormatBuilder(){
-		super(40);
+		this(40);
 	}
 
 	/**
@@ -153,95 +196,101 @@ public class EpsonPrintFormatBuilder extends AbstractPlainTextFormatBuilder {
 	 * @param line_width the line width
 	 */
 	public EpsonPrintFormatBuilder(int line_width) {
-		super(line_width);
+		this(line_width, DEFAULT_CODE_PAGES);
 	}
 
-
-	public PrintFormatBuilder initialize(){
-		super.initialize();
-		super.builder.append((char) 0x1B).append((char) 0x40);
-		this.current_alignment = Print_Align.LEFT;
-		this.current_mode = Print_Mode.DEFAULT;
-		return this;
-	}
-
-	public PrintFormatBuilder center(String text) {
-		this.changeMode(Print_Mode.DEFAULT);
-		this.setAlignment(Print_Align.CENTER);
-		this.printTextAsLines(text, false);
-		return this;
-	}
-
-	public PrintFormatBuilder left(String text) {
-		this.setAlignment(Print_Align.LEFT);
-		this.printTextAsLines(text, false);
-		return this;
+	/**
+	 * Creates a new instances of <code>EpsonPrintBuilder</code> setting
+	 * widrth of the paper and the code pages of the printer.
+	 *
+	 * @param line_width the line width
+	 * @param codePages the code pages the printer supports, in order of preference
+	 */
+	public EpsonPrintFormatBuilder(int line_width, CodePage... codePages) {
+		super(line_width, COMMANDS, DEFAULT_RASTER_CACHE, codePages);
 	}
 
-	public PrintFormatBuilder nl() {
-		super.nl();
-		// Clear current style
-		//this.changeMode(Print_Mode.DEFAULT); NOT NEEDED AS EACH LINE RESETS STYLE
-		/* Move to next line */
-		super.builder.append((char) 0x0A);
-		return this;
+	/**
+	 * Clears the output and the optimizer, so a reused builder sends the bytes as is like a new one.
+	 */
+	@Override
+	public PrintFormatBuilder reset() {
+		this.optimizer = null;
+		return super.reset();
 	}
 
-
-	public PrintFormatBuilder right(String text) {
-		this.changeMode(Print_Mode.DEFAULT);
-		this.setAlignment(Print_Align.RIGHT);
-		this.printTextAsLines(text, false);
-		return this;
+	/**
+	 * Copies the bytes to send to the printer, passed through the optimizer when there is one.
+	 *
+	 * @return the bytes
+	 */
+	@Override
+	protected byte[] toByteArray() {
+		if (this.optimizer != null) {
+			return this.optimizer.optimize(this.bytes.array(), 0, this.bytes.length());
+		}
+		return super.toByteArray();
 	}
-	
 
+	/**
+	 * Writes the bytes to send to the printer to a stream, without copying them when not optimizing.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the stream could not be written to
+	 */
 	@Override
-	public PrintFormatBuilder insertCenter(String text, int position) {
-		this.setAlignment(Print_Align.LEFT);
-		this.changeMode(Print_Mode.DEFAULT);
-		return super.insertCenter(text, position);
+	public void writeTo(OutputStream out) throws IOException {
+		if (this.optimizer != null) {
+			this.completeCharBuffer();
+			out.write(this.optimizer.optimize(this.bytes.array(), 0, this.bytes.length()));
+		}
+		else {
+			super.writeTo(out);
+		}
 	}
-	
 
 	@Override
-	public PrintFormatBuilder insertLeft(String text, int position_left) {
-		this.setAlignment(Print_Align.LEFT);
-		this.changeMode(Print_Mode.DEFAULT);
-		return super.insertLeft(text, position_left);
+	protected void writePage(PageConsumer consumer) throws IOException {
+		if (this.optimizer != null) {
+			final byte[] page = this.optimizer.optimize(this.bytes.array(), 0, this.bytes.length());
+			consumer.accept(page, 0, page.length);
+			this.bytes.setLength(0);
+		}
+		else {
+			super.writePage(consumer);
+		}
 	}
 
-	@Override
-	public PrintFormatBuilder insertRight(String text, int position_right) {
-		this.setAlignment(Print_Align.LEFT);
-		this.changeMode(Print_Mode.DEFAULT);
-		return super.insertRight(text, position_right);
+	/**
+	 * Sets the optimizer the bytes are passed through before they are sent to the printer.
+	 *
+	 * @param optimizer the optimizer, <code>null</code> to send the bytes as is
+	 */
+	public void setOptimizer(EscPosOptimizer optimizer) {
+		this.optimizer = optimizer;
 	}
 
 	/**
-	 * Splits the text specified into multiple lines.
-	 * @param text
+	 * @return the optimizer the bytes are passed through, <code>null</code> if they are sent as is
 	 */
-	private void printTextAsLines(String text, boolean double_width) {
-		text = super.fixCharacters(text);
-		String [] line = PrintStringUtil.getLines(text, (double_width ? lineWidth/2 : lineWidth) , " ");
-		for(int i = 0 ; i < line.length ; i++) {
-			super.builder.append(line[i]);
-			this.nl();
-		}
+	public EscPosOptimizer getOptimizer() {
+		return this.optimizer;
 	}
 
 	/**
-	 * Changes the alignment of printing
+	 * Sets the density raster images are printed at.
 	 *
-	 * @param alignment Byte representing the new aligmnet style.
+	 * @param rasterDensity one of the {@link Raster_Density} constants
 	 */
-	protected void setAlignment(byte alignment) {
-		/* Only change the alignment if it REALY changed */
-		if (this.current_alignment != alignment) {
-			this.current_alignment = alignment;
-			super.builder.append((char) 0x1B).append((char) 0x61).append((char) alignment);
+	public void setRasterDensity(byte rasterDensity) {
+		if (rasterDensity < Raster_Density.NORMAL || rasterDensity > Raster_Density.QUADRUPLE) {
+			throw new IllegalArgumentException("Unknown raster density " + rasterDensity);
 		}
+		this.rasterDensity = rasterDensity;
+	}
+
+	public byte getRasterDensity() {
+		return (byte) this.rasterDensity;
 	}
 
 	/**
@@ -250,20 +299,7 @@ public class EpsonPrintFormatBuilder extends AbstractPlainTextFormatBuilder {
 	 * @param font Byte representing the new font.
 	 */
 	protected void setFont(byte font) {
-		super.builder.append((char) 0x1B).append((char) 0x4D).append((char) font);
-	}
-
-	/**
-	 * Changes the printing mode of the printer
-	 *
-	 * @param mode Byte representing the new print mode.
-	 */
-	protected void changeMode(byte mode) {
-		// Only change the mode if it REALY changed
-		if (this.current_mode != mode) {
-			this.current_mode = mode;
-			super.builder.append((char) 0x1B).append((char) 0x21).append((char) mode);	
-		}
+		this.bytes.append(0x1B, 0x4D, font);
 	}
 
 }
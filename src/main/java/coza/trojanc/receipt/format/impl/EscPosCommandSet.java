@@ -0,0 +1,189 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.format.ByteArrayBuilder;
+import coza.trojanc.receipt.format.CodePage;
+import coza.trojanc.receipt.format.CommandSet;
+import coza.trojanc.receipt.format.RasterImage;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+
+/**
+ * The ESC/POS commands of Epson and compatible printers. The {@link CommandSet} mode bits are the bits of ESC !.
+ * @author Charl Thiem
+ */
+public class EscPosCommandSet implements CommandSet {
+
+	/**
+	 * Time the drawer pulse is on, in units of 2ms
+	 */
+	private static final int DRAWER_PULSE_ON = 25;
+
+	/**
+	 * Time the drawer pulse is off, in units of 2ms
+	 */
+	private static final int DRAWER_PULSE_OFF = 250;
+
+	/**
+	 * Height of barcodes after the printer is initialized
+	 */
+	private static final int DEFAULT_BARCODE_HEIGHT = 162;
+
+	/**
+	 * Most rows of a single raster image command
+	 */
+	private static final int MAX_RASTER_ROWS = 2303;
+
+	@Override
+	public void initialize(ByteArrayBuilder out) {
+		out.append(0x1B, 0x40);
+	}
+
+	@Override
+	public void newLine(ByteArrayBuilder out) {
+		out.append(0x0A);
+	}
+
+	@Override
+	public void alignment(ByteArrayBuilder out, Align align) {
+		out.append(0x1B, 0x61, alignOf(align));
+	}
+
+	@Override
+	public void mode(ByteArrayBuilder out, int from, int to) {
+		out.append(0x1B, 0x21, to);
+	}
+
+	@Override
+	public CodePage getInitialCodePage() {
+		return CodePage.CP437;
+	}
+
+	@Override
+	public boolean supports(CodePage codePage) {
+		return true;
+	}
+
+	@Override
+	public void codePage(ByteArrayBuilder out, CodePage codePage) {
+		out.append(0x1B, 0x74, codePage.getEscPosNumber());
+	}
+
+	/**
+	 * Code 128 data starts with the code set, code set B covers ASCII.
+	 */
+	@Override
+	public String barcodeData(BarcodeType type, String data) {
+		final String barcodeData = (type == BarcodeType.CODE128 && data.charAt(0) != '{') ? "{B" + data : data;
+		if (barcodeData.length() > 255) {
+			throw new IllegalArgumentException("Barcode data is longer than 255 characters");
+		}
+		return barcodeData;
+	}
+
+	/**
+	 * Sets the height with GS h. After the printer is initialized, GS H also selects printing the data below barcodes.
+	 */
+	@Override
+	public void barcodeHeight(ByteArrayBuilder out, int from, int to) {
+		if (to != DEFAULT_BARCODE_HEIGHT || from != UNKNOWN_HEIGHT) {
+			out.append(0x1D, 0x68, to);
+		}
+		if (from == UNKNOWN_HEIGHT) {
+			out.append(0x1D, 0x48, 0x02);
+		}
+	}
+
+	/**
+	 * Prints a barcode with GS k.
+	 */
+	@Override
+	public void barcode(ByteArrayBuilder out, BarcodeType type, String data, int height) {
+		out.append(0x1D, 0x6B, barcodeSystemOf(type), data.length());
+		for (int i = 0; i < data.length(); i++) {
+			out.append(data.charAt(i));
+		}
+	}
+
+	/**
+	 * Prints a QR code with GS ( k, model 2.
+	 */
+	@Override
+	public void qrCode(ByteArrayBuilder out, byte[] data, int moduleSize, QrErrorCorrection errorCorrection) {
+		final int storeLength = data.length + 3;
+		// Model 2, module size and error correction
+		out.append(0x1D, 0x28, 0x6B, 0x04, 0x00, 0x31, 0x41, 0x32, 0x00);
+		out.append(0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x43, Math.max(1, Math.min(moduleSize, 16)));
+		out.append(0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x45, 0x30 + errorCorrection.ordinal());
+		// Store the data and print it
+		out.append(0x1D, 0x28, 0x6B, storeLength & 0xFF, storeLength >>> 8, 0x31, 0x50, 0x30);
+		out.append(data, 0, data.length);
+		out.append(0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x51, 0x30);
+	}
+
+	/**
+	 * Encodes an image into GS v 0 commands, in bands the printer accepts. The density is one of the
+	 * {@link EpsonPrintFormatBuilder.Raster_Density} constants.
+	 */
+	@Override
+	public byte[] raster(byte[] image, int dotsPerLine, int density) {
+		final int maxWidth = (density & EpsonPrintFormatBuilder.Raster_Density.DOUBLE_WIDTH) != 0 ? Math.max(dotsPerLine / 2, 1) : dotsPerLine;
+		final RasterImage raster = RasterImage.read(image, maxWidth);
+		final int bytesPerRow = raster.getBytesPerRow();
+		final ByteArrayBuilder commands = new ByteArrayBuilder(raster.getData().length + 8);
+		for (int row = 0; row < raster.getHeight(); row += MAX_RASTER_ROWS) {
+			final int rows = Math.min(MAX_RASTER_ROWS, raster.getHeight() - row);
+			commands.append(0x1D, 0x76, 0x30, density, bytesPerRow & 0xFF, bytesPerRow >>> 8, rows & 0xFF, rows >>> 8);
+			commands.append(raster.getData(), row * bytesPerRow, rows * bytesPerRow);
+		}
+		return commands.toByteArray();
+	}
+
+	/**
+	 * Feeds the paper to the cutter and cuts it with GS V, function B.
+	 */
+	@Override
+	public void cut(ByteArrayBuilder out, CutMode mode) {
+		out.append(0x1D, 0x56, 0x41 + (mode == CutMode.FULL ? EpsonPrintFormatBuilder.Cut_Style.FULL : EpsonPrintFormatBuilder.Cut_Style.PARTIALLY), 0x00);
+	}
+
+	/**
+	 * Opens a cash drawer with ESC p, with a pulse of 50ms on and 500ms off.
+	 */
+	@Override
+	public void openDrawer(ByteArrayBuilder out, int pin) {
+		out.append(0x1B, 0x70, pin, DRAWER_PULSE_ON, DRAWER_PULSE_OFF);
+	}
+
+	/**
+	 * Gets the ESC a alignment of an alignment
+	 */
+	private static byte alignOf(Align align) {
+		if (align == Align.RIGHT) {
+			return EpsonPrintFormatBuilder.Print_Align.RIGHT;
+		}
+		else if (align == Align.LEFT) {
+			return EpsonPrintFormatBuilder.Print_Align.LEFT;
+		}
+		return EpsonPrintFormatBuilder.Print_Align.CENTER;
+	}
+
+	/**
+	 * Gets the GS k barcode system of a symbology
+	 */
+	private static int barcodeSystemOf(BarcodeType type) {
+		switch (type) {
+			case UPC_A: return 65;
+			case UPC_E: return 66;
+			case EAN13: return 67;
+			case EAN8: return 68;
+			case CODE39: return 69;
+			case ITF: return 70;
+			case CODABAR: return 71;
+			case CODE93: return 72;
+			case CODE128: return 73;
+			default: throw new IllegalArgumentException("Unknown barcode type " + type);
+		}
+	}
+}
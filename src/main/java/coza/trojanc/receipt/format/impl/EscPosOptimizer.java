@@ -0,0 +1,334 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.format.ByteArrayBuilder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rewrites an ESC/POS command stream into an equivalent, shorter one.
+ * <ul>
+ *     <li>ESC a, ESC ! and ESC t are only sent right before the characters they apply to, so commands that are
+ *     overridden or cancelled before any character is printed are dropped. ESC t is only sent for characters
+ *     outside ASCII, which all supported code pages share.</li>
+ *     <li>Runs of line feeds are replaced by ESC d n.</li>
+ *     <li>Trailing spaces of left aligned lines are dropped, unless they are underlined or double height.</li>
+ * </ul>
+ * The printer state is unknown at the start of a stream until it is initialized with ESC @, so a stream can be
+ * optimized in pages. Raster images, barcodes, QR codes, cuts and drawer pulses are copied as is. Commands the optimizer does not know end the optimization,
+ * the rest of the stream is copied as is.
+ * <p>
+ * An optimizer is thread safe, it keeps the total number of bytes saved.
+ *
+ * @author Charl Thiem
+ */
+public class EscPosOptimizer {
+
+	private static final int ESC = 0x1B;
+	private static final int GS = 0x1D;
+	private static final int LF = 0x0A;
+	private static final int SPACE = 0x20;
+
+	/**
+	 * Printer state not known
+	 */
+	private static final int UNKNOWN = -1;
+
+	/**
+	 * Fewest line feeds worth replacing with ESC d n
+	 */
+	private static final int MIN_FEED_RUN = 4;
+
+	/**
+	 * Most lines ESC d n can feed
+	 */
+	private static final int MAX_FEED_RUN = 255;
+
+	/**
+	 * Modes that make a space visible, or make the line it is on taller
+	 */
+	private static final int VISIBLE_SPACE_MODES = (EpsonPrintFormatBuilder.Print_Mode.UNDERLINE_ON & 0xFF)
+			| EpsonPrintFormatBuilder.Print_Mode.DOUBLE_HEIGHT;
+
+	private final LongAdder bytesSaved = new LongAdder();
+
+	/**
+	 * Optimizes a command stream.
+	 * @param commands The command stream
+	 * @return the optimized command stream
+	 */
+	public byte[] optimize(byte[] commands){
+		return optimize(commands, 0, commands.length);
+	}
+
+	/**
+	 * Optimizes a range of a command stream.
+	 * @param commands The command stream
+	 * @param offset Start of the range
+	 * @param length Number of bytes in the range
+	 * @return the optimized command stream
+	 */
+	public byte[] optimize(byte[] commands, int offset, int length){
+		ByteArrayBuilder out = new ByteArrayBuilder(length);
+		optimize(commands, offset, length, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Optimizes a range of a command stream.
+	 * @param commands The command stream
+	 * @param offset Start of the range
+	 * @param length Number of bytes in the range
+	 * @param out Builder to append the optimized command stream to
+	 * @return the number of bytes saved
+	 */
+	public int optimize(byte[] commands, int offset, int length, ByteArrayBuilder out){
+		final int start = out.length();
+		new Pass(out).run(commands, offset, offset + length);
+		final int saved = length - (out.length() - start);
+		this.bytesSaved.add(saved);
+		return saved;
+	}
+
+	/**
+	 * @return the total number of bytes saved by this optimizer
+	 */
+	public long getBytesSaved(){
+		return this.bytesSaved.sum();
+	}
+
+	/**
+	 * A single pass over a command stream, tracking the state the printer is in and the state requested for the
+	 * next character.
+	 */
+	private static final class Pass {
+
+		private final ByteArrayBuilder out;
+
+		/** State the printer is in */
+		private int alignment = UNKNOWN;
+		private int mode = UNKNOWN;
+		private int codePage = UNKNOWN;
+
+		/** State requested for the next character */
+		private int wantAlignment = UNKNOWN;
+		private int wantMode = UNKNOWN;
+		private int wantCodePage = UNKNOWN;
+
+		/** If the current line has characters, including pending spaces */
+		private boolean lineStarted;
+
+		/** Alignment of the current line */
+		private int lineAlignment = UNKNOWN;
+
+		/** Mode of every pending space */
+		private final ByteArrayBuilder spaces = new ByteArrayBuilder(64);
+
+		/** Number of pending line feeds */
+		private int feeds;
+
+		Pass(ByteArrayBuilder out){
+			this.out = out;
+		}
+
+		void run(byte[] in, int from, int to){
+			int i = from;
+			while(i < to){
+				final int b = in[i] & 0xFF;
+				if(b == LF){
+					lineFeeds(1);
+					i++;
+				}
+				else if(b >= SPACE){
+					text(b);
+					i++;
+				}
+				else if(b == ESC && i + 1 < to && in[i + 1] == '@'){
+					initialize();
+					i += 2;
+				}
+				else if(b == ESC && i + 2 < to && command(in[i + 1], in[i + 2] & 0xFF)){
+					i += 3;
+				}
+				else if(b == ESC && i + 4 < to && in[i + 1] == 'p'){
+					// Drawer pulse
+					flush();
+					out.append(in, i, 5);
+					i += 5;
+				}
+				else if(b == GS && gsLength(in, i, to) > 0){
+					// Images and codes print on their own lines, with the alignment of the line
+					final int length = gsLength(in, i, to);
+					flush();
+					out.append(in, i, length);
+					if(in[i + 1] != 'h' && in[i + 1] != 'H'){
+						lineStarted = false;
+					}
+					i += length;
+				}
+				else{
+					// Unknown command, its length and effect can not be known
+					flush();
+					out.append(in, i, to - i);
+					return;
+				}
+			}
+			flush();
+		}
+
+		/**
+		 * Gets the length of the GS command at an index, including its data. Only raster images (GS v 0),
+		 * barcodes (GS k, GS h, GS H), QR codes (GS ( k) and cuts (GS V) are known.
+		 * @return the length, -1 if the command is not known or does not end before <code>to</code>
+		 */
+		private static int gsLength(byte[] in, int i, int to){
+			int length = -1;
+			if(i + 2 >= to){
+				return length;
+			}
+			final byte command = in[i + 1];
+			if(command == 'v' && in[i + 2] == '0' && i + 7 < to){
+				final int bytesPerRow = (in[i + 4] & 0xFF) | (in[i + 5] & 0xFF) << 8;
+				final int rows = (in[i + 6] & 0xFF) | (in[i + 7] & 0xFF) << 8;
+				length = 8 + bytesPerRow * rows;
+			}
+			else if(command == 'k' && (in[i + 2] & 0xFF) >= 65 && i + 3 < to){
+				length = 4 + (in[i + 3] & 0xFF);
+			}
+			else if(command == '(' && in[i + 2] == 'k' && i + 4 < to){
+				length = 5 + ((in[i + 3] & 0xFF) | (in[i + 4] & 0xFF) << 8);
+			}
+			else if(command == 'V'){
+				length = (in[i + 2] & 0xFF) >= 65 ? 4 : 3;
+			}
+			else if(command == 'h' || command == 'H'){
+				length = 3;
+			}
+			return i + length <= to ? length : -1;
+		}
+
+		/**
+		 * Handles a three byte ESC command.
+		 * @return <code>false</code> if the command is not known
+		 */
+		private boolean command(byte command, int n){
+			switch(command){
+				case 'a':
+					if(lineStarted){
+						// Not at the start of a line, leave it to the printer
+						flushSpaces();
+						out.append(ESC, 'a', n);
+						alignment = wantAlignment = UNKNOWN;
+					}
+					else{
+						wantAlignment = n;
+					}
+					return true;
+				case '!':
+					wantMode = n;
+					return true;
+				case 't':
+					wantCodePage = n;
+					return true;
+				case 'd':
+					if(n == 0){
+						return false;
+					}
+					lineFeeds(n);
+					return true;
+				case 'M':
+					flush();
+					out.append(ESC, 'M', n);
+					return true;
+				default:
+					return false;
+			}
+		}
+
+		private void initialize(){
+			flushFeeds();
+			flushSpaces();
+			out.append(ESC, '@');
+			alignment = 0;
+			mode = 0;
+			codePage = UNKNOWN;
+			wantAlignment = wantMode = wantCodePage = UNKNOWN;
+			lineStarted = false;
+		}
+
+		private void text(int b){
+			flushFeeds();
+			if(!lineStarted){
+				lineStarted = true;
+				lineAlignment = (wantAlignment != UNKNOWN ? wantAlignment : alignment);
+			}
+			final int textMode = (wantMode != UNKNOWN ? wantMode : mode);
+			if(b == SPACE && lineAlignment == 0 && textMode != UNKNOWN && (textMode & VISIBLE_SPACE_MODES) == 0){
+				spaces.append(textMode);
+				return;
+			}
+			flushSpaces();
+			applyAlignment();
+			applyMode(textMode);
+			if(b >= 0x80){
+				applyCodePage();
+			}
+			out.append(b);
+		}
+
+		private void lineFeeds(int count){
+			// Trailing spaces are not printed
+			spaces.setLength(0);
+			lineStarted = false;
+			feeds += count;
+		}
+
+		private void flushFeeds(){
+			while(feeds >= MIN_FEED_RUN){
+				final int run = Math.min(feeds, MAX_FEED_RUN);
+				out.append(ESC, 'd', run);
+				feeds -= run;
+			}
+			for( ; feeds > 0; feeds--){
+				out.append(LF);
+			}
+		}
+
+		private void flushSpaces(){
+			for(int i = 0; i < spaces.length(); i++){
+				applyAlignment();
+				applyMode(spaces.byteAt(i) & 0xFF);
+				out.append(SPACE);
+			}
+			spaces.setLength(0);
+		}
+
+		private void flush(){
+			flushFeeds();
+			flushSpaces();
+			applyAlignment();
+			applyMode(wantMode != UNKNOWN ? wantMode : mode);
+			applyCodePage();
+		}
+
+		private void applyAlignment(){
+			if(wantAlignment != UNKNOWN && wantAlignment != alignment){
+				out.append(ESC, 'a', wantAlignment);
+				alignment = wantAlignment;
+			}
+		}
+
+		private void applyMode(int textMode){
+			if(textMode != UNKNOWN && textMode != mode){
+				out.append(ESC, '!', textMode);
+				mode = textMode;
+			}
+		}
+
+		private void applyCodePage(){
+			if(wantCodePage != UNKNOWN && wantCodePage != codePage){
+				out.append(ESC, 't', wantCodePage);
+				codePage = wantCodePage;
+			}
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.format.AbstractPlainTextFormatBuilder;
+import coza.trojanc.receipt.format.PrintFormatBuilder;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.CharacterSanitizer;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.DisplayWidth;
+import coza.trojanc.receipt.shared.LineBreaker;
+import coza.trojanc.receipt.shared.Mode;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A format builder of HTML for e-receipts. Every line is a <code>div</code>, with the class <code>center</code> or
+ * <code>right</code> when it is not left aligned, and text in a mode is in a <code>span</code> with the classes
+ * <code>b</code>, <code>u</code>, <code>dh</code> and <code>dw</code>. Lines composed of columns are left aligned,
+ * their spaces lay out the columns, so the lines must be shown with <code>white-space: pre</code> in a monospace
+ * font, as {@link #STYLESHEET} does for an element with the class <code>receipt</code>.
+ * <p>
+ * Characters are escaped with a precomputed table, copying the runs of characters that need no escaping at once.
+ * Images are embedded as data URIs, cuts are horizontal rules. Trailing spaces are trimmed by default.
+ *
+ * @author Charl Thiem
+ */
+public class HtmlFormatBuilder extends AbstractPlainTextFormatBuilder {
+
+	/**
+	 * Style sheet showing the output in an element with the class <code>receipt</code>
+	 */
+	public static final String STYLESHEET = ".receipt{font-family:monospace;white-space:pre}"
+			+ ".receipt div{min-height:1.2em}"
+			+ ".receipt .center{text-align:center}"
+			+ ".receipt .right{text-align:right}"
+			+ ".receipt .b{font-weight:bold}"
+			+ ".receipt .u{text-decoration:underline}"
+			+ ".receipt .dh{font-size:2em}"
+			+ ".receipt .dw{letter-spacing:1ch}"
+			+ ".receipt .cut{border-top:1px dashed}";
+
+	/**
+	 * Escapes of the ASCII characters, <code>null</code> when a character needs no escaping. The filler after
+	 * a wide char is left out, as browsers show wide chars in two columns.
+	 */
+	private static final String[] ESCAPES = new String[128];
+
+	/**
+	 * Opening tags of the spans of every mode, <code>null</code> for normal text
+	 */
+	private static final String[] SPANS = new String[Mode.values().length];
+
+	static {
+		ESCAPES['&'] = "&amp;";
+		ESCAPES['<'] = "&lt;";
+		ESCAPES['>'] = "&gt;";
+		ESCAPES['"'] = "&quot;";
+		ESCAPES['\''] = "&#39;";
+		for (Mode mode : Mode.values()) {
+			final StringBuilder classes = new StringBuilder();
+			if (mode.isBold()) {
+				classes.append(" b");
+			}
+			if (mode.isUnderline()) {
+				classes.append(" u");
+			}
+			if (mode.isDoubleHeight()) {
+				classes.append(" dh");
+			}
+			if (mode.isDoubleWidth()) {
+				classes.append(" dw");
+			}
+			if (classes.length() > 0) {
+				SPANS[mode.ordinal()] = "<span class=\"" + classes.substring(1) + "\">";
+			}
+		}
+	}
+
+	/** Alignment of the open line, <code>null</code> when no line is open */
+	private Align lineAlignment;
+
+	/** Mode of the open span, normal when no span is open */
+	private Mode spanMode;
+
+	/** Mode of every column in the char buffer */
+	private Mode[] column_modes;
+
+	/**
+	 * Creates a new instance of a <code>HtmlFormatBuilder</code>
+	 *
+	 * @param line_width the line width
+	 */
+	public HtmlFormatBuilder(int line_width) {
+		super(line_width);
+	}
+
+	/**
+	 * Creates a new instance of a <code>HtmlFormatBuilder</code>
+	 *
+	 * @param line_width the line width
+	 * @param sanitizer Sanitizer replacing invalid characters
+	 */
+	public HtmlFormatBuilder(int line_width, CharacterSanitizer sanitizer) {
+		super(line_width, sanitizer);
+	}
+
+	@Override
+	public PrintFormatBuilder initialize() {
+		super.initialize();
+		this.lineAlignment = null;
+		this.spanMode = Mode.NORMAL;
+		this.trimTrailingSpaces = true;
+		return this;
+	}
+
+	/**
+	 * Gets the HTML, with the open line closed.
+	 */
+	@Override
+	public Object getFormat() {
+		this.completeCharBuffer();
+		if (this.lineAlignment != null) {
+			this.changeSpan(Mode.NORMAL);
+			this.builder.append("</div>");
+			this.lineAlignment = null;
+		}
+		return super.getFormat();
+	}
+
+	/**
+	 * Makes room in the output for the lines expected, every line taking the line width and its tags.
+	 */
+	@Override
+	public PrintFormatBuilder expectLines(int lines) {
+		this.builder.ensureCapacity(this.builder.length() + Math.max(lines, 0) * (this.lineWidth + "<div></div>\n".length()));
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder left(String text) {
+		return this.printTextAsLines(text, Align.LEFT);
+	}
+
+	@Override
+	public PrintFormatBuilder center(String text) {
+		return this.printTextAsLines(text, Align.CENTER);
+	}
+
+	@Override
+	public PrintFormatBuilder right(String text) {
+		return this.printTextAsLines(text, Align.RIGHT);
+	}
+
+	/**
+	 * Embeds a PNG, JPEG or GIF image on a line of its own. Other images are left out.
+	 */
+	@Override
+	public PrintFormatBuilder image(byte[] image, Align align) {
+		final String type = imageTypeOf(image);
+		if (type == null) {
+			return this;
+		}
+		this.endLine();
+		this.openLine(align == null ? Align.CENTER : align);
+		this.builder.append("<img src=\"data:").append(type).append(";base64,")
+				.append(Base64.getEncoder().encodeToString(image)).append("\">");
+		return this.nl();
+	}
+
+	@Override
+	public PrintFormatBuilder cut(CutMode mode) {
+		this.endLine();
+		this.builder.append("<hr class=\"cut\">\n");
+		return this;
+	}
+
+	@Override
+	protected void resetCharBuffer() {
+		super.resetCharBuffer();
+		// Called from the super constructor, before the fields are initialised
+		if (this.column_modes == null) {
+			this.column_modes = new Mode[this.lineWidth];
+		}
+		Arrays.fill(this.column_modes, Mode.NORMAL);
+	}
+
+	@Override
+	protected void appendNewLine() {
+		this.openLine(Align.LEFT);
+		this.changeSpan(Mode.NORMAL);
+		this.builder.append("</div>\n");
+		this.lineAlignment = null;
+	}
+
+	/**
+	 * Appends a line composed in the char buffer with the mode of every column. Spaces keep the current mode
+	 * unless the underline differs.
+	 */
+	@Override
+	protected void appendText(char[] text, int from, int to) {
+		this.openLine(Align.LEFT);
+		int start = from;
+		for (int i = from; i < to; i++) {
+			final Mode target = this.column_modes[i];
+			if (target != this.spanMode
+					&& !(text[i] == ' ' && target.isUnderline() == this.spanMode.isUnderline())) {
+				this.appendEscaped(text, start, i);
+				this.changeSpan(target);
+				start = i;
+			}
+		}
+		this.appendEscaped(text, start, to);
+	}
+
+	@Override
+	protected void appendText(CharSequence text, int from, int to) {
+		this.openLine(Align.LEFT);
+		int start = from;
+		for (int i = from; i < to; i++) {
+			final char c = text.charAt(i);
+			if ((c < 128 && ESCAPES[c] != null) || c == DisplayWidth.FILLER) {
+				this.builder.append(text, start, i).append(c < 128 ? ESCAPES[c] : "");
+				start = i + 1;
+			}
+		}
+		this.builder.append(text, start, to);
+	}
+
+	/**
+	 * Appends chars, escaping the ones that need it.
+	 */
+	private void appendEscaped(char[] text, int from, int to) {
+		int start = from;
+		for (int i = from; i < to; i++) {
+			final char c = text[i];
+			if ((c < 128 && ESCAPES[c] != null) || c == DisplayWidth.FILLER) {
+				this.builder.append(text, start, i - start).append(c < 128 ? ESCAPES[c] : "");
+				start = i + 1;
+			}
+		}
+		this.builder.append(text, start, to - start);
+	}
+
+	/**
+	 * Marks columns of the char buffer with the current mode. Double width is not applied to composed lines,
+	 * as the text would no longer fit the columns it was laid out in.
+	 */
+	@Override
+	protected void markColumns(int start, int end) {
+		final Mode columnMode = this.mode == Mode.DOUBLE_SIZE ? Mode.DOUBLE_HEIGHT
+				: (this.mode == Mode.DOUBLE_WIDTH ? Mode.NORMAL : this.mode);
+		for (int i = Math.max(start, 0); i < Math.min(end, this.lineWidth); i++) {
+			this.column_modes[i] = columnMode;
+		}
+	}
+
+	/**
+	 * Splits the text specified into multiple lines, printed in the current mode. Like the other builders, the
+	 * last line is left open for the caller to end.
+	 */
+	private PrintFormatBuilder printTextAsLines(String text, Align align) {
+		this.completeCharBuffer();
+		text = super.fixCharacters(text);
+		final LineBreaker lines = super.breakLines(text, 0, text.length(), (this.mode.isDoubleWidth() ? Math.max(lineWidth/2, 1) : lineWidth));
+		boolean first = true;
+		while (lines.next()) {
+			if (!first) {
+				this.nl();
+			}
+			first = false;
+			this.openLine(align);
+			this.changeSpan(this.mode);
+			this.appendText(text, lines.getLineStart(), lines.getLineEnd());
+		}
+		return this;
+	}
+
+	/**
+	 * Ends a line before something shown on a line of its own.
+	 */
+	private void endLine() {
+		if (this.lineBufferInUse || this.lineAlignment != null) {
+			this.nl();
+		}
+	}
+
+	/**
+	 * Opens a line when none is open, a line keeps the alignment it was opened with.
+	 */
+	private void openLine(Align align) {
+		if (this.lineAlignment == null) {
+			this.lineAlignment = align;
+			if (align == Align.CENTER) {
+				this.builder.append("<div class=\"center\">");
+			}
+			else if (align == Align.RIGHT) {
+				this.builder.append("<div class=\"right\">");
+			}
+			else {
+				this.builder.append("<div>");
+			}
+		}
+	}
+
+	/**
+	 * Closes the open span and opens the span of a mode, if the mode changed.
+	 */
+	private void changeSpan(Mode mode) {
+		if (this.spanMode != mode) {
+			if (this.spanMode != Mode.NORMAL) {
+				this.builder.append("</span>");
+			}
+			if (mode != Mode.NORMAL) {
+				this.builder.append(SPANS[mode.ordinal()]);
+			}
+			this.spanMode = mode;
+		}
+	}
+
+	/**
+	 * Gets the media type of an image from its first bytes
+	 * @return the media type, <code>null</code> if the image is not a PNG, JPEG or GIF
+	 */
+	private static String imageTypeOf(byte[] image) {
+		if (image.length >= 8 && (image[0] & 0xFF) == 0x89 && image[1] == 'P' && image[2] == 'N' && image[3] == 'G') {
+			return "image/png";
+		}
+		if (image.length >= 3 && (image[0] & 0xFF) == 0xFF && (image[1] & 0xFF) == 0xD8 && (image[2] & 0xFF) == 0xFF) {
+			return "image/jpeg";
+		}
+		if (image.length >= 6 && image[0] == 'G' && image[1] == 'I' && image[2] == 'F' && image[3] == '8') {
+			return "image/gif";
+		}
+		return null;
+	}
+}
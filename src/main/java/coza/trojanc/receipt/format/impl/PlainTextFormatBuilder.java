@@ -1,12 +1,16 @@
 package coza.trojanc.receipt.format.impl;
 
 import coza.trojanc.receipt.format.AbstractPlainTextFormatBuilder;
+import coza.trojanc.receipt.format.PartitionableFormatBuilder;
 import coza.trojanc.receipt.format.PrintFormatBuilder;
+import coza.trojanc.receipt.shared.CharacterSanitizer;
+
+import java.util.regex.Pattern;
 
 /**
  * @author Charl Thiem
  */
-public class PlainTextFormatBuilder extends AbstractPlainTextFormatBuilder {
+public class PlainTextFormatBuilder extends AbstractPlainTextFormatBuilder implements PartitionableFormatBuilder {
 
 	public PlainTextFormatBuilder(int line_width) {
 		super(line_width);
@@ -16,11 +20,61 @@ public class PlainTextFormatBuilder extends AbstractPlainTextFormatBuilder {
 		super(line_width, invalidCharsRegex, invalidCharReplacement);
 	}
 
+	public PlainTextFormatBuilder(int line_width, CharacterSanitizer sanitizer) {
+		super(line_width, sanitizer);
+	}
+
+	private PlainTextFormatBuilder(int line_width, Pattern invalidCharsPattern, char invalidCharReplacement, CharacterSanitizer sanitizer) {
+		super(line_width, invalidCharsPattern, invalidCharReplacement, sanitizer);
+	}
+
+	@Override
+	protected void appendNewLine() {
+		super.builder.append('\n');
+	}
+
+	@Override
+	public PrintFormatBuilder fork() {
+		PlainTextFormatBuilder partition = new PlainTextFormatBuilder(this.lineWidth, this.invalidCharsPattern, this.invalidCharReplacement, this.sanitizer);
+		partition.setBreakPositionSource(this.getBreakPositionSource());
+		partition.setWrapCache(this.getWrapCache());
+		partition.trimTrailingSpaces(this.trimTrailingSpaces);
+		return partition;
+	}
+
+	/**
+	 * A paginating builder is not partitioned, so it only holds a page at a time.
+	 */
+	@Override
+	public boolean isPartitionable() {
+		return !this.isPaginating();
+	}
+
+	/**
+	 * Appends the output of a partition. When paginating, the output is appended line by line, so the pages
+	 * keep their size.
+	 */
 	@Override
-	public PrintFormatBuilder nl() {
-		super.nl();
-		super.builder.append("\n");
-		return this;
+	public void join(PrintFormatBuilder partition) {
+		PlainTextFormatBuilder partitionBuilder = (PlainTextFormatBuilder) partition;
+		this.completeCharBuffer();
+		partitionBuilder.completeCharBuffer();
+		if (!this.isPaginating()) {
+			this.builder.append(partitionBuilder.builder);
+			this.pageLineCount += partitionBuilder.pageLineCount;
+			return;
+		}
+		final StringBuilder output = partitionBuilder.builder;
+		int start = 0;
+		for (int i = 0; i < output.length(); i++) {
+			if (output.charAt(i) == '\n') {
+				this.builder.append(output, start, i + 1);
+				start = i + 1;
+				this.pageLineCount++;
+				this.checkPage();
+			}
+		}
+		this.builder.append(output, start, output.length());
 	}
 
 }
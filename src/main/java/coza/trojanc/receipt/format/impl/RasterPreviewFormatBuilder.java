@@ -0,0 +1,325 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.format.AbstractPlainTextFormatBuilder;
+import coza.trojanc.receipt.format.GlyphAtlas;
+import coza.trojanc.receipt.format.PrintFormatBuilder;
+import coza.trojanc.receipt.format.RasterCache;
+import coza.trojanc.receipt.format.RasterImage;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.DisplayWidth;
+import coza.trojanc.receipt.shared.Mode;
+
+import javax.imageio.ImageIO;
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A format builder rendering a preview of a receipt into a grey image, without a printer. Glyphs are copied from
+ * a shared {@link GlyphAtlas} of the font, so no text is laid out or rasterized per receipt, and the image is drawn
+ * into a canvas kept across {@link #reset()}, so a builder can render many previews.
+ * <p>
+ * Lines are laid out like {@link PlainTextFormatBuilder} does. Bold text is drawn with the bold font, double
+ * height text with glyphs twice as high. Double width is not applied, as the text would no longer fit the columns
+ * it was laid out in. Wide chars are drawn over their own column and the column of their filler. Images are drawn
+ * dithered like a printer prints them, cuts as dashed lines.
+ *
+ * @author Charl Thiem
+ */
+public class RasterPreviewFormatBuilder extends AbstractPlainTextFormatBuilder {
+
+	/**
+	 * Font used when none is given
+	 */
+	public static final Font DEFAULT_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 16);
+
+	/**
+	 * Dots of white around the receipt
+	 */
+	private static final int PADDING = 8;
+
+	private static final byte WHITE = (byte) 0xFF;
+
+	/**
+	 * Dithered images shared by preview builders, the first two bytes are the width, followed by the rows
+	 */
+	private static final RasterCache DEFAULT_RASTER_CACHE = new RasterCache(64);
+
+	private final GlyphAtlas regular;
+
+	private final GlyphAtlas bold;
+
+	/** Width of the canvas in dots */
+	private final int canvasWidth;
+
+	/** Canvas drawn into, grown when a receipt does not fit */
+	private BufferedImage canvas;
+
+	/** Dots of the canvas */
+	private byte[] pixels;
+
+	/** Top of the next line */
+	private int y;
+
+	/** Chars and modes of the line being laid out */
+	private char[] lineChars;
+	private Mode[] lineModes;
+	private int lineLength;
+
+	/** Mode of every column in the char buffer */
+	private Mode[] column_modes;
+
+	private RasterCache rasterCache = DEFAULT_RASTER_CACHE;
+
+	/**
+	 * Creates a new instance of a <code>RasterPreviewFormatBuilder</code> with the default font.
+	 *
+	 * @param line_width the line width
+	 */
+	public RasterPreviewFormatBuilder(int line_width) {
+		this(line_width, DEFAULT_FONT);
+	}
+
+	/**
+	 * Creates a new instance of a <code>RasterPreviewFormatBuilder</code>.
+	 *
+	 * @param line_width the line width
+	 * @param font the monospaced font
+	 */
+	public RasterPreviewFormatBuilder(int line_width, Font font) {
+		super(line_width);
+		this.regular = GlyphAtlas.of(font.deriveFont(Font.PLAIN));
+		this.bold = GlyphAtlas.of(font.deriveFont(Font.BOLD));
+		this.canvasWidth = line_width * this.regular.getCellWidth() + 2 * PADDING;
+		this.canvas = newCanvas(64 * this.regular.getCellHeight());
+		this.pixels = pixelsOf(this.canvas);
+		this.y = PADDING;
+	}
+
+	@Override
+	public PrintFormatBuilder initialize() {
+		super.initialize();
+		// Called from the super constructor, before the fields are initialised
+		if (this.lineChars == null) {
+			this.lineChars = new char[this.lineWidth];
+			this.lineModes = new Mode[this.lineWidth];
+		}
+		if (this.pixels != null) {
+			Arrays.fill(this.pixels, 0, this.y * this.canvasWidth, WHITE);
+			this.y = PADDING;
+		}
+		this.lineLength = 0;
+		return this;
+	}
+
+	/**
+	 * Gets the preview.
+	 *
+	 * @return a new image of the preview
+	 */
+	@Override
+	public Object getFormat() {
+		this.endLine();
+		final BufferedImage preview = new BufferedImage(this.canvasWidth, this.y + PADDING, BufferedImage.TYPE_BYTE_GRAY);
+		System.arraycopy(this.pixels, 0, pixelsOf(preview), 0, this.canvasWidth * preview.getHeight());
+		return preview;
+	}
+
+	/**
+	 * Writes the preview as a PNG, straight from the canvas.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writePng(OutputStream out) throws IOException {
+		this.endLine();
+		ImageIO.write(this.canvas.getSubimage(0, 0, this.canvasWidth, this.y + PADDING), "png", out);
+	}
+
+	/**
+	 * Sets the cache of dithered images, builders share a cache by default.
+	 *
+	 * @param rasterCache the cache
+	 */
+	public void setRasterCache(RasterCache rasterCache) {
+		this.rasterCache = rasterCache;
+	}
+
+	/**
+	 * Grows the canvas once to hold the lines expected.
+	 */
+	@Override
+	public PrintFormatBuilder expectLines(int lines) {
+		this.ensureRows(this.y + Math.max(lines, 0) * this.regular.getCellHeight() + PADDING);
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder image(byte[] image, Align align) {
+		return this.image(image, RasterCache.hash(image), align);
+	}
+
+	@Override
+	public PrintFormatBuilder image(byte[] image, long imageHash, Align align) {
+		this.endLine();
+		final int maxWidth = this.canvasWidth - 2 * PADDING;
+		final byte[] dots = this.rasterCache.get(image, imageHash, maxWidth, 0, RasterPreviewFormatBuilder::encodeRaster);
+		final int width = (dots[0] & 0xFF) | (dots[1] & 0xFF) << 8;
+		final int bytesPerRow = (width + 7) >>> 3;
+		final int height = (dots.length - 2) / bytesPerRow;
+		final int left = PADDING + (align == Align.LEFT ? 0 : (align == Align.RIGHT ? maxWidth - width : (maxWidth - width) / 2));
+		this.ensureRows(this.y + height + PADDING);
+		for (int row = 0; row < height; row++) {
+			final int rowOffset = 2 + row * bytesPerRow;
+			final int pixelRow = (this.y + row) * this.canvasWidth + left;
+			for (int x = 0; x < width; x++) {
+				if ((dots[rowOffset + (x >>> 3)] & (0x80 >>> (x & 7))) != 0) {
+					this.pixels[pixelRow + x] = 0;
+				}
+			}
+		}
+		this.y += height;
+		return this;
+	}
+
+	@Override
+	public PrintFormatBuilder cut(CutMode mode) {
+		this.endLine();
+		final int cellHeight = this.regular.getCellHeight();
+		this.ensureRows(this.y + cellHeight + PADDING);
+		final int row = (this.y + cellHeight / 2) * this.canvasWidth;
+		for (int x = 0; x < this.canvasWidth; x++) {
+			if ((x & 4) == 0) {
+				this.pixels[row + x] = 0;
+			}
+		}
+		this.y += cellHeight;
+		return this;
+	}
+
+	@Override
+	protected void resetCharBuffer() {
+		super.resetCharBuffer();
+		// Called from the super constructor, before the fields are initialised
+		if (this.column_modes == null) {
+			this.column_modes = new Mode[this.lineWidth];
+		}
+		Arrays.fill(this.column_modes, Mode.NORMAL);
+	}
+
+	@Override
+	protected void markColumns(int start, int end) {
+		for (int i = Math.max(start, 0); i < Math.min(end, this.lineWidth); i++) {
+			this.column_modes[i] = this.mode;
+		}
+	}
+
+	@Override
+	protected void appendText(char[] text, int from, int to) {
+		for (int i = from; i < to; i++) {
+			this.putChar(text[i], this.column_modes[i]);
+		}
+	}
+
+	@Override
+	protected void appendText(CharSequence text, int from, int to) {
+		for (int i = from; i < to; i++) {
+			this.putChar(text.charAt(i), i < this.lineWidth ? this.column_modes[i] : this.mode);
+		}
+	}
+
+	@Override
+	protected void appendNewLine() {
+		this.drawLine();
+	}
+
+	private void putChar(char c, Mode mode) {
+		if (this.lineLength < this.lineWidth) {
+			this.lineChars[this.lineLength] = c;
+			this.lineModes[this.lineLength] = mode;
+			this.lineLength++;
+		}
+	}
+
+	/**
+	 * Draws the line being laid out, if there is one.
+	 */
+	private void endLine() {
+		this.completeCharBuffer();
+		if (this.lineLength > 0) {
+			this.drawLine();
+		}
+	}
+
+	/**
+	 * Draws the line being laid out and moves to the next line. Glyphs of a line with double height text stand
+	 * on the same baseline.
+	 */
+	private void drawLine() {
+		final int cellWidth = this.regular.getCellWidth();
+		final int cellHeight = this.regular.getCellHeight();
+		boolean doubleHeight = false;
+		for (int i = 0; i < this.lineLength; i++) {
+			doubleHeight |= this.lineModes[i].isDoubleHeight();
+		}
+		final int lineHeight = doubleHeight ? 2 * cellHeight : cellHeight;
+		this.ensureRows(this.y + lineHeight + PADDING);
+		for (int i = 0; i < this.lineLength; i++) {
+			final Mode mode = this.lineModes[i];
+			final int scaleY = mode.isDoubleHeight() ? 2 : 1;
+			final int top = this.y + lineHeight - cellHeight * scaleY;
+			final int x = PADDING + i * cellWidth;
+			final char c = this.lineChars[i];
+			if (c != ' ' && c != DisplayWidth.FILLER) {
+				(mode.isBold() ? this.bold : this.regular).draw(c, this.pixels, this.canvasWidth, this.canvas.getHeight(), x, top, 1, scaleY);
+			}
+			if (mode.isUnderline()) {
+				final int underline = top + (this.regular.getAscent() + 1) * scaleY;
+				for (int row = underline; row < underline + scaleY; row++) {
+					Arrays.fill(this.pixels, row * this.canvasWidth + x, row * this.canvasWidth + x + cellWidth, (byte) 0);
+				}
+			}
+		}
+		this.y += lineHeight;
+		this.lineLength = 0;
+	}
+
+	/**
+	 * Grows the canvas to hold a number of rows.
+	 */
+	private void ensureRows(int rows) {
+		if (rows > this.canvas.getHeight()) {
+			final BufferedImage grown = newCanvas(Math.max(rows, 2 * this.canvas.getHeight()));
+			final byte[] grownPixels = pixelsOf(grown);
+			System.arraycopy(this.pixels, 0, grownPixels, 0, this.y * this.canvasWidth);
+			this.canvas = grown;
+			this.pixels = grownPixels;
+		}
+	}
+
+	private BufferedImage newCanvas(int rows) {
+		final BufferedImage image = new BufferedImage(this.canvasWidth, rows, BufferedImage.TYPE_BYTE_GRAY);
+		Arrays.fill(pixelsOf(image), WHITE);
+		return image;
+	}
+
+	private static byte[] pixelsOf(BufferedImage image) {
+		return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Dithers an image to fit a width, prefixed with its width.
+	 */
+	private static byte[] encodeRaster(byte[] image, int maxWidth, int density) {
+		final RasterImage raster = RasterImage.read(image, maxWidth);
+		final byte[] dots = new byte[2 + raster.getData().length];
+		dots[0] = (byte) raster.getWidth();
+		dots[1] = (byte) (raster.getWidth() >>> 8);
+		System.arraycopy(raster.getData(), 0, dots, 2, raster.getData().length);
+		return dots;
+	}
+}
@@ -0,0 +1,190 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.format.ByteArrayBuilder;
+import coza.trojanc.receipt.format.CodePage;
+import coza.trojanc.receipt.format.CommandSet;
+import coza.trojanc.receipt.format.RasterImage;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+
+/**
+ * The Star Line Mode commands of Star printers, with the StarPRNT raster command for images. Star printers have
+ * a command for every part of the print mode, so a mode change only sends the parts that differ.
+ * @author Charl Thiem
+ */
+public class StarCommandSet implements CommandSet {
+
+	/**
+	 * Most rows of a single raster image command
+	 */
+	private static final int MAX_RASTER_ROWS = 2303;
+
+	@Override
+	public void initialize(ByteArrayBuilder out) {
+		out.append(0x1B, 0x40);
+	}
+
+	@Override
+	public void newLine(ByteArrayBuilder out) {
+		out.append(0x0A);
+	}
+
+	/**
+	 * Changes the alignment with ESC GS a.
+	 */
+	@Override
+	public void alignment(ByteArrayBuilder out, Align align) {
+		out.append(0x1B, 0x1D, 0x61, align == Align.RIGHT ? 2 : (align == Align.LEFT ? 0 : 1));
+	}
+
+	/**
+	 * Changes the mode with ESC E and ESC F for emphasis, ESC - for underline and ESC i for expansion.
+	 */
+	@Override
+	public void mode(ByteArrayBuilder out, int from, int to) {
+		final int changed = from ^ to;
+		if ((changed & BOLD) != 0) {
+			out.append(0x1B, (to & BOLD) != 0 ? 0x45 : 0x46);
+		}
+		if ((changed & UNDERLINE) != 0) {
+			out.append(0x1B, 0x2D, (to & UNDERLINE) != 0 ? 1 : 0);
+		}
+		if ((changed & (DOUBLE_HEIGHT | DOUBLE_WIDTH)) != 0) {
+			out.append(0x1B, 0x69, (to & DOUBLE_HEIGHT) != 0 ? 1 : 0, (to & DOUBLE_WIDTH) != 0 ? 1 : 0);
+		}
+	}
+
+	/**
+	 * The code page of a Star printer after it is initialized is set with its memory switches.
+	 */
+	@Override
+	public CodePage getInitialCodePage() {
+		return null;
+	}
+
+	@Override
+	public boolean supports(CodePage codePage) {
+		return codePageNumberOf(codePage) >= 0;
+	}
+
+	/**
+	 * Changes the code page with ESC GS t.
+	 */
+	@Override
+	public void codePage(ByteArrayBuilder out, CodePage codePage) {
+		out.append(0x1B, 0x1D, 0x74, codePageNumberOf(codePage));
+	}
+
+	@Override
+	public String barcodeData(BarcodeType type, String data) {
+		if (data.length() > 255) {
+			throw new IllegalArgumentException("Barcode data is longer than 255 characters");
+		}
+		return data;
+	}
+
+	/**
+	 * The height is sent with every barcode.
+	 */
+	@Override
+	public void barcodeHeight(ByteArrayBuilder out, int from, int to) {
+	}
+
+	/**
+	 * Prints a barcode with ESC b, with its data below it and the middle module width.
+	 */
+	@Override
+	public void barcode(ByteArrayBuilder out, BarcodeType type, String data, int height) {
+		out.append(0x1B, 0x62, barcodeTypeOf(type), 0x02, 0x02, height);
+		for (int i = 0; i < data.length(); i++) {
+			out.append(data.charAt(i));
+		}
+		out.append(0x1E);
+	}
+
+	/**
+	 * Prints a QR code with ESC GS y, model 2.
+	 */
+	@Override
+	public void qrCode(ByteArrayBuilder out, byte[] data, int moduleSize, QrErrorCorrection errorCorrection) {
+		// Model 2, error correction and module size
+		out.append(0x1B, 0x1D, 0x79, 0x53, 0x30, 0x02);
+		out.append(0x1B, 0x1D, 0x79, 0x53, 0x31, errorCorrection.ordinal());
+		out.append(0x1B, 0x1D, 0x79, 0x53, 0x32, Math.max(1, Math.min(moduleSize, 8)));
+		// Store the data and print it
+		out.append(0x1B, 0x1D, 0x79, 0x44, 0x31, 0x00, data.length & 0xFF, data.length >>> 8);
+		out.append(data, 0, data.length);
+		out.append(0x1B, 0x1D, 0x79, 0x50);
+	}
+
+	/**
+	 * Encodes an image into StarPRNT ESC GS S commands, in bands the printer accepts. Star printers print images
+	 * at a single density, the density is ignored.
+	 */
+	@Override
+	public byte[] raster(byte[] image, int dotsPerLine, int density) {
+		final RasterImage raster = RasterImage.read(image, dotsPerLine);
+		final int bytesPerRow = raster.getBytesPerRow();
+		final ByteArrayBuilder commands = new ByteArrayBuilder(raster.getData().length + 9);
+		for (int row = 0; row < raster.getHeight(); row += MAX_RASTER_ROWS) {
+			final int rows = Math.min(MAX_RASTER_ROWS, raster.getHeight() - row);
+			commands.append(0x1B, 0x1D, 0x53, 0x01, bytesPerRow & 0xFF, bytesPerRow >>> 8, rows & 0xFF, rows >>> 8, 0x00);
+			commands.append(raster.getData(), row * bytesPerRow, rows * bytesPerRow);
+		}
+		return commands.toByteArray();
+	}
+
+	/**
+	 * Feeds the paper to the cutter and cuts it with ESC d.
+	 */
+	@Override
+	public void cut(ByteArrayBuilder out, CutMode mode) {
+		out.append(0x1B, 0x64, mode == CutMode.FULL ? 0x02 : 0x03);
+	}
+
+	/**
+	 * Opens a cash drawer with BEL for the first drawer and SUB for the second.
+	 */
+	@Override
+	public void openDrawer(ByteArrayBuilder out, int pin) {
+		out.append(pin == 0 ? 0x07 : 0x1A);
+	}
+
+	/**
+	 * Gets the ESC GS t number of a code page
+	 * @return the number, -1 if Star printers do not have the code page
+	 */
+	private static int codePageNumberOf(CodePage codePage) {
+		switch (codePage) {
+			case CP437: return 1;
+			case CP858: return 4;
+			case CP852: return 5;
+			case CP860: return 6;
+			case CP863: return 8;
+			case CP865: return 9;
+			case CP866: return 10;
+			case CP1252: return 32;
+			default: return -1;
+		}
+	}
+
+	/**
+	 * Gets the ESC b barcode type of a symbology
+	 */
+	private static int barcodeTypeOf(BarcodeType type) {
+		switch (type) {
+			case UPC_E: return 0;
+			case UPC_A: return 1;
+			case EAN8: return 2;
+			case EAN13: return 3;
+			case CODE39: return 4;
+			case ITF: return 5;
+			case CODE128: return 6;
+			case CODE93: return 7;
+			case CODABAR: return 8;
+			default: throw new IllegalArgumentException("Unknown barcode type " + type);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.format.AbstractCommandFormatBuilder;
+import coza.trojanc.receipt.format.CodePage;
+import coza.trojanc.receipt.format.CommandSet;
+import coza.trojanc.receipt.format.RasterCache;
+
+/**
+ * The type Star print format builder, driving the printer with {@link StarCommandSet}.
+ * @author Charl Thiem
+ */
+public class StarPrintFormatBuilder extends AbstractCommandFormatBuilder {
+
+	/**
+	 * Commands of Star printers
+	 */
+	private static final CommandSet COMMANDS = new StarCommandSet();
+
+	/**
+	 * Commands of raster images shared by Star builders that have no cache of their own
+	 */
+	private static final RasterCache DEFAULT_RASTER_CACHE = new RasterCache(64);
+
+	/**
+	 * Code pages used when the printer is not told otherwise
+	 */
+	public static final CodePage[] DEFAULT_CODE_PAGES = {CodePage.CP437, CodePage.CP858, CodePage.CP1252};
+
+	/**
+	 * Creates a new instance of a <code>StarPrintFormatBuilder</code>
+	 */
+	public StarPrintFormatBuilder(){
+		this(42);
+	}
+
+	/**
+	 * Creates a new instances of <code>StarPrintFormatBuilder</code> setting
+	 * width of the paper.
+	 *
+	 * @param line_width the line width
+	 */
+	public StarPrintFormatBuilder(int line_width) {
+		this(line_width, DEFAULT_CODE_PAGES);
+	}
+
+	/**
+	 * Creates a new instances of <code>StarPrintFormatBuilder</code> setting
+	 * width of the paper and the code pages of the printer.
+	 *
+	 * @param line_width the line width
+	 * @param codePages the code pages the printer supports, in order of preference
+	 */
+	public StarPrintFormatBuilder(int line_width, CodePage... codePages) {
+		super(line_width, COMMANDS, DEFAULT_RASTER_CACHE, codePages);
+	}
+}
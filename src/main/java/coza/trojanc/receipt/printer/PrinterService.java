@@ -1,48 +1,152 @@
 package coza.trojanc.receipt.printer;
 
+import coza.trojanc.receipt.format.PartitionableFormatBuilder;
 import coza.trojanc.receipt.format.PrintFormatBuilder;
 import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.Mode;
 import coza.trojanc.receipt.shared.PrintStringUtil;
+import coza.trojanc.receipt.shared.TableColumn;
 import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import coza.trojanc.receipt.template.process.fields.ProcessedBarcode;
+import coza.trojanc.receipt.template.process.fields.ProcessedCut;
 import coza.trojanc.receipt.template.process.fields.ProcessedFeed;
 import coza.trojanc.receipt.template.process.fields.ProcessedFillLine;
 import coza.trojanc.receipt.template.process.fields.ProcessedLine;
+import coza.trojanc.receipt.template.process.fields.ProcessedLineItem;
+import coza.trojanc.receipt.template.process.fields.ProcessedLogo;
+import coza.trojanc.receipt.template.process.fields.ProcessedOpenDrawer;
+import coza.trojanc.receipt.template.process.fields.ProcessedQrCode;
+import coza.trojanc.receipt.template.process.fields.ProcessedTable;
 import coza.trojanc.receipt.template.process.fields.ProcessedText;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
  * @author Charl Thiem
  */
 public class PrinterService {
 
-	private PrintFormatBuilder builder;
+	/**
+	 * Pool used to lay out partitions of large templates, <code>null</code> to lay out sequentially.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Maximum number of processed items laid out by a single partition.
+	 */
+	private final int partitionSize;
+
+	/**
+	 * Creates a new instance of a <code>PrinterService</code> that lays out sequentially.
+	 */
+	public PrinterService(){
+		this(null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new instance of a <code>PrinterService</code> that partitions templates with more than
+	 * <code>partitionSize</code> items across the <code>pool</code> when the builder is a
+	 * {@link PartitionableFormatBuilder}.
+	 * @param pool Pool to lay out partitions in.
+	 * @param partitionSize Maximum number of processed items laid out by a single partition.
+	 */
+	public PrinterService(ForkJoinPool pool, int partitionSize){
+		if(partitionSize < 1){
+			throw new IllegalArgumentException("Partition size must be at least 1");
+		}
+		this.pool = pool;
+		this.partitionSize = partitionSize;
+	}
 
 	public void print(ProcessedTemplate template, PrintFormatBuilder builder){
-		this.builder = builder;
+		final List<ProcessedLineItem> items = template.getItems();
+		if(pool != null && items.size() > partitionSize && builder instanceof PartitionableFormatBuilder
+				&& ((PartitionableFormatBuilder)builder).isPartitionable()){
+			PartitionableFormatBuilder partitionedBuilder = (PartitionableFormatBuilder)builder;
+			pool.invoke(new LayoutPartition(items, 0, items.size(), partitionedBuilder))
+					.forEach(partitionedBuilder::join);
+		}
+		else{
+			printItems(items, builder);
+		}
+	}
 
-		template.getItems().forEach(processedLineItem -> {
+	/**
+	 * Prints several templates into one builder, so they can be sent to the printer in a single write. The paper
+	 * is cut after every template.
+	 * @param templates The templates to print
+	 * @param builder The builder to print into
+	 * @param cutMode The cut made after every template
+	 */
+	public void print(List<ProcessedTemplate> templates, PrintFormatBuilder builder, CutMode cutMode){
+		templates.forEach(template -> {
+			print(template, builder);
+			builder.cut(cutMode);
+		});
+	}
+
+	private void printItems(List<ProcessedLineItem> items, PrintFormatBuilder builder){
+		items.forEach(processedLineItem -> {
 
 			if(ProcessedFeed.class.isAssignableFrom(processedLineItem.getClass())){
 				builder.feed();
 			}
+			else if(ProcessedTable.class.isAssignableFrom(processedLineItem.getClass())){
+				printTable((ProcessedTable)processedLineItem, builder);
+			}
 			else if(ProcessedLine.class.isAssignableFrom(processedLineItem.getClass())){
 				ProcessedLine line = (ProcessedLine)processedLineItem;
-				printLine(line);
+				printLine(line, builder);
 			}
 			else if(ProcessedFillLine.class.isAssignableFrom(processedLineItem.getClass())){
 				ProcessedFillLine line = (ProcessedFillLine)processedLineItem;
+				builder.mode(Mode.NORMAL);
 				builder.left(PrintStringUtil.createStringOfChar(builder.getLineWidth(), line.getCharacter()));
 				builder.nl();
 			}
+			else if(ProcessedLogo.class.isAssignableFrom(processedLineItem.getClass())){
+				ProcessedLogo logo = (ProcessedLogo)processedLineItem;
+				builder.image(logo.getImage(), logo.imageHash(), logo.getAlignment());
+			}
+			else if(ProcessedBarcode.class.isAssignableFrom(processedLineItem.getClass())){
+				ProcessedBarcode barcode = (ProcessedBarcode)processedLineItem;
+				builder.barcode(barcode.getType(), barcode.getData(), barcode.getHeight(), barcode.getAlignment());
+			}
+			else if(ProcessedQrCode.class.isAssignableFrom(processedLineItem.getClass())){
+				ProcessedQrCode qrCode = (ProcessedQrCode)processedLineItem;
+				builder.qrCode(qrCode.getData(), qrCode.getModuleSize(), qrCode.getErrorCorrection(), qrCode.getAlignment());
+			}
+			else if(ProcessedCut.class.isAssignableFrom(processedLineItem.getClass())){
+				builder.cut(((ProcessedCut)processedLineItem).getMode());
+			}
+			else if(ProcessedOpenDrawer.class.isAssignableFrom(processedLineItem.getClass())){
+				builder.openDrawer(((ProcessedOpenDrawer)processedLineItem).getPin());
+			}
 		});
-
 	}
 
-	private void printLine(ProcessedLine line){
-		line.getLineItems().forEach(processedText -> printText(processedText, line.getLineItems().size() == 1));
+	private void printLine(ProcessedLine line, PrintFormatBuilder builder){
+		line.getLineItems().forEach(processedText -> printText(processedText, line.getLineItems().size() == 1, builder));
 		builder.nl();
 	}
 
-	private void printText(ProcessedText processedText, boolean onlyItemInLine){
+	private void printTable(ProcessedTable table, PrintFormatBuilder builder){
+		final List<ProcessedText> cells = table.getLineItems();
+		final String[] texts = new String[cells.size()];
+		final Mode[] modes = new Mode[cells.size()];
+		for(int i = 0 ; i < texts.length; i++){
+			texts[i] = cells.get(i).getText();
+			modes[i] = cells.get(i).getMode();
+		}
+		builder.row(table.getColumns().toArray(new TableColumn[0]), table.getSpacing(), texts, modes);
+	}
+
+	private void printText(ProcessedText processedText, boolean onlyItemInLine, PrintFormatBuilder builder){
 		Integer offset = processedText.getOffset();
 		if(!onlyItemInLine){
 			if(Align.RIGHT == processedText.getAlignment()){
@@ -57,6 +161,48 @@ public class PrinterService {
 		}
 
 		// Calculate offset based on alignment
+		builder.mode(processedText.getMode());
 		builder.insertText(processedText.getText(), offset, processedText.getAlignment());
 	}
+
+	/**
+	 * A partition of the processed items. Each partition is laid out into its own forked builder, the
+	 * builders are joined in item order.
+	 */
+	private class LayoutPartition extends RecursiveTask<List<PrintFormatBuilder>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<ProcessedLineItem> items;
+
+		private final int from;
+
+		private final int to;
+
+		private final PartitionableFormatBuilder builder;
+
+		LayoutPartition(List<ProcessedLineItem> items, int from, int to, PartitionableFormatBuilder builder){
+			this.items = items;
+			this.from = from;
+			this.to = to;
+			this.builder = builder;
+		}
+
+		@Override
+		protected List<PrintFormatBuilder> compute() {
+			if(to - from <= partitionSize){
+				PrintFormatBuilder partition = builder.fork();
+				printItems(items.subList(from, to), partition);
+				return Collections.singletonList(partition);
+			}
+			final int middle = (from + to) >>> 1;
+			LayoutPartition head = new LayoutPartition(items, from, middle, builder);
+			LayoutPartition tail = new LayoutPartition(items, middle, to, builder);
+			head.fork();
+			List<PrintFormatBuilder> tailPartitions = tail.compute();
+			List<PrintFormatBuilder> partitions = new ArrayList<>(head.join());
+			partitions.addAll(tailPartitions);
+			return partitions;
+		}
+	}
 }
@@ -4,6 +4,7 @@ import coza.trojanc.receipt.context.ContextMap;
 import coza.trojanc.receipt.format.PrintFormatBuilder;
 import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
 import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.compile.OutputSizeEstimator;
 import coza.trojanc.receipt.template.loader.impl.JsonTemplateDefinitionLoader;
 import coza.trojanc.receipt.template.process.ProcessedTemplate;
 import coza.trojanc.receipt.template.process.TemplateProcessor;
@@ -30,7 +31,22 @@ public class SimplePlainTextPrinterService {
 		// Print the template
 		PrinterService printerService = new PrinterService();
 		PrintFormatBuilder printerBuilder = new PlainTextFormatBuilder(width);
+		printerBuilder.expectLines(OutputSizeEstimator.estimateLines(template, contextMap));
 		printerService.print(processedTemplate, printerBuilder);
 		return (String)printerBuilder.getFormat();
 	}
+
+	/**
+	 * Processes a template into a layout that can be printed at several widths.
+	 */
+	public static TemplateLayout createLayout(PrintTemplate template, ContextMap contextMap){
+		TemplateProcessor processor = new DefaultTemplateProcessor();
+		return new TemplateLayout(processor.process(template, contextMap));
+	}
+
+	public static String createReceipt(int width, TemplateLayout layout){
+		PrintFormatBuilder printerBuilder = new PlainTextFormatBuilder(width);
+		layout.layout(printerBuilder);
+		return (String)printerBuilder.getFormat();
+	}
 }
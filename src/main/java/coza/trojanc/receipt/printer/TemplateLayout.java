@@ -0,0 +1,98 @@
+package coza.trojanc.receipt.printer;
+
+import coza.trojanc.receipt.format.AbstractPlainTextFormatBuilder;
+import coza.trojanc.receipt.format.PrintFormatBuilder;
+import coza.trojanc.receipt.shared.BreakPositionSource;
+import coza.trojanc.receipt.shared.PrintStringUtil;
+import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import coza.trojanc.receipt.template.process.fields.ProcessedLine;
+import coza.trojanc.receipt.template.process.fields.ProcessedLineItem;
+import coza.trojanc.receipt.template.process.fields.ProcessedText;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A width independent layout of a processed template.
+ * <p>
+ * The text runs of the template keep their alignment and offset, and the word break positions of every text
+ * are found once when the layout is created. Laying out for a printer only wraps the texts at the width of the
+ * builder, so one processed template can be printed at several widths without processing or scanning it again.
+ * A layout is not modified once created, and can be laid out by several threads at once.
+ * @author Charl Thiem
+ */
+public class TemplateLayout implements BreakPositionSource {
+
+	/**
+	 * The processed template being laid out
+	 */
+	private final ProcessedTemplate processedTemplate;
+
+	/**
+	 * Break positions of the texts in the template, keyed by the text instance
+	 */
+	private final Map<String, int[]> breakPositions = new IdentityHashMap<>();
+
+	/**
+	 * Service used to lay out the template
+	 */
+	private final PrinterService printerService;
+
+	/**
+	 * Creates a new instance of a <code>TemplateLayout</code>.
+	 * @param processedTemplate The processed template to lay out.
+	 */
+	public TemplateLayout(ProcessedTemplate processedTemplate){
+		this(processedTemplate, new PrinterService());
+	}
+
+	/**
+	 * Creates a new instance of a <code>TemplateLayout</code>.
+	 * @param processedTemplate The processed template to lay out.
+	 * @param printerService Service used to lay out the template.
+	 */
+	public TemplateLayout(ProcessedTemplate processedTemplate, PrinterService printerService){
+		this.processedTemplate = processedTemplate;
+		this.printerService = printerService;
+		for(ProcessedLineItem item : processedTemplate.getItems()){
+			if(ProcessedLine.class.isAssignableFrom(item.getClass())){
+				for(ProcessedText processedText : ((ProcessedLine)item).getLineItems()){
+					final String text = processedText.getText();
+					if(text != null && !breakPositions.containsKey(text)){
+						breakPositions.put(text, PrintStringUtil.getBreakPositions(text));
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public int[] getBreakPositions(String text) {
+		return breakPositions.get(text);
+	}
+
+	/**
+	 * Lays out the template into a builder, at the line width of the builder.
+	 * @param builder The builder to lay out into.
+	 */
+	public void layout(PrintFormatBuilder builder){
+		if(builder instanceof AbstractPlainTextFormatBuilder){
+			AbstractPlainTextFormatBuilder plainTextBuilder = (AbstractPlainTextFormatBuilder)builder;
+			final BreakPositionSource previousSource = plainTextBuilder.getBreakPositionSource();
+			plainTextBuilder.setBreakPositionSource(this);
+			try {
+				printerService.print(processedTemplate, builder);
+			}
+			finally {
+				plainTextBuilder.setBreakPositionSource(previousSource);
+			}
+		}
+		else{
+			printerService.print(processedTemplate, builder);
+		}
+	}
+
+	public ProcessedTemplate getProcessedTemplate() {
+		return processedTemplate;
+	}
+}
@@ -0,0 +1,17 @@
+package coza.trojanc.receipt.shared;
+
+/**
+ * Symbologies of one dimensional barcodes.
+ * @author Charl Thiem
+ */
+public enum BarcodeType {
+	UPC_A,
+	UPC_E,
+	EAN13,
+	EAN8,
+	CODE39,
+	ITF,
+	CODABAR,
+	CODE93,
+	CODE128
+}
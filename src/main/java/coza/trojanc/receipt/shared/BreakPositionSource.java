@@ -0,0 +1,20 @@
+package coza.trojanc.receipt.shared;
+
+/**
+ * A source of precomputed break positions of texts, as returned by {@link PrintStringUtil#getBreakPositions(String)}.
+ * <p>
+ * Format builders consult the source before wrapping a text, so the break positions of a text do not have to be
+ * found again for every line width the text is laid out at.
+ * @author Charl Thiem
+ */
+@FunctionalInterface
+public interface BreakPositionSource {
+
+	/**
+	 * Gets the break positions of a text.
+	 *
+	 * @param text the text
+	 * @return the break positions, or <code>null</code> if they are not known for the text
+	 */
+	int[] getBreakPositions(String text);
+}
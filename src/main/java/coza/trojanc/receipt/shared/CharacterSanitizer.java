@@ -0,0 +1,217 @@
+package coza.trojanc.receipt.shared;
+
+import java.nio.CharBuffer;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces invalid characters using a lookup table over the Basic Multilingual Plane.
+ * <p>
+ * The table is compiled once from ranges of invalid characters, or by expanding a regular expression that is a
+ * single character class. Characters are looked up one at a time, so each half of a surrogate pair is replaced
+ * on its own. The {@link DisplayWidth#FILLER} after a wide char is never replaced, as it holds the second column of
+ * the wide char. A U+FFFF in a text never reaches a sanitizer, it is replaced when the text is laid out. A sanitizer is not modified once created and can be shared between builders and threads.
+ * @author Charl Thiem
+ */
+public class CharacterSanitizer {
+
+	/**
+	 * Number of chars in the Basic Multilingual Plane
+	 */
+	private static final int BMP_SIZE = Character.MAX_VALUE + 1;
+
+	/**
+	 * Regular expressions that are a single predefined or property character class
+	 */
+	private static final Pattern PREDEFINED_CLASS = Pattern.compile("\\\\[sSdDwWhHvV]|\\\\[pP]\\{[^}]+\\}");
+
+	/**
+	 * Most sanitizers kept by {@link #fromPattern(Pattern, char)}
+	 */
+	private static final int MAX_CACHED_PATTERNS = 16;
+
+	/**
+	 * Sanitizers expanded from patterns, keyed by pattern, flags and replacement. The least recently used one is
+	 * dropped when the cache is full, so patterns from callers do not pile up. Guarded by itself.
+	 */
+	private static final Map<String, CharacterSanitizer> PATTERN_CACHE =
+			new LinkedHashMap<String, CharacterSanitizer>(MAX_CACHED_PATTERNS, 0.75f, true){
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CharacterSanitizer> eldest){
+			return this.size() > MAX_CACHED_PATTERNS;
+		}
+	};
+
+	/**
+	 * Lookup table of invalid chars
+	 */
+	private final BitSet invalidChars;
+
+	/**
+	 * Char that replaces an invalid char
+	 */
+	private final char replacement;
+
+	/**
+	 * Creates a new instance of a <code>CharacterSanitizer</code>.
+	 *
+	 * @param invalidChars Set of invalid chars, which is copied
+	 * @param replacement Char that replaces an invalid char
+	 */
+	public CharacterSanitizer(final BitSet invalidChars, final char replacement){
+		this.invalidChars = (BitSet) invalidChars.clone();
+		this.invalidChars.clear(DisplayWidth.FILLER);
+		this.replacement = replacement;
+	}
+
+	/**
+	 * Creates a sanitizer from ranges of invalid chars.
+	 *
+	 * @param replacement Char that replaces an invalid char
+	 * @param ranges Pairs of the first and last char (inclusive) of each invalid range
+	 * @return the sanitizer
+	 */
+	public static CharacterSanitizer fromRanges(final char replacement, final char... ranges){
+		if (ranges.length % 2 != 0){
+			throw new IllegalArgumentException("Ranges must be pairs of first and last chars");
+		}
+		final BitSet invalidChars = new BitSet(BMP_SIZE);
+		for (int i = 0 ; i < ranges.length; i += 2){
+			if (ranges[i] > ranges[i + 1]){
+				throw new IllegalArgumentException("Invalid range " + (int) ranges[i] + "-" + (int) ranges[i + 1]);
+			}
+			invalidChars.set(ranges[i], ranges[i + 1] + 1);
+		}
+		return new CharacterSanitizer(invalidChars, replacement);
+	}
+
+	/**
+	 * Creates a sanitizer by expanding a pattern of invalid characters into a lookup table. The most recently used
+	 * expanded patterns are cached, so expanding the same pattern again is cheap.
+	 *
+	 * @param pattern Pattern of invalid characters
+	 * @param replacement Char that replaces an invalid char
+	 * @return the sanitizer, or <code>null</code> if the pattern is not a single character class
+	 */
+	public static CharacterSanitizer fromPattern(final Pattern pattern, final char replacement){
+		if (!isCharacterClass(pattern.pattern())){
+			return null;
+		}
+		final String key = pattern.flags() + "/" + (int) replacement + "/" + pattern.pattern();
+		synchronized (PATTERN_CACHE){
+			final CharacterSanitizer sanitizer = PATTERN_CACHE.get(key);
+			if (sanitizer != null){
+				return sanitizer;
+			}
+		}
+		// Expanded outside the lock, a pattern expanded by two threads at once gives equal sanitizers
+		final CharacterSanitizer sanitizer = expand(pattern, replacement);
+		synchronized (PATTERN_CACHE){
+			final CharacterSanitizer cached = PATTERN_CACHE.putIfAbsent(key, sanitizer);
+			return cached != null ? cached : sanitizer;
+		}
+	}
+
+	/**
+	 * Tests every char of the Basic Multilingual Plane against the pattern.
+	 */
+	private static CharacterSanitizer expand(final Pattern pattern, final char replacement){
+		final BitSet invalidChars = new BitSet(BMP_SIZE);
+		final char[] value = new char[1];
+		final Matcher matcher = pattern.matcher(CharBuffer.wrap(value));
+		for (int c = 0 ; c < BMP_SIZE; c++){
+			value[0] = (char) c;
+			if (matcher.reset().matches()){
+				invalidChars.set(c);
+			}
+		}
+		return new CharacterSanitizer(invalidChars, replacement);
+	}
+
+	/**
+	 * Determines if a regular expression matches exactly one character, being a bracketed character class or a
+	 * predefined class. Only such expressions replace the same characters when expanded into a lookup table.
+	 *
+	 * @param regex the regular expression
+	 * @return <code>true</code> if the expression is a single character class
+	 */
+	public static boolean isCharacterClass(final String regex){
+		if (PREDEFINED_CLASS.matcher(regex).matches()){
+			return true;
+		}
+		if (regex.length() < 3 || regex.charAt(0) != '['){
+			return false;
+		}
+		int depth = 0;
+		for (int i = 0 ; i < regex.length(); i++){
+			final char c = regex.charAt(i);
+			if (c == '\\'){
+				i++;
+			}
+			else if (c == '['){
+				depth++;
+			}
+			else if (c == ']'){
+				depth--;
+				if (depth == 0){
+					return i == regex.length() - 1;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if a char is invalid.
+	 *
+	 * @param c the char
+	 * @return <code>true</code> if the char is replaced
+	 */
+	public boolean isInvalid(final char c){
+		return this.invalidChars.get(c);
+	}
+
+	/**
+	 * Sanitizes a string.
+	 *
+	 * @param str the str
+	 * @return the str itself if it has no invalid chars, otherwise a copy with the invalid chars replaced
+	 */
+	public String sanitize(final String str){
+		final int length = str.length();
+		for (int i = 0 ; i < length; i++){
+			if (this.invalidChars.get(str.charAt(i))){
+				final char[] chars = str.toCharArray();
+				this.sanitize(chars, i, length);
+				return new String(chars);
+			}
+		}
+		return str;
+	}
+
+	/**
+	 * Sanitizes a range of a char array in place.
+	 *
+	 * @param chars the chars
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @return <code>true</code> if any char was replaced
+	 */
+	public boolean sanitize(final char[] chars, final int from, final int to){
+		boolean replaced = false;
+		for (int i = from ; i < to; i++){
+			if (this.invalidChars.get(chars[i])){
+				chars[i] = this.replacement;
+				replaced = true;
+			}
+		}
+		return replaced;
+	}
+
+	public char getReplacement() {
+		return replacement;
+	}
+}
@@ -0,0 +1,260 @@
+package coza.trojanc.receipt.shared;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Number of printer columns chars take, from a table precomputed per page of 256 chars. Pages in which every char
+ * takes one column share one table, and chars before U+0300 take one column without a lookup.
+ * <ul>
+ *     <li>East Asian wide and fullwidth chars take two columns. In a line they are followed by {@link #FILLER}
+ *     in their second column.</li>
+ *     <li>Combining marks, format chars and Hangul medial vowels take no column.</li>
+ *     <li>Each char of a surrogate pair takes one column, so a pair takes two.</li>
+ * </ul>
+ * @author Charl Thiem
+ */
+public final class DisplayWidth {
+
+	/**
+	 * Char in the second column of a wide char, output builders leave it out or print a space. The char is a
+	 * noncharacter, a U+FFFF in a text is written into a line as {@link #FILLER_REPLACEMENT} so only fillers of
+	 * wide chars carry it.
+	 */
+	public static final char FILLER = '\uFFFF';
+
+	/**
+	 * Char a {@link #FILLER} in a text is written as
+	 */
+	public static final char FILLER_REPLACEMENT = '\uFFFD';
+
+	/**
+	 * Chars before this take one column
+	 */
+	private static final char NARROW_LIMIT = 0x300;
+
+	/**
+	 * Ranges of wide and fullwidth chars, first and last char of every range
+	 */
+	private static final char[] WIDE_RANGES = {
+			0x1100, 0x115F, 0x231A, 0x231B, 0x2329, 0x232A, 0x23E9, 0x23EC, 0x23F0, 0x23F0, 0x23F3, 0x23F3,
+			0x25FD, 0x25FE, 0x2614, 0x2615, 0x2648, 0x2653, 0x267F, 0x267F, 0x2693, 0x2693, 0x26A1, 0x26A1,
+			0x26AA, 0x26AB, 0x26BD, 0x26BE, 0x26C4, 0x26C5, 0x26CE, 0x26CE, 0x26D4, 0x26D4, 0x26EA, 0x26EA,
+			0x26F2, 0x26F3, 0x26F5, 0x26F5, 0x26FA, 0x26FA, 0x26FD, 0x26FD, 0x2705, 0x2705, 0x270A, 0x270B,
+			0x2728, 0x2728, 0x274C, 0x274C, 0x274E, 0x274E, 0x2753, 0x2755, 0x2757, 0x2757, 0x2795, 0x2797,
+			0x27B0, 0x27B0, 0x27BF, 0x27BF, 0x2B1B, 0x2B1C, 0x2B50, 0x2B50, 0x2B55, 0x2B55, 0x2E80, 0x303E,
+			0x3041, 0x33FF, 0x3400, 0x4DBF, 0x4E00, 0x9FFF, 0xA000, 0xA4CF, 0xA960, 0xA97F, 0xAC00, 0xD7A3,
+			0xF900, 0xFAFF, 0xFE10, 0xFE19, 0xFE30, 0xFE6F, 0xFF00, 0xFF60, 0xFFE0, 0xFFE6
+	};
+
+	/**
+	 * Widths of every char, indexed by the high and then the low byte of the char
+	 */
+	private static final byte[][] PAGES = new byte[256][];
+
+	static {
+		final byte[] narrowPage = new byte[256];
+		Arrays.fill(narrowPage, (byte) 1);
+		final byte[] page = new byte[256];
+		for (int high = 0; high < 256; high++) {
+			for (int low = 0; low < 256; low++) {
+				page[low] = (byte) computeWidth((char) (high << 8 | low));
+			}
+			PAGES[high] = Arrays.equals(page, narrowPage) ? narrowPage : page.clone();
+		}
+	}
+
+	private DisplayWidth(){
+	}
+
+	private static int computeWidth(final char c){
+		if (c < NARROW_LIMIT || c == '\u00AD' || Character.isSurrogate(c) || c == FILLER) {
+			return 1;
+		}
+		for (int i = 0; i < WIDE_RANGES.length; i += 2) {
+			if (c >= WIDE_RANGES[i] && c <= WIDE_RANGES[i + 1]) {
+				return 2;
+			}
+		}
+		final int type = Character.getType(c);
+		if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT
+				|| (c >= 0x1160 && c <= 0x11FF)) {
+			return 0;
+		}
+		return 1;
+	}
+
+	/**
+	 * @param c the char
+	 * @return the number of columns the char takes, 0 to 2
+	 */
+	public static int of(final char c){
+		if (c < NARROW_LIMIT) {
+			return 1;
+		}
+		return PAGES[c >>> 8][c & 0xFF];
+	}
+
+	/**
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @return <code>true</code> if every char of the range takes one column without a lookup
+	 */
+	public static boolean isNarrow(final CharSequence text, final int from, final int to){
+		for (int i = from; i < to; i++) {
+			if (text.charAt(i) >= NARROW_LIMIT) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @return the number of columns the range takes
+	 */
+	public static int of(final CharSequence text, final int from, final int to){
+		int columns = 0;
+		for (int i = from; i < to; i++) {
+			final char c = text.charAt(i);
+			columns += c < NARROW_LIMIT ? 1 : PAGES[c >>> 8][c & 0xFF];
+		}
+		return columns;
+	}
+
+	/**
+	 * Finds the end of the longest start of a range that fits in a number of columns. Wide chars and surrogate
+	 * pairs are not split, and the chars taking no column after the last char that fits are included.
+	 *
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @param columns the number of columns
+	 * @return the end (exclusive)
+	 */
+	public static int endOfColumns(final CharSequence text, final int from, final int to, final int columns){
+		int used = 0;
+		int i = from;
+		while (i < to) {
+			final int length = (Character.isHighSurrogate(text.charAt(i)) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) ? 2 : 1;
+			final int width = length == 2 ? 2 : of(text.charAt(i));
+			if (used + width > columns) {
+				break;
+			}
+			used += width;
+			i += length;
+		}
+		return i;
+	}
+
+	/**
+	 * Finds the start of the longest end of a range that fits in a number of columns. Wide chars and surrogate
+	 * pairs are not split, and chars taking no column are kept with the char before them.
+	 *
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @param columns the number of columns
+	 * @return the start (inclusive)
+	 */
+	public static int startOfColumns(final CharSequence text, final int from, final int to, final int columns){
+		int used = 0;
+		int i = to;
+		int start = to;
+		while (i > from) {
+			final int length = (Character.isLowSurrogate(text.charAt(i - 1)) && i - 2 >= from && Character.isHighSurrogate(text.charAt(i - 2))) ? 2 : 1;
+			final int width = length == 2 ? 2 : of(text.charAt(i - 1));
+			if (used + width > columns) {
+				break;
+			}
+			used += width;
+			i -= length;
+			if (width > 0) {
+				start = i;
+			}
+		}
+		return start;
+	}
+
+	/**
+	 * Writes a range of a text into the columns of a line, starting at a column that may be outside the line.
+	 * Wide chars and surrogate pairs that do not fit the line completely are written as a space. A char taking
+	 * no column is composed with the char in the column before it when they have a composed form, else it is
+	 * left out. A {@link #FILLER} in the text is written as {@link #FILLER_REPLACEMENT}.
+	 *
+	 * @param line the columns of the line
+	 * @param column the column of the first char
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 */
+	public static void write(final char[] line, int column, final CharSequence text, final int from, final int to){
+		final int start = column;
+		for (int i = from; i < to; i++) {
+			final char c = text.charAt(i);
+			if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+				writePair(line, column, c, text.charAt(++i));
+				column += 2;
+				continue;
+			}
+			final int width = of(c);
+			if (width == 2) {
+				writePair(line, column, c, FILLER);
+			}
+			else if (width == 1) {
+				if (column >= 0 && column < line.length) {
+					line[column] = c == FILLER ? FILLER_REPLACEMENT : c;
+				}
+			}
+			else if (column > Math.max(start, 0) && column - 1 < line.length) {
+				final String composed = Normalizer.normalize(new String(new char[]{line[column - 1], c}), Normalizer.Form.NFC);
+				if (composed.length() == 1) {
+					line[column - 1] = composed.charAt(0);
+				}
+			}
+			column += width;
+		}
+		repairEdges(line, start, column);
+	}
+
+	/**
+	 * Replaces the halves of wide chars and surrogate pairs left around the columns a text was written into
+	 * with spaces.
+	 *
+	 * @param line the columns of the line
+	 * @param start first column written (inclusive)
+	 * @param end last column written (exclusive)
+	 */
+	public static void repairEdges(final char[] line, final int start, final int end){
+		if (start > 0 && start <= line.length) {
+			final char before = line[start - 1];
+			if ((before >= NARROW_LIMIT && of(before) == 2) || Character.isHighSurrogate(before)) {
+				line[start - 1] = ' ';
+			}
+		}
+		if (end >= 0 && end < line.length && end > start) {
+			final char after = line[end];
+			if (after == FILLER || Character.isLowSurrogate(after)) {
+				line[end] = ' ';
+			}
+		}
+	}
+
+	private static void writePair(final char[] line, final int column, final char first, final char second){
+		final boolean firstInside = column >= 0 && column < line.length;
+		final boolean secondInside = column + 1 >= 0 && column + 1 < line.length;
+		if (firstInside && secondInside) {
+			line[column] = first;
+			line[column + 1] = second;
+		}
+		else if (firstInside) {
+			line[column] = ' ';
+		}
+		else if (secondInside) {
+			line[column + 1] = ' ';
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package coza.trojanc.receipt.shared;
+
+/**
+ * Wraps a range of a text into lines without allocating.
+ * <p>
+ * A breaker is reset with the text to wrap, after which every call to {@link #next()} moves to the next line,
+ * which is then available as the range {@link #getLineStart()} to {@link #getLineEnd()} of the text. Lines are
+ * broken on spaces and newline characters the same way as {@link PrintStringUtil#getLines(String, int, String)}
+ * without a new line sequence. The width of a line is in columns as counted by {@link DisplayWidth}, a text of
+ * chars before U+0300 is wrapped without looking up widths. A breaker can be reused for any number of texts, but is not thread safe.
+ * @author Charl Thiem
+ */
+public class LineBreaker {
+
+	/**
+	 * The text being wrapped
+	 */
+	private CharSequence text;
+
+	/**
+	 * End of the range being wrapped (exclusive)
+	 */
+	private int end;
+
+	/**
+	 * Maximum number of columns of a line
+	 */
+	private int width;
+
+	/**
+	 * If every char of the range takes one column
+	 */
+	private boolean narrow;
+
+	/**
+	 * Precomputed break positions of the text, <code>null</code> to scan the text
+	 */
+	private int[] breakPositions;
+
+	/**
+	 * Index of the first break position that may still be in a line
+	 */
+	private int breakCursor;
+
+	/**
+	 * Start and end of every line when replaying lines found before, <code>null</code> when wrapping
+	 */
+	private int[] lines;
+
+	/**
+	 * Index in the replayed lines of the next line
+	 */
+	private int lineIndex;
+
+	/**
+	 * Index in the text where the search for the next line starts
+	 */
+	private int position;
+
+	/**
+	 * Start of the current line (inclusive)
+	 */
+	private int lineStart;
+
+	/**
+	 * End of the current line (exclusive)
+	 */
+	private int lineEnd;
+
+	/**
+	 * Resets the breaker to wrap a whole text.
+	 *
+	 * @param text the text
+	 * @param width the maximum number of columns of a line
+	 * @return the line breaker
+	 */
+	public LineBreaker reset(final CharSequence text, final int width){
+		return this.reset(text, 0, text.length(), width, null);
+	}
+
+	/**
+	 * Resets the breaker to wrap a range of a text.
+	 *
+	 * @param text the text
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @param width the maximum number of columns of a line
+	 * @param breakPositions the break positions of the whole text from {@link PrintStringUtil#getBreakPositions(String)},
+	 *                       or <code>null</code> to scan the text
+	 * @return the line breaker
+	 */
+	public LineBreaker reset(final CharSequence text, final int from, final int to, final int width, final int[] breakPositions){
+		if (width < 1){
+			throw new IllegalArgumentException("Width must be at least 1");
+		}
+		this.text = text;
+		this.end = to;
+		this.width = width;
+		this.breakPositions = breakPositions;
+		this.lines = null;
+		this.narrow = DisplayWidth.isNarrow(text, from, to);
+		this.breakCursor = 0;
+		this.position = from;
+		this.lineStart = from;
+		this.lineEnd = from;
+		return this;
+	}
+
+	/**
+	 * Resets the breaker to replay the lines a text was wrapped into before.
+	 *
+	 * @param text the text
+	 * @param lines the start and end of every line, one after the other
+	 * @return the line breaker
+	 */
+	public LineBreaker replay(final CharSequence text, final int[] lines){
+		this.text = text;
+		this.lines = lines;
+		this.lineIndex = 0;
+		this.lineStart = 0;
+		this.lineEnd = 0;
+		return this;
+	}
+
+	/**
+	 * Moves to the next line.
+	 *
+	 * @return <code>true</code> if there is a next line, <code>false</code> if the text is exhausted
+	 */
+	public boolean next(){
+		if (this.lines != null) {
+			if (this.lineIndex >= this.lines.length) {
+				return false;
+			}
+			this.lineStart = this.lines[this.lineIndex++];
+			this.lineEnd = this.lines[this.lineIndex++];
+			return true;
+		}
+		// find start
+		int start = this.position;
+		while ((start < this.end) && (this.text.charAt(start) == ' ')) {
+			start++;
+		}
+		if (start >= this.end) {
+			this.position = this.end;
+			return false;
+		}
+
+		final int maxIndex = this.narrow
+				? Math.min(start + this.width - 1, this.end - 1)
+				: Math.max(DisplayWidth.endOfColumns(this.text, start, this.end, this.width), start + 1) - 1;
+		int lastSpaceIndex = -1;
+		int newLineIndex = -1;
+		if (this.breakPositions == null) {
+			for (int i = start; i <= maxIndex; i++) {
+				final char c = this.text.charAt(i);
+				if (c == ' ') {
+					lastSpaceIndex = i;
+				}
+				else if (c == '\n') {
+					newLineIndex = i;
+					break;
+				}
+			}
+		}
+		else {
+			while ((this.breakCursor < this.breakPositions.length) && (this.breakPositions[this.breakCursor] < start)) {
+				this.breakCursor++;
+			}
+			for (int b = this.breakCursor; (b < this.breakPositions.length) && (this.breakPositions[b] <= maxIndex); b++) {
+				if (this.text.charAt(this.breakPositions[b]) == '\n') {
+					newLineIndex = this.breakPositions[b];
+					break;
+				}
+				lastSpaceIndex = this.breakPositions[b];
+			}
+		}
+
+		int breakIndex;
+		if (newLineIndex != -1) {
+			breakIndex = newLineIndex;
+			this.position = newLineIndex + 1;
+		}
+		else {
+			// no break, use last space char
+			if ((maxIndex == this.end - 1) || (lastSpaceIndex == -1)) {
+				breakIndex = maxIndex + 1;
+			}
+			else {
+				breakIndex = lastSpaceIndex;
+			}
+			this.position = breakIndex;
+		}
+
+		// if space char, find first
+		if ((breakIndex < this.end) && (this.text.charAt(breakIndex) == ' ')) {
+			while ((breakIndex - 1 > start) && (this.text.charAt(breakIndex - 1) == ' ')) {
+				breakIndex--;
+			}
+		}
+
+		this.lineStart = start;
+		this.lineEnd = breakIndex;
+		return true;
+	}
+
+	/**
+	 * @return start of the current line in the text (inclusive)
+	 */
+	public int getLineStart() {
+		return lineStart;
+	}
+
+	/**
+	 * @return end of the current line in the text (exclusive)
+	 */
+	public int getLineEnd() {
+		return lineEnd;
+	}
+
+	/**
+	 * @return length of the current line
+	 */
+	public int getLineLength() {
+		return lineEnd - lineStart;
+	}
+}
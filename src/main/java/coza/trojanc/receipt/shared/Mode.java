@@ -4,12 +4,44 @@ package coza.trojanc.receipt.shared;
  * @author Charl Thiem
  */
 public enum Mode {
-	NORMAL("normal"),
-	BOLD("bold");
+	NORMAL("normal", false, false, false, false),
+	BOLD("bold", true, false, false, false),
+	UNDERLINE("underline", false, false, false, true),
+	DOUBLE_HEIGHT("doubleHeight", false, true, false, false),
+	DOUBLE_WIDTH("doubleWidth", false, false, true, false),
+	DOUBLE_SIZE("doubleSize", false, true, true, false);
 
 
 	private String value;
-	Mode(String value){
+	private final boolean bold;
+	private final boolean doubleHeight;
+	private final boolean doubleWidth;
+	private final boolean underline;
+
+	Mode(String value, boolean bold, boolean doubleHeight, boolean doubleWidth, boolean underline){
 		this.value = value;
+		this.bold = bold;
+		this.doubleHeight = doubleHeight;
+		this.doubleWidth = doubleWidth;
+		this.underline = underline;
+	}
+
+	public boolean isBold() {
+		return bold;
+	}
+
+	public boolean isDoubleHeight() {
+		return doubleHeight;
+	}
+
+	/**
+	 * @return <code>true</code> if every char takes up two columns
+	 */
+	public boolean isDoubleWidth() {
+		return doubleWidth;
+	}
+
+	public boolean isUnderline() {
+		return underline;
 	}
 }
@@ -68,7 +68,9 @@ public class PrintStringUtil {
 		 * parse string
 		 */
 		tab_index[0] = -1;
-		int max_index = Math.min(start_index[0] + width - 1, str_length-1);
+		int max_index = DisplayWidth.isNarrow(str, start_index[0], Math.min(start_index[0] + width, str_length))
+				? Math.min(start_index[0] + width - 1, str_length-1)
+				: Math.max(DisplayWidth.endOfColumns(str, start_index[0], str_length, width), start_index[0] + 1) - 1;
 		int break_index = -1;
 		int last_space_index = -1;
 		end_index[0] = start_index[0];
@@ -169,21 +171,20 @@ public class PrintStringUtil {
 
 
 	/**
-	 * Insert a value into a char array representing a line, so that the
-	 * value will be inserted at the <code>destPos</code> in the line.
+	 * Insert a range of a value into a char array representing a line, so that the
+	 * range will be inserted at the <code>destPos</code> in the line.
 	 *
 	 * @param line Character array representing the line.
 	 * @param destPos Index in line where the value should be inserted
 	 * @param value Value that must be inserted in the line
+	 * @param from Start of the range in the value (inclusive)
+	 * @param to End of the range in the value (exclusive)
 	 * @param maxLength Maximum number of characters from the value that may be added
 	 */
-	private static void insert(char[] line, int destPos, char[] value, int maxLength)
+	private static void insert(char[] line, int destPos, CharSequence value, int from, int to, int maxLength)
 	{
-		if (value == null) {
-			return;
-		}
-		int length = value.length;	// Number of characters from value that will be inserted into line
-		int srcPos = 0; 			// Starting index in value
+		int length = to - from;	// Number of characters from value that will be inserted into line
+		int srcPos = from; 		// Starting index in value
 
 		//verify max length
 		if (maxLength < length) {
@@ -221,7 +222,15 @@ public class PrintStringUtil {
 			length = line.length - destPos;
 
 		//copy
-		System.arraycopy(value, srcPos, line, destPos, length);
+		if (value instanceof String) {
+			((String) value).getChars(srcPos, srcPos + length, line, destPos);
+		}
+		else {
+			for (int i = 0 ; i < length; i++) {
+				line[destPos + i] = value.charAt(srcPos + i);
+			}
+		}
+		DisplayWidth.repairEdges(line, destPos, destPos + length);
 	}
 
 	/**
@@ -237,18 +246,33 @@ public class PrintStringUtil {
 		if (value == null) {
 			return;
 		}
+		insertLeftAligned(line, position, value, 0, value.length(), maxLength);
+	}
 
-		final int valueLength = value.length();
-
+	/**
+	 * Insert a range of a value into a char array, left aligned
+	 *
+	 * @param line      the line
+	 * @param position  the position
+	 * @param value     the value
+	 * @param from      start of the range in the value (inclusive)
+	 * @param to        end of the range in the value (exclusive)
+	 * @param maxLength the max length
+	 */
+	public static void insertLeftAligned(char[] line, int position, CharSequence value, int from, int to, int maxLength)
+	{
+		if (!DisplayWidth.isNarrow(value, from, to)) {
+			DisplayWidth.write(line, position, value, from, DisplayWidth.endOfColumns(value, from, to, maxLength));
+			return;
+		}
 		// If the string is longer than the max length, we cut the string on right to keeo
 		// only the left most characters
-		if (maxLength < valueLength) {
-			insert(line, position, value.substring(0, maxLength).toCharArray(), maxLength);
+		if (maxLength < to - from) {
+			insert(line, position, value, from, from + maxLength, maxLength);
 		}
 		else{
-			insert(line, position, value.toCharArray(), maxLength);
+			insert(line, position, value, from, to, maxLength);
 		}
-
 	}
 
 	/**
@@ -263,7 +287,20 @@ public class PrintStringUtil {
 		if (value == null) {
 			return;
 		}
+		insertCenterAligned(line, position, value, 0, value.length(), maxLength);
+	}
 
+	/**
+	 * Insert a range of a value into a char array, center aligned at a position
+	 *
+	 * @param line      the line buffer to insert the value to.
+	 * @param position The position to center the value on.
+	 * @param value     the value to add centered
+	 * @param from      start of the range in the value (inclusive)
+	 * @param to        end of the range in the value (exclusive)
+	 * @param maxLength The max length of the string being inserted
+	 */
+	public static void insertCenterAligned(char[] line, int position, CharSequence value, int from, int to, int maxLength){
 		// We can also hit the sides of the line buffer when the maxlength and position are just right
 		// | | | | | |0|1|2|3|4|
 		// | | | | | | |^| | | | - offset (1)
@@ -271,7 +308,11 @@ public class PrintStringUtil {
 		// | | | | | |x|x|x| | |- maxLength (3)
 		// | | | | | |a|l|u| | |- result (3)
 
-		final int valueLength = value.length();
+		if (!DisplayWidth.isNarrow(value, from, to)) {
+			insertCenterAlignedColumns(line, position, value, from, to, maxLength);
+			return;
+		}
+		final int valueLength = to - from;
 
 		// If the string is longer than the max length, we have to work out the
 		// substring so that the string appears centered in the available area
@@ -289,11 +330,28 @@ public class PrintStringUtil {
 
 			// How much do we need to additionally substract for the end of the string
 			final int end = overshoot % 2 > 0 ? 1 : 0;
-			insert(line, position - (maxLength / 2), value.substring(offset, valueLength-(offset+end)).toCharArray(), maxLength);
+			insert(line, position - (maxLength / 2), value, from + offset, to - (offset + end), maxLength);
 		}
 		// The value fits perfectly in the line buffer
 		else {
-			insert(line, position - (valueLength / 2), value.toCharArray(), valueLength);
+			insert(line, position - (valueLength / 2), value, from, to, valueLength);
+		}
+	}
+
+	/**
+	 * Insert a range of a value taking other than one column per char into a char array, center aligned at a
+	 * position. Columns are cut from both sides of the value like {@link #insertCenterAligned(char[], int, CharSequence, int, int, int)}
+	 * cuts chars.
+	 */
+	private static void insertCenterAlignedColumns(char[] line, int position, CharSequence value, int from, int to, int maxLength){
+		final int columns = DisplayWidth.of(value, from, to);
+		if (maxLength < columns) {
+			final int start = DisplayWidth.startOfColumns(value, from, to, columns - (columns - maxLength) / 2);
+			final int end = DisplayWidth.endOfColumns(value, start, to, maxLength);
+			DisplayWidth.write(line, position - (maxLength / 2), value, start, end);
+		}
+		else {
+			DisplayWidth.write(line, position - (columns / 2), value, from, to);
 		}
 	}
 
@@ -438,15 +496,33 @@ public class PrintStringUtil {
 		if (value == null) {
 			return;
 		}
+		insertRightAligned(line, position, value, 0, value.length(), maxLength);
+	}
 
-		int length = value.length();
+	/**
+	 * Insert a range of a value into a char array, right aligned
+	 *
+	 * @param line      Array containing the line in which the value should be added
+	 * @param position  Index where last character of the range must be right aligned on
+	 * @param value     The value to add in the line
+	 * @param from      start of the range in the value (inclusive)
+	 * @param to        end of the range in the value (exclusive)
+	 * @param maxLength the max length
+	 */
+	public static void insertRightAligned(char[] line, int position, CharSequence value, int from, int to, int maxLength) {
+		if (!DisplayWidth.isNarrow(value, from, to)) {
+			final int start = DisplayWidth.startOfColumns(value, from, to, maxLength);
+			DisplayWidth.write(line, position - DisplayWidth.of(value, start, to) + 1, value, start, to);
+			return;
+		}
+		int length = to - from;
 		// If the value is longer than the available space, but the line to keep
 		// The right-most characters
 		if (maxLength < length) {
-			insert(line, position - maxLength + 1, value.substring(value.length()-maxLength).toCharArray(), maxLength);
+			insert(line, position - maxLength + 1, value, to - maxLength, to, maxLength);
 		}
 		else {
-			insert(line, position - length + 1, value.toCharArray(), length);
+			insert(line, position - length + 1, value, from, to, length);
 		}
 	}
 
@@ -460,6 +536,9 @@ public class PrintStringUtil {
 	 * @return string [ ]
 	 */
 	public static String[] getLines(String str, int width, String new_line_sequence) {
+		if (new_line_sequence == null || new_line_sequence.isEmpty()) {
+			return getLines(str, width, (int[]) null);
+		}
 		List<String> strs = new ArrayList<>();
 		final int[] start_index = new int[1];
 		final int[] end_index = new int[1];
@@ -477,6 +556,52 @@ public class PrintStringUtil {
 		return strs.toArray(new String[strs.size()]);
 	}
 
+	/**
+	 * Finds the positions in a string where a line may be broken, being the spaces and newline characters.
+	 * The positions can be used with a {@link LineBreaker} to wrap the string at any width.
+	 *
+	 * @param str the str
+	 * @return the break positions in ascending order
+	 */
+	public static int[] getBreakPositions(final String str) {
+		final int strLength = str.length();
+		int count = 0;
+		for (int i = 0 ; i < strLength; i++) {
+			final char c = str.charAt(i);
+			if (c == ' ' || c == '\n') {
+				count++;
+			}
+		}
+		final int[] breakPositions = new int[count];
+		count = 0;
+		for (int i = 0 ; i < strLength; i++) {
+			final char c = str.charAt(i);
+			if (c == ' ' || c == '\n') {
+				breakPositions[count++] = i;
+			}
+		}
+		return breakPositions;
+	}
+
+	/**
+	 * Parses a string and builds an array of wrapped strings from it, using precomputed break positions.
+	 * Formatting code should iterate a {@link LineBreaker} instead, which does not allocate the lines.
+	 *
+	 * @param str            the str
+	 * @param width          the width
+	 * @param breakPositions the break positions of the str from {@link #getBreakPositions(String)},
+	 *                       or <code>null</code> to scan the str
+	 * @return string [ ]
+	 */
+	public static String[] getLines(final String str, final int width, final int[] breakPositions) {
+		final List<String> strs = new ArrayList<>();
+		final LineBreaker lineBreaker = new LineBreaker().reset(str, 0, str.length(), width, breakPositions);
+		while (lineBreaker.next()) {
+			strs.add(str.substring(lineBreaker.getLineStart(), lineBreaker.getLineEnd()));
+		}
+		return strs.toArray(new String[strs.size()]);
+	}
+
 	/**
 	 * Removes trailing spaces from the source string.
 	 * Note only SPACE (0x20) will be removed, NOT newlines,tabs, etc.
@@ -485,7 +610,40 @@ public class PrintStringUtil {
 	 * @return String without trailing spaces.
 	 */
 	public static String rtrim(String source) {
-		return source.replaceAll("\\x20+$", "");
+		final int end = rtrimEnd(source, 0, source.length());
+		return end == source.length() ? source : source.substring(0, end);
+	}
+
+	/**
+	 * Finds the end of a range of chars without its trailing spaces.
+	 * Note only SPACE (0x20) is skipped, NOT newlines,tabs, etc.
+	 *
+	 * @param chars the chars
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @return end of the range without trailing spaces, <code>from</code> if it is all spaces
+	 */
+	public static int rtrimEnd(final char[] chars, final int from, int to) {
+		while (to > from && chars[to - 1] == ' ') {
+			to--;
+		}
+		return to;
+	}
+
+	/**
+	 * Finds the end of a range of chars without its trailing spaces.
+	 * Note only SPACE (0x20) is skipped, NOT newlines,tabs, etc.
+	 *
+	 * @param chars the chars
+	 * @param from start of the range (inclusive)
+	 * @param to end of the range (exclusive)
+	 * @return end of the range without trailing spaces, <code>from</code> if it is all spaces
+	 */
+	public static int rtrimEnd(final CharSequence chars, final int from, int to) {
+		while (to > from && chars.charAt(to - 1) == ' ') {
+			to--;
+		}
+		return to;
 	}
 
 
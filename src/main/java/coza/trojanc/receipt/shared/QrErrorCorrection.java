@@ -0,0 +1,12 @@
+package coza.trojanc.receipt.shared;
+
+/**
+ * Error correction levels of QR codes, from the least (about 7% of the code can be restored) to the most (about 30%).
+ * @author Charl Thiem
+ */
+public enum QrErrorCorrection {
+	L,
+	M,
+	Q,
+	H
+}
@@ -0,0 +1,72 @@
+package coza.trojanc.receipt.shared;
+
+/**
+ * A column of a table, laid out by {@code PrintFormatBuilder.row}.
+ * @author Charl Thiem
+ */
+public class TableColumn {
+
+	/**
+	 * Number of columns of the line the column takes, 0 to share what is left of the line with the other columns
+	 * without a width
+	 */
+	private int width;
+
+	private Align alignment = Align.LEFT;
+
+	/**
+	 * If text longer than the column is wrapped onto the next lines, else the column is filled with '#' so a
+	 * cut amount is never printed
+	 */
+	private boolean wrap = true;
+
+	public TableColumn(){}
+
+	public TableColumn(int width, Align alignment){
+		this(width, alignment, true);
+	}
+
+	public TableColumn(int width, Align alignment, boolean wrap){
+		this.setWidth(width);
+		this.alignment = alignment;
+		this.wrap = wrap;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public void setWidth(int width) {
+		if(width < 0){
+			throw new IllegalArgumentException("Width of a column can not be negative");
+		}
+		this.width = width;
+	}
+
+	public Align getAlignment() {
+		return alignment;
+	}
+
+	public void setAlignment(Align alignment) {
+		this.alignment = alignment;
+	}
+
+	public boolean isWrap() {
+		return wrap;
+	}
+
+	public void setWrap(boolean wrap) {
+		this.wrap = wrap;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder()
+			.append("TableColumn[")
+			.append("width=").append(this.width)
+			.append(",align=").append(this.alignment)
+			.append(",wrap=").append(this.wrap)
+			.append("]")
+			.toString();
+	}
+}
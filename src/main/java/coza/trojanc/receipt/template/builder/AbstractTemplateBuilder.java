@@ -1,8 +1,15 @@
 package coza.trojanc.receipt.template.builder;
 
 import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.TableColumn;
 import coza.trojanc.receipt.template.fields.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 /**
  * @author Charl Thiem
  */
@@ -35,6 +42,17 @@ public abstract class AbstractTemplateBuilder {
 		finishBusyLine();
 		line = new Line();
 	}
+	/**
+	 * Table line print template builder, the text items added next are the cells of the line.
+	 *
+	 * @param spacing the number of spaces between two columns
+	 * @param columns the columns
+	 */
+	public void addTable(int spacing, TableColumn... columns){
+		finishBusyLine();
+		line = new Table(new ArrayList<>(Arrays.asList(columns)), spacing);
+	}
+
 	/**
 	 * Feed print template builder.
 	 *
@@ -67,6 +85,82 @@ public abstract class AbstractTemplateBuilder {
 		addTemplateLine(new FillLine(character));
 	}
 
+	/**
+	 * Logo print template builder.
+	 *
+	 * @param image the encoded image
+	 * @param align the alignment of the image
+	 */
+	public void addLogo(byte[] image, Align align){
+		finishBusyLine();
+		Logo logo = new Logo(image);
+		logo.setAlignment(align);
+		addTemplateLine(logo);
+	}
+
+	/**
+	 * Barcode print template builder.
+	 *
+	 * @param type the symbology of the barcode
+	 * @param value the data, or the context key of the data when dynamic
+	 * @param dynamic if the data comes from the context
+	 */
+	public void addBarcode(BarcodeType type, String value, boolean dynamic){
+		finishBusyLine();
+		addTemplateLine(codeLine(new Barcode(type), value, dynamic));
+	}
+
+	/**
+	 * QR code print template builder.
+	 *
+	 * @param value the data, or the context key of the data when dynamic
+	 * @param dynamic if the data comes from the context
+	 */
+	public void addQrCode(String value, boolean dynamic){
+		finishBusyLine();
+		addTemplateLine(codeLine(new QrCode(), value, dynamic));
+	}
+
+	private static AbstractCodeLine codeLine(AbstractCodeLine code, String value, boolean dynamic){
+		if(dynamic){
+			code.setContextKey(value);
+		}
+		else{
+			code.setData(value);
+		}
+		return code;
+	}
+
+	/**
+	 * Cut print template builder.
+	 *
+	 * @param mode the cut mode
+	 */
+	public void addCut(CutMode mode){
+		finishBusyLine();
+		addTemplateLine(new Cut(mode));
+	}
+
+	/**
+	 * Open drawer print template builder.
+	 *
+	 * @param pin the connector pin of the drawer
+	 */
+	public void addOpenDrawer(int pin){
+		finishBusyLine();
+		addTemplateLine(new OpenDrawer(pin));
+	}
+
+	/**
+	 * Include a template fragment.
+	 *
+	 * @param fragment the name of the fragment
+	 */
+	public void addInclude(String fragment){
+		finishBusyLine();
+		addTemplateLine(new Include(fragment));
+	}
+
 
 
 	/**
@@ -115,6 +209,17 @@ public abstract class AbstractTemplateBuilder {
 		textItem.setAlignment(align);
 	}
 
+	/**
+	 * Mode print template builder.
+	 *
+	 * @param mode the mode
+	 */
+	public void addMode(Mode mode){
+		checkValidLine();
+		ensureTextItem();
+		textItem.setMode(mode);
+	}
+
 	/**
 	 * Offset print template builder.
 	 *
@@ -1,6 +1,10 @@
 package coza.trojanc.receipt.template.builder;
 
 import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.TableColumn;
 import coza.trojanc.receipt.template.fields.RepeatBlock;
 import coza.trojanc.receipt.template.fields.TemplateLine;
 
@@ -65,6 +69,30 @@ public class PrintBlockTemplateBuilder extends AbstractTemplateBuilder{
 		return this;
 	}
 
+	/**
+	 * Table line print template builder, with a space between columns. The texts added next are the cells of
+	 * the line.
+	 *
+	 * @param columns the columns
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder table(TableColumn... columns){
+		super.addTable(1, columns);
+		return this;
+	}
+
+	/**
+	 * Table line print template builder. The texts added next are the cells of the line.
+	 *
+	 * @param spacing the number of spaces between two columns
+	 * @param columns the columns
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder table(int spacing, TableColumn... columns){
+		super.addTable(spacing, columns);
+		return this;
+	}
+
 	/**
 	 * Feed print template builder.
 	 *
@@ -97,6 +125,128 @@ public class PrintBlockTemplateBuilder extends AbstractTemplateBuilder{
 		return this;
 	}
 
+	/**
+	 * Logo print template builder, the logo is centered.
+	 *
+	 * @param image the encoded image
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder logo(byte[] image){
+		super.addLogo(image, Align.CENTER);
+		return this;
+	}
+
+	/**
+	 * Logo print template builder.
+	 *
+	 * @param image the encoded image
+	 * @param align the alignment of the image
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder logo(byte[] image, Align align){
+		super.addLogo(image, align);
+		return this;
+	}
+
+	/**
+	 * Barcode print template builder.
+	 *
+	 * @param type the symbology of the barcode
+	 * @param data the data
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder barcode(BarcodeType type, String data){
+		super.addBarcode(type, data, false);
+		return this;
+	}
+
+	/**
+	 * Barcode print template builder, encoding a context value.
+	 *
+	 * @param type the symbology of the barcode
+	 * @param key the context key of the data
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder dynamicBarcode(BarcodeType type, String key){
+		super.addBarcode(type, key, true);
+		return this;
+	}
+
+	/**
+	 * QR code print template builder.
+	 *
+	 * @param data the data
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder qrCode(String data){
+		super.addQrCode(data, false);
+		return this;
+	}
+
+	/**
+	 * QR code print template builder, encoding a context value.
+	 *
+	 * @param key the context key of the data
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder dynamicQrCode(String key){
+		super.addQrCode(key, true);
+		return this;
+	}
+
+	/**
+	 * Cut print template builder, partially cutting the paper.
+	 *
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder cut(){
+		super.addCut(CutMode.PARTIAL);
+		return this;
+	}
+
+	/**
+	 * Cut print template builder.
+	 *
+	 * @param mode the cut mode
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder cut(CutMode mode){
+		super.addCut(mode);
+		return this;
+	}
+
+	/**
+	 * Open drawer print template builder, opening the first drawer.
+	 *
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder openDrawer(){
+		super.addOpenDrawer(0);
+		return this;
+	}
+
+	/**
+	 * Open drawer print template builder.
+	 *
+	 * @param pin the connector pin of the drawer, 0 or 1
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder openDrawer(int pin){
+		super.addOpenDrawer(pin);
+		return this;
+	}
+
+	/**
+	 * Include print template builder.
+	 *
+	 * @param fragment the name of the fragment to include
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder include(String fragment){
+		super.addInclude(fragment);
+		return this;
+	}
+
 
 	/**
 	 * Text print template builder.
@@ -158,6 +308,17 @@ public class PrintBlockTemplateBuilder extends AbstractTemplateBuilder{
 		return this;
 	}
 
+	/**
+	 * Mode print template builder.
+	 *
+	 * @param mode the mode
+	 * @return the print template builder
+	 */
+	public PrintBlockTemplateBuilder mode(Mode mode){
+		super.addMode(mode);
+		return this;
+	}
+
 	/**
 	 * Offset print template builder.
 	 *
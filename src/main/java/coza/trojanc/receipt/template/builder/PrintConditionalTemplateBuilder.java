@@ -0,0 +1,364 @@
+package coza.trojanc.receipt.template.builder;
+
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.TableColumn;
+import coza.trojanc.receipt.template.fields.Conditional;
+import coza.trojanc.receipt.template.fields.TemplateLine;
+
+/**
+ * @author Charl Thiem
+ */
+public class PrintConditionalTemplateBuilder extends AbstractTemplateBuilder{
+
+	/**
+	 * Template we are busy building
+	 */
+	private final PrintTemplateBuilder parentBuilder;
+
+	/**
+	 * Conditional we are busy with
+	 */
+	private Conditional conditional;
+
+	/**
+	 * Flag indicating that lines are added to the else branch
+	 */
+	private boolean otherwise = false;
+
+
+	/**
+	 * Instantiates a new Print template builder.
+	 */
+	public PrintConditionalTemplateBuilder(PrintTemplateBuilder parentBuilder){
+		this.conditional = new Conditional();
+		this.parentBuilder = parentBuilder;
+	}
+
+	/**
+	 * Set the context key of the condition
+	 *
+	 * @param contextKey the context key
+	 * @return print template builder
+	 */
+	public PrintConditionalTemplateBuilder contextKey(String contextKey){
+		conditional.setContextKey(contextKey);
+		return this;
+	}
+
+	/**
+	 * Set the expression of the condition
+	 *
+	 * @param expression the expression
+	 * @return print template builder
+	 */
+	public PrintConditionalTemplateBuilder expression(String expression){
+		conditional.setExpression(expression);
+		return this;
+	}
+
+	public Conditional getConditional() {
+		return conditional;
+	}
+
+	/**
+	 * Add the following lines to the else branch of the conditional
+	 *
+	 * @return print template builder
+	 */
+	public PrintConditionalTemplateBuilder otherwise(){
+		super.finishBusyLine();
+		otherwise = true;
+		return this;
+	}
+
+	public PrintTemplateBuilder end(){
+		super.finishBusyLine();
+		return parentBuilder;
+	}
+
+	@Override
+	protected void addTemplateLine(TemplateLine line) {
+		if(otherwise){
+			conditional.getElseLines().add(line);
+		}
+		else{
+			conditional.getLines().add(line);
+		}
+	}
+
+
+	/**
+	 * Line print template builder.
+	 *
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder line(){
+		finishBusyLine();
+		super.addLine();
+		return this;
+	}
+
+	/**
+	 * Table line print template builder, with a space between columns. The texts added next are the cells of
+	 * the line.
+	 *
+	 * @param columns the columns
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder table(TableColumn... columns){
+		super.addTable(1, columns);
+		return this;
+	}
+
+	/**
+	 * Table line print template builder. The texts added next are the cells of the line.
+	 *
+	 * @param spacing the number of spaces between two columns
+	 * @param columns the columns
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder table(int spacing, TableColumn... columns){
+		super.addTable(spacing, columns);
+		return this;
+	}
+
+	/**
+	 * Feed print template builder.
+	 *
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder feed(){
+		super.addFeed();
+		return this;
+	}
+
+	/**
+	 * Feed print template builder.
+	 *
+	 * @param lines the lines
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder feed(int lines){
+		super.addFeed(lines);
+		return this;
+	}
+
+	/**
+	 * Fill line print template builder.
+	 *
+	 * @param character the character
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder fillLine(char character){
+		super.addFillLine(character);
+		return this;
+	}
+
+	/**
+	 * Logo print template builder, the logo is centered.
+	 *
+	 * @param image the encoded image
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder logo(byte[] image){
+		super.addLogo(image, Align.CENTER);
+		return this;
+	}
+
+	/**
+	 * Logo print template builder.
+	 *
+	 * @param image the encoded image
+	 * @param align the alignment of the image
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder logo(byte[] image, Align align){
+		super.addLogo(image, align);
+		return this;
+	}
+
+	/**
+	 * Barcode print template builder.
+	 *
+	 * @param type the symbology of the barcode
+	 * @param data the data
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder barcode(BarcodeType type, String data){
+		super.addBarcode(type, data, false);
+		return this;
+	}
+
+	/**
+	 * Barcode print template builder, encoding a context value.
+	 *
+	 * @param type the symbology of the barcode
+	 * @param key the context key of the data
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder dynamicBarcode(BarcodeType type, String key){
+		super.addBarcode(type, key, true);
+		return this;
+	}
+
+	/**
+	 * QR code print template builder.
+	 *
+	 * @param data the data
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder qrCode(String data){
+		super.addQrCode(data, false);
+		return this;
+	}
+
+	/**
+	 * QR code print template builder, encoding a context value.
+	 *
+	 * @param key the context key of the data
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder dynamicQrCode(String key){
+		super.addQrCode(key, true);
+		return this;
+	}
+
+	/**
+	 * Cut print template builder, partially cutting the paper.
+	 *
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder cut(){
+		super.addCut(CutMode.PARTIAL);
+		return this;
+	}
+
+	/**
+	 * Cut print template builder.
+	 *
+	 * @param mode the cut mode
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder cut(CutMode mode){
+		super.addCut(mode);
+		return this;
+	}
+
+	/**
+	 * Open drawer print template builder, opening the first drawer.
+	 *
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder openDrawer(){
+		super.addOpenDrawer(0);
+		return this;
+	}
+
+	/**
+	 * Open drawer print template builder.
+	 *
+	 * @param pin the connector pin of the drawer, 0 or 1
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder openDrawer(int pin){
+		super.addOpenDrawer(pin);
+		return this;
+	}
+
+	/**
+	 * Include print template builder.
+	 *
+	 * @param fragment the name of the fragment to include
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder include(String fragment){
+		super.addInclude(fragment);
+		return this;
+	}
+
+
+	/**
+	 * Text print template builder.
+	 *
+	 * @param text the text
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder text(String text){
+		return staticText(text);
+	}
+
+	/**
+	 * Text print template builder.
+	 *
+	 * @param text    the text
+	 * @param dynamic the dynamic
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder text(String text, boolean dynamic){
+		if(dynamic){
+			return dynamicText(text);
+		}
+		else{
+			return staticText(text);
+		}
+	}
+
+	/**
+	 * Static text print template builder.
+	 *
+	 * @param text the text
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder staticText(String text){
+		super.addStaticText(text);
+		return this;
+	}
+
+	/**
+	 * Dynamic text print template builder.
+	 *
+	 * @param key the key
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder dynamicText(String key){
+		super.addDynamicText(key);
+		return this;
+	}
+
+
+	/**
+	 * Align print template builder.
+	 *
+	 * @param align the align
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder align(Align align){
+		super.addAlign(align);
+		return this;
+	}
+
+	/**
+	 * Mode print template builder.
+	 *
+	 * @param mode the mode
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder mode(Mode mode){
+		super.addMode(mode);
+		return this;
+	}
+
+	/**
+	 * Offset print template builder.
+	 *
+	 * @param offset the offset
+	 * @return the print template builder
+	 */
+	public PrintConditionalTemplateBuilder offset(Integer offset){
+		super.addOffset(offset);
+		return this;
+	}
+}
@@ -1,6 +1,10 @@
 package coza.trojanc.receipt.template.builder;
 
 import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.TableColumn;
 import coza.trojanc.receipt.template.PrintTemplate;
 import coza.trojanc.receipt.template.fields.*;
 
@@ -50,6 +54,30 @@ public class PrintTemplateBuilder extends AbstractTemplateBuilder{
 		return this;
 	}
 
+	/**
+	 * Table line print template builder, with a space between columns. The texts added next are the cells of
+	 * the line.
+	 *
+	 * @param columns the columns
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder table(TableColumn... columns){
+		super.addTable(1, columns);
+		return this;
+	}
+
+	/**
+	 * Table line print template builder. The texts added next are the cells of the line.
+	 *
+	 * @param spacing the number of spaces between two columns
+	 * @param columns the columns
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder table(int spacing, TableColumn... columns){
+		super.addTable(spacing, columns);
+		return this;
+	}
+
 	/**
 	 * Feed print template builder.
 	 *
@@ -82,6 +110,128 @@ public class PrintTemplateBuilder extends AbstractTemplateBuilder{
 		return this;
 	}
 
+	/**
+	 * Logo print template builder, the logo is centered.
+	 *
+	 * @param image the encoded image
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder logo(byte[] image){
+		super.addLogo(image, Align.CENTER);
+		return this;
+	}
+
+	/**
+	 * Logo print template builder.
+	 *
+	 * @param image the encoded image
+	 * @param align the alignment of the image
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder logo(byte[] image, Align align){
+		super.addLogo(image, align);
+		return this;
+	}
+
+	/**
+	 * Barcode print template builder.
+	 *
+	 * @param type the symbology of the barcode
+	 * @param data the data
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder barcode(BarcodeType type, String data){
+		super.addBarcode(type, data, false);
+		return this;
+	}
+
+	/**
+	 * Barcode print template builder, encoding a context value.
+	 *
+	 * @param type the symbology of the barcode
+	 * @param key the context key of the data
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder dynamicBarcode(BarcodeType type, String key){
+		super.addBarcode(type, key, true);
+		return this;
+	}
+
+	/**
+	 * QR code print template builder.
+	 *
+	 * @param data the data
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder qrCode(String data){
+		super.addQrCode(data, false);
+		return this;
+	}
+
+	/**
+	 * QR code print template builder, encoding a context value.
+	 *
+	 * @param key the context key of the data
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder dynamicQrCode(String key){
+		super.addQrCode(key, true);
+		return this;
+	}
+
+	/**
+	 * Cut print template builder, partially cutting the paper.
+	 *
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder cut(){
+		super.addCut(CutMode.PARTIAL);
+		return this;
+	}
+
+	/**
+	 * Cut print template builder.
+	 *
+	 * @param mode the cut mode
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder cut(CutMode mode){
+		super.addCut(mode);
+		return this;
+	}
+
+	/**
+	 * Open drawer print template builder, opening the first drawer.
+	 *
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder openDrawer(){
+		super.addOpenDrawer(0);
+		return this;
+	}
+
+	/**
+	 * Open drawer print template builder.
+	 *
+	 * @param pin the connector pin of the drawer, 0 or 1
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder openDrawer(int pin){
+		super.addOpenDrawer(pin);
+		return this;
+	}
+
+	/**
+	 * Include print template builder.
+	 *
+	 * @param fragment the name of the fragment to include
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder include(String fragment){
+		super.addInclude(fragment);
+		return this;
+	}
+
 
 	/**
 	 * Text print template builder.
@@ -144,6 +294,17 @@ public class PrintTemplateBuilder extends AbstractTemplateBuilder{
 		return this;
 	}
 
+	/**
+	 * Mode print template builder.
+	 *
+	 * @param mode the mode
+	 * @return the print template builder
+	 */
+	public PrintTemplateBuilder mode(Mode mode){
+		super.addMode(mode);
+		return this;
+	}
+
 	/**
 	 * Offset print template builder.
 	 *
@@ -164,6 +325,33 @@ public class PrintTemplateBuilder extends AbstractTemplateBuilder{
 		return blockTemplateBuilder;
 	}
 
+	/**
+	 * Start a conditional block printed when the context holds a value for the key.
+	 *
+	 * @param contextKey the context key
+	 * @return the conditional template builder
+	 */
+	public PrintConditionalTemplateBuilder when(String contextKey){
+		return conditional().contextKey(contextKey);
+	}
+
+	/**
+	 * Start a conditional block printed when the expression is true.
+	 *
+	 * @param expression the boolean expression
+	 * @return the conditional template builder
+	 */
+	public PrintConditionalTemplateBuilder whenExpression(String expression){
+		return conditional().expression(expression);
+	}
+
+	private PrintConditionalTemplateBuilder conditional(){
+		finishBusyLine();
+		PrintConditionalTemplateBuilder conditionalTemplateBuilder = new PrintConditionalTemplateBuilder(this);
+		addTemplateLine(conditionalTemplateBuilder.getConditional());
+		return conditionalTemplateBuilder;
+	}
+
 	public PrintTemplate build(){
 		super.finishBusyLine();
 		return this.template;
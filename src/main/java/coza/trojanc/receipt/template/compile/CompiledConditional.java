@@ -0,0 +1,194 @@
+package coza.trojanc.receipt.template.compile;
+
+import coza.trojanc.receipt.context.ContextMap;
+import coza.trojanc.receipt.template.fields.TemplateLine;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlScript;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A conditional whose condition depends on the context, and is therefore tested when the template is processed.
+ * <p>
+ * The expression of the condition is parsed once when the template is compiled. In a repeat block the keys of the
+ * iteration are properties of the variable {@link #ITERATION_VARIABLE}, so <code>$.quantity &gt; 1</code> tests
+ * the key <code>.quantity</code> of the iteration.
+ * @author Charl Thiem
+ */
+public class CompiledConditional implements TemplateLine {
+
+	/**
+	 * Variable of an expression holding the keys of the repeat iteration
+	 */
+	public static final String ITERATION_VARIABLE = "$";
+
+	/**
+	 * Context key the condition depends on, <code>null</code> if it depends on an expression
+	 */
+	private final String contextKey;
+
+	/**
+	 * Parsed expression the condition depends on, <code>null</code> if it depends on a context key
+	 */
+	private final JexlScript expression;
+
+	/**
+	 * Static configuration available to the expression
+	 */
+	private final Map<String, Object> configuration;
+
+	/**
+	 * Compiled lines printed when the condition is true
+	 */
+	private final List<TemplateLine> lines;
+
+	/**
+	 * Compiled lines printed when the condition is false
+	 */
+	private final List<TemplateLine> elseLines;
+
+	public CompiledConditional(String contextKey, JexlScript expression, Map<String, Object> configuration,
+							   List<TemplateLine> lines, List<TemplateLine> elseLines){
+		this.contextKey = contextKey;
+		this.expression = expression;
+		this.configuration = configuration;
+		this.lines = Collections.unmodifiableList(lines);
+		this.elseLines = Collections.unmodifiableList(elseLines);
+	}
+
+	/**
+	 * Test the condition and select the lines to print.
+	 *
+	 * @param context Context to test the condition against.
+	 * @param repeatPrefix Prefix of the repeat iteration, used to resolve a relative context key.
+	 * @return The lines to print.
+	 */
+	public List<TemplateLine> select(ContextMap context, String repeatPrefix){
+		final boolean condition;
+		if(contextKey != null){
+			String key = contextKey;
+			if(repeatPrefix != null && key.startsWith(".")){
+				key = repeatPrefix + key;
+			}
+			condition = isTrue(context.get(key));
+		}
+		else{
+			condition = isTrue(expression.execute(new ConditionContext(configuration, context, repeatPrefix)));
+		}
+		return condition ? lines : elseLines;
+	}
+
+	public List<TemplateLine> getLines() {
+		return lines;
+	}
+
+	public List<TemplateLine> getElseLines() {
+		return elseLines;
+	}
+
+	/**
+	 * Returns true if a value of a condition is considered true. A value is false when it is <code>null</code>,
+	 * <code>false</code>, zero, or a string that is empty, <code>false</code> or <code>0</code>.
+	 *
+	 * @param value The value to test.
+	 * @return True if the value is considered true.
+	 */
+	public static boolean isTrue(Object value){
+		if(value == null){
+			return false;
+		}
+		else if(Boolean.class.isAssignableFrom(value.getClass())){
+			return (Boolean)value;
+		}
+		else if(Number.class.isAssignableFrom(value.getClass())){
+			return ((Number)value).doubleValue() != 0;
+		}
+		final String string = value.toString();
+		return !(string.isEmpty() || "false".equalsIgnoreCase(string) || "0".equals(string));
+	}
+
+	/**
+	 * A read-only JEXL context resolving variables from the static configuration first, and then from the
+	 * context of the print.
+	 */
+	public static class ConditionContext implements JexlContext {
+
+		private final Map<String, Object> configuration;
+
+		private final ContextMap context;
+
+		/**
+		 * Prefix of the repeat iteration, <code>null</code> when not repeating
+		 */
+		private final String repeatPrefix;
+
+		public ConditionContext(Map<String, Object> configuration, ContextMap context){
+			this(configuration, context, null);
+		}
+
+		public ConditionContext(Map<String, Object> configuration, ContextMap context, String repeatPrefix){
+			this.configuration = configuration;
+			this.context = context;
+			this.repeatPrefix = repeatPrefix;
+		}
+
+		@Override
+		public Object get(String name) {
+			if(configuration.containsKey(name)){
+				return configuration.get(name);
+			}
+			if(isIteration(name)){
+				return new IterationKeys(context, repeatPrefix);
+			}
+			return context == null ? null : context.get(name);
+		}
+
+		@Override
+		public void set(String name, Object value) {
+			throw new UnsupportedOperationException("Conditions can not change the context");
+		}
+
+		@Override
+		public boolean has(String name) {
+			return configuration.containsKey(name) || isIteration(name) || (context != null && context.has(name));
+		}
+
+		private boolean isIteration(String name){
+			return repeatPrefix != null && context != null && ITERATION_VARIABLE.equals(name);
+		}
+	}
+
+	/**
+	 * The keys of a repeat iteration, as a read-only map resolving a key from the context when it is read.
+	 */
+	private static class IterationKeys extends AbstractMap<String, Object> {
+
+		private final ContextMap context;
+
+		private final String repeatPrefix;
+
+		IterationKeys(ContextMap context, String repeatPrefix){
+			this.context = context;
+			this.repeatPrefix = repeatPrefix;
+		}
+
+		@Override
+		public Object get(Object key) {
+			return context.get(repeatPrefix + "." + key);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return context.has(repeatPrefix + "." + key);
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			throw new UnsupportedOperationException("The keys of an iteration can not be listed");
+		}
+	}
+}
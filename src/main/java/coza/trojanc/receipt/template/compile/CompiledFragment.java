@@ -0,0 +1,68 @@
+package coza.trojanc.receipt.template.compile;
+
+import coza.trojanc.receipt.template.fields.TemplateLine;
+import coza.trojanc.receipt.template.process.fields.ProcessedLineItem;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A fragment that has been resolved by the {@link TemplateCompiler}.
+ * <p>
+ * Fragments that contain no dynamic text are processed when they are compiled. Their processed items
+ * are shared by every template that includes them, and are not processed again.
+ * @author Charl Thiem
+ */
+public class CompiledFragment implements TemplateLine {
+
+	/**
+	 * Name of the fragment
+	 */
+	private final String name;
+
+	/**
+	 * Compiled lines of the fragment
+	 */
+	private final List<TemplateLine> lines;
+
+	/**
+	 * Processed items of a static fragment, <code>null</code> if the fragment has dynamic content
+	 */
+	private final List<ProcessedLineItem> processedItems;
+
+	public CompiledFragment(String name, List<TemplateLine> lines, List<ProcessedLineItem> processedItems){
+		this.name = name;
+		this.lines = Collections.unmodifiableList(lines);
+		this.processedItems = processedItems == null ? null : Collections.unmodifiableList(processedItems);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<TemplateLine> getLines() {
+		return lines;
+	}
+
+	public List<ProcessedLineItem> getProcessedItems() {
+		return processedItems;
+	}
+
+	/**
+	 * Returns true if the fragment has no dynamic content and was processed when it was compiled.
+	 * @return True if the fragment is static.
+	 */
+	public boolean isStatic(){
+		return processedItems != null;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder()
+			.append("CompiledFragment[")
+			.append("name=").append(this.name)
+			.append(",static=").append(this.isStatic())
+			.append("]")
+			.toString();
+	}
+}
@@ -0,0 +1,115 @@
+package coza.trojanc.receipt.template.compile;
+
+import coza.trojanc.receipt.template.PrintTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of named template fragments that can be included in templates.
+ * <p>
+ * Fragments are compiled once for every configuration of the compilers using the registry, and the compiled
+ * fragment is shared by every template compiled with that configuration that includes it. Compiled fragments are
+ * kept with the definition they were compiled from, so a compile that finishes after its fragment was replaced
+ * is not cached.
+ * @author Charl Thiem
+ */
+public class FragmentRegistry {
+
+	/**
+	 * Fragment definitions by name
+	 */
+	private final Map<String, PrintTemplate> fragments = new ConcurrentHashMap<>();
+
+	/**
+	 * Compiled fragments by name, of the definition registered with the name
+	 */
+	private final Map<String, Compiled> compiledFragments = new ConcurrentHashMap<>();
+
+	/**
+	 * Register a fragment, replacing any fragment registered with the same name.
+	 * Templates compiled before the fragment was replaced keep the previous fragment.
+	 *
+	 * @param name Name to include the fragment by.
+	 * @param fragment The fragment definition.
+	 */
+	public void register(String name, PrintTemplate fragment){
+		fragments.put(name, fragment);
+		compiledFragments.remove(name);
+	}
+
+	/**
+	 * Register a fragment by the name of the template.
+	 *
+	 * @param fragment The fragment definition.
+	 */
+	public void register(PrintTemplate fragment){
+		register(fragment.getName(), fragment);
+	}
+
+	/**
+	 * Gets the definition of a fragment.
+	 *
+	 * @param name Name of the fragment.
+	 * @return The fragment definition, or <code>null</code> if it does not exist.
+	 */
+	public PrintTemplate getFragment(String name){
+		return fragments.get(name);
+	}
+
+	/**
+	 * Gets a previously compiled fragment.
+	 *
+	 * @param name Name of the fragment.
+	 * @param configuration Static configuration the fragment was compiled with.
+	 * @return The compiled fragment, or <code>null</code> if it has not been compiled with the configuration.
+	 */
+	public CompiledFragment getCompiled(String name, Map<String, Object> configuration){
+		final Compiled compiled = compiledFragments.get(name);
+		if(compiled == null || compiled.definition != fragments.get(name)){
+			return null;
+		}
+		return compiled.byConfiguration.get(configuration);
+	}
+
+	/**
+	 * Cache a compiled fragment. If another thread cached the fragment first, that instance is kept. The fragment
+	 * is not cached when its definition has been replaced since it was compiled.
+	 *
+	 * @param compiledFragment The compiled fragment.
+	 * @param definition The definition the fragment was compiled from.
+	 * @param configuration Static configuration the fragment was compiled with.
+	 * @return The cached compiled fragment, or the given one if it was not cached.
+	 */
+	public CompiledFragment putCompiled(CompiledFragment compiledFragment, PrintTemplate definition, Map<String, Object> configuration){
+		final CompiledFragment[] cached = {compiledFragment};
+		compiledFragments.compute(compiledFragment.getName(), (name, compiled) -> {
+			if(fragments.get(name) != definition){
+				return compiled;
+			}
+			if(compiled == null || compiled.definition != definition){
+				compiled = new Compiled(definition);
+			}
+			final CompiledFragment existing = compiled.byConfiguration.putIfAbsent(configuration, compiledFragment);
+			if(existing != null){
+				cached[0] = existing;
+			}
+			return compiled;
+		});
+		return cached[0];
+	}
+
+	/**
+	 * The compiled fragments of a definition, by the configuration they were compiled with.
+	 */
+	private static final class Compiled {
+
+		private final PrintTemplate definition;
+
+		private final Map<Map<String, Object>, CompiledFragment> byConfiguration = new ConcurrentHashMap<>();
+
+		Compiled(PrintTemplate definition){
+			this.definition = definition;
+		}
+	}
+}
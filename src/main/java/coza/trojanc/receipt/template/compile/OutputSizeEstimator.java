@@ -0,0 +1,106 @@
+package coza.trojanc.receipt.template.compile;
+
+import coza.trojanc.receipt.context.ContextMap;
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.fields.*;
+import coza.trojanc.receipt.template.process.fields.ProcessedCut;
+import coza.trojanc.receipt.template.process.fields.ProcessedFeed;
+import coza.trojanc.receipt.template.process.fields.ProcessedLineItem;
+import coza.trojanc.receipt.template.process.fields.ProcessedOpenDrawer;
+
+import java.util.List;
+
+import static coza.trojanc.receipt.context.ContextResolver.ARRAY_LENGTH_SUFFIX;
+
+/**
+ * Estimates the number of lines a compiled template prints, so format builders can allocate their output once
+ * through {@link coza.trojanc.receipt.format.PrintFormatBuilder#expectLines(int)} instead of growing it while
+ * printing.
+ * <p>
+ * Every line, table line, fill line, logo and code counts as one line, every feed as the three lines builders
+ * feed. Repeat blocks count their lines once for every element of the array they repeat on, as given by its
+ * <code>[].$$length</code> key in the context. Conditionals count their longer branch. Table cells that wrap
+ * make the estimate low, which only costs the copying it would otherwise have saved.
+ * @author Charl Thiem
+ */
+public final class OutputSizeEstimator {
+
+	/**
+	 * Lines a format builder moves for every feed
+	 */
+	private static final int FEED_LINES = 3;
+
+	private OutputSizeEstimator(){
+	}
+
+	/**
+	 * Estimates the number of lines a template prints.
+	 * @param template The compiled template.
+	 * @param context The context the template is printed with.
+	 * @return The estimated number of lines.
+	 */
+	public static int estimateLines(PrintTemplate template, ContextMap context){
+		return estimateLines(template.getLines(), context);
+	}
+
+	private static int estimateLines(List<TemplateLine> lines, ContextMap context){
+		int count = 0;
+		for(TemplateLine line : lines){
+			if(Feed.class.isAssignableFrom(line.getClass())){
+				count += ((Feed)line).getFeedAmount() * FEED_LINES;
+			}
+			else if(RepeatBlock.class.isAssignableFrom(line.getClass())){
+				final RepeatBlock repeatBlock = (RepeatBlock)line;
+				count += repeatLength(repeatBlock.getRepeatOn(), context) * estimateLines(repeatBlock.getLines(), context);
+			}
+			else if(CompiledFragment.class.isAssignableFrom(line.getClass())){
+				final CompiledFragment fragment = (CompiledFragment)line;
+				count += fragment.isStatic() ? estimateProcessedLines(fragment.getProcessedItems()) : estimateLines(fragment.getLines(), context);
+			}
+			else if(CompiledConditional.class.isAssignableFrom(line.getClass())){
+				final CompiledConditional conditional = (CompiledConditional)line;
+				count += Math.max(estimateLines(conditional.getLines(), context), estimateLines(conditional.getElseLines(), context));
+			}
+			else if(Include.class.isAssignableFrom(line.getClass()) || Conditional.class.isAssignableFrom(line.getClass())){
+				throw new IllegalArgumentException("Template must be compiled to be estimated");
+			}
+			else if(!Cut.class.isAssignableFrom(line.getClass()) && !OpenDrawer.class.isAssignableFrom(line.getClass())){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Estimates the lines of the processed items of a static fragment, counted like the lines they were
+	 * processed from.
+	 */
+	private static int estimateProcessedLines(List<ProcessedLineItem> items){
+		int count = 0;
+		for(ProcessedLineItem item : items){
+			if(ProcessedFeed.class.isAssignableFrom(item.getClass())){
+				count += FEED_LINES;
+			}
+			else if(!ProcessedCut.class.isAssignableFrom(item.getClass()) && !ProcessedOpenDrawer.class.isAssignableFrom(item.getClass())){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the length of a repeated array, 0 when it is not in the context.
+	 */
+	private static int repeatLength(String repeatOn, ContextMap context){
+		final String length = context.get(repeatOn + ARRAY_LENGTH_SUFFIX);
+		if(length == null){
+			return 0;
+		}
+		try{
+			return Integer.parseInt(length);
+		}
+		catch(NumberFormatException e){
+			return 0;
+		}
+	}
+}
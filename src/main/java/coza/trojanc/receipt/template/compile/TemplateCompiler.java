@@ -0,0 +1,18 @@
+package coza.trojanc.receipt.template.compile;
+
+import coza.trojanc.receipt.template.PrintTemplate;
+
+/**
+ * A template compiler prepares a {@link PrintTemplate} definition for repeated processing, resolving
+ * everything that does not depend on the context of a single print.
+ * @author Charl Thiem
+ */
+public interface TemplateCompiler {
+
+	/**
+	 * Compile a template.
+	 * @param template Template to compile.
+	 * @return The compiled template.
+	 */
+	PrintTemplate compile(PrintTemplate template);
+}
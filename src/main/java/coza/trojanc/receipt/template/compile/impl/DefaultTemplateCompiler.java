@@ -0,0 +1,225 @@
+package coza.trojanc.receipt.template.compile.impl;
+
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.compile.CompiledConditional;
+import coza.trojanc.receipt.template.compile.CompiledFragment;
+import coza.trojanc.receipt.template.compile.FragmentRegistry;
+import coza.trojanc.receipt.template.compile.TemplateCompiler;
+import coza.trojanc.receipt.template.fields.*;
+import coza.trojanc.receipt.template.process.fields.ProcessedLineItem;
+import coza.trojanc.receipt.template.process.impl.DefaultTemplateProcessor;
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Default implementation of a {@link TemplateCompiler}.
+ * <p>
+ * Resolves the {@link Include}s of a template against a {@link FragmentRegistry}, and folds {@link Conditional}s
+ * whose condition only depends on the static configuration.
+ * @author Charl Thiem
+ */
+public class DefaultTemplateCompiler implements TemplateCompiler {
+
+	/**
+	 * JEXL Engine used to parse conditions
+	 */
+	private static final JexlEngine JEXL = new JexlBuilder().strict(false).create();
+
+	/**
+	 * Registry to resolve fragments from
+	 */
+	private final FragmentRegistry fragments;
+
+	/**
+	 * Static configuration conditions can be folded on
+	 */
+	private final Map<String, Object> configuration;
+
+	/**
+	 * Creates a new instance of the <code>DefaultTemplateCompiler</code> with an empty fragment registry.
+	 */
+	public DefaultTemplateCompiler(){
+		this(new FragmentRegistry());
+	}
+
+	/**
+	 * Creates a new instance of the <code>DefaultTemplateCompiler</code>.
+	 * @param fragments Registry to resolve fragments from.
+	 */
+	public DefaultTemplateCompiler(FragmentRegistry fragments){
+		this(fragments, Collections.emptyMap());
+	}
+
+	/**
+	 * Creates a new instance of the <code>DefaultTemplateCompiler</code>.
+	 * @param fragments Registry to resolve fragments from.
+	 * @param configuration Static configuration conditions can be folded on. Compiled fragments are shared
+	 *                      between the compilers of a registry with the same configuration.
+	 */
+	public DefaultTemplateCompiler(FragmentRegistry fragments, Map<String, Object> configuration){
+		this.fragments = fragments;
+		this.configuration = Collections.unmodifiableMap(new HashMap<>(configuration));
+	}
+
+	/**
+	 * Gets the registry fragments are resolved from.
+	 * @return The fragment registry.
+	 */
+	public FragmentRegistry getFragments() {
+		return fragments;
+	}
+
+	@Override
+	public PrintTemplate compile(PrintTemplate template) {
+		PrintTemplate compiledTemplate = new PrintTemplate();
+		compiledTemplate.setName(template.getName());
+		compileLines(template.getLines(), new ArrayDeque<>()).forEach(compiledTemplate::addLine);
+		return compiledTemplate;
+	}
+
+	/**
+	 * Compile a list of lines.
+	 * @param lines Lines to compile.
+	 * @param includePath Names of the fragments currently being compiled.
+	 * @return The compiled lines.
+	 */
+	private List<TemplateLine> compileLines(List<TemplateLine> lines, Deque<String> includePath){
+		List<TemplateLine> compiledLines = new ArrayList<>(lines.size());
+		lines.forEach(line -> {
+			if(Include.class.isAssignableFrom(line.getClass())){
+				compiledLines.add(compileFragment(((Include)line).getFragment(), includePath));
+			}
+			else if(Conditional.class.isAssignableFrom(line.getClass())){
+				compiledLines.addAll(compileConditional((Conditional)line, includePath));
+			}
+			else if(RepeatBlock.class.isAssignableFrom(line.getClass())){
+				RepeatBlock repeatBlock = (RepeatBlock)line;
+				RepeatBlock compiledBlock = new RepeatBlock();
+				compiledBlock.setRepeatOn(repeatBlock.getRepeatOn());
+				compiledBlock.setLines(compileLines(repeatBlock.getLines(), includePath));
+				compiledLines.add(compiledBlock);
+			}
+			else{
+				compiledLines.add(line);
+			}
+		});
+		return compiledLines;
+	}
+
+	/**
+	 * Compile a conditional. If the condition only depends on the static configuration, the conditional is
+	 * replaced by the lines of the selected branch.
+	 * @param conditional Conditional to compile.
+	 * @param includePath Names of the fragments currently being compiled.
+	 * @return The compiled lines.
+	 */
+	private List<TemplateLine> compileConditional(Conditional conditional, Deque<String> includePath){
+		if(conditional.getContextKey() != null){
+			if(configuration.containsKey(conditional.getContextKey())){
+				final boolean condition = CompiledConditional.isTrue(configuration.get(conditional.getContextKey()));
+				return compileLines(condition ? conditional.getLines() : conditional.getElseLines(), includePath);
+			}
+			return Collections.singletonList(new CompiledConditional(conditional.getContextKey(), null, configuration,
+					compileLines(conditional.getLines(), includePath),
+					compileLines(conditional.getElseLines(), includePath)));
+		}
+		else if(conditional.getExpression() != null){
+			final JexlScript expression = JEXL.createScript(conditional.getExpression());
+			if(isStatic(expression)){
+				final boolean condition = CompiledConditional.isTrue(expression.execute(new CompiledConditional.ConditionContext(configuration, null)));
+				return compileLines(condition ? conditional.getLines() : conditional.getElseLines(), includePath);
+			}
+			return Collections.singletonList(new CompiledConditional(null, expression, configuration,
+					compileLines(conditional.getLines(), includePath),
+					compileLines(conditional.getElseLines(), includePath)));
+		}
+		throw new IllegalArgumentException("A conditional requires a context key or an expression");
+	}
+
+	/**
+	 * Returns true if all variables of the expression are in the static configuration.
+	 * @param expression The expression to check.
+	 * @return True if the expression is static.
+	 */
+	private boolean isStatic(JexlScript expression){
+		for(List<String> variable : expression.getVariables()){
+			if(!configuration.containsKey(variable.get(0)) && !configuration.containsKey(String.join(".", variable))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compile a fragment, or get it from the registry if it has been compiled before.
+	 * @param name Name of the fragment.
+	 * @param includePath Names of the fragments currently being compiled.
+	 * @return The compiled fragment.
+	 */
+	private CompiledFragment compileFragment(String name, Deque<String> includePath){
+		CompiledFragment compiledFragment = fragments.getCompiled(name, configuration);
+		if(compiledFragment != null){
+			return compiledFragment;
+		}
+		if(includePath.contains(name)){
+			throw new IllegalArgumentException("Fragment includes itself: " + name);
+		}
+		PrintTemplate fragment = fragments.getFragment(name);
+		if(fragment == null){
+			throw new IllegalArgumentException("Unknown fragment: " + name);
+		}
+
+		includePath.push(name);
+		List<TemplateLine> lines = compileLines(fragment.getLines(), includePath);
+		includePath.pop();
+
+		// Static fragments are processed once, and their processed items shared
+		List<ProcessedLineItem> processedItems = null;
+		if(isStatic(lines)){
+			PrintTemplate staticTemplate = new PrintTemplate();
+			lines.forEach(staticTemplate::addLine);
+			processedItems = new DefaultTemplateProcessor().process(staticTemplate).getItems();
+		}
+		return fragments.putCompiled(new CompiledFragment(name, lines, processedItems), fragment, configuration);
+	}
+
+	/**
+	 * Returns true if the lines do not depend on a context.
+	 * @param lines The lines to check.
+	 * @return True if the lines are static.
+	 */
+	static boolean isStatic(List<TemplateLine> lines){
+		for(TemplateLine line : lines){
+			if(RepeatBlock.class.isAssignableFrom(line.getClass()) || CompiledConditional.class.isAssignableFrom(line.getClass())){
+				return false;
+			}
+			else if(CompiledFragment.class.isAssignableFrom(line.getClass())){
+				if(!((CompiledFragment)line).isStatic()){
+					return false;
+				}
+			}
+			else if(AbstractCodeLine.class.isAssignableFrom(line.getClass())){
+				if(((AbstractCodeLine)line).isDynamic()){
+					return false;
+				}
+			}
+			else if(Line.class.isAssignableFrom(line.getClass())){
+				for(TemplateTextItem item : ((Line)line).getLineItems()){
+					if(!Text.class.isAssignableFrom(item.getClass())){
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+}
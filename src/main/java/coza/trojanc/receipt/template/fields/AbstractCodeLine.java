@@ -0,0 +1,56 @@
+package coza.trojanc.receipt.template.fields;
+
+import coza.trojanc.receipt.shared.Align;
+
+/**
+ * A line printing a code, encoding either static data or the value of a context key.
+ * @author Charl Thiem
+ */
+public abstract class AbstractCodeLine implements TemplateLine {
+
+	/**
+	 * Static data to encode, used when there is no context key
+	 */
+	private String data;
+
+	/**
+	 * Key of the context value to encode
+	 */
+	private String contextKey;
+
+	/**
+	 * Alignment of the code on the paper
+	 */
+	private Align alignment = Align.CENTER;
+
+	public String getData() {
+		return data;
+	}
+
+	public void setData(String data) {
+		this.data = data;
+	}
+
+	public String getContextKey() {
+		return contextKey;
+	}
+
+	public void setContextKey(String contextKey) {
+		this.contextKey = contextKey;
+	}
+
+	public Align getAlignment() {
+		return alignment;
+	}
+
+	public void setAlignment(Align alignment) {
+		this.alignment = alignment;
+	}
+
+	/**
+	 * @return if the data comes from the context
+	 */
+	public boolean isDynamic() {
+		return contextKey != null;
+	}
+}
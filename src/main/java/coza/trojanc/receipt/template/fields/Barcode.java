@@ -0,0 +1,39 @@
+package coza.trojanc.receipt.template.fields;
+
+import coza.trojanc.receipt.shared.BarcodeType;
+
+/**
+ * A line printing a one dimensional barcode.
+ * @author Charl Thiem
+ */
+public class Barcode extends AbstractCodeLine {
+
+	private BarcodeType type = BarcodeType.CODE128;
+
+	/**
+	 * Height of the bars in dots
+	 */
+	private int height = 80;
+
+	public Barcode(){}
+
+	public Barcode(BarcodeType type){
+		this.type = type;
+	}
+
+	public BarcodeType getType() {
+		return type;
+	}
+
+	public void setType(BarcodeType type) {
+		this.type = type;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public void setHeight(int height) {
+		this.height = height;
+	}
+}
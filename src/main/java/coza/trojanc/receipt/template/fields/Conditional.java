@@ -0,0 +1,108 @@
+package coza.trojanc.receipt.template.fields;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class representing a conditional section of the receipt.
+ * <p>
+ * The condition is either a context key, which is true when the context holds a value for it that is not empty,
+ * <code>false</code> or <code>0</code>, or a boolean JEXL expression over the context keys. When the condition is
+ * true the lines are printed, otherwise the else lines are printed. In a repeat block, a context key starting with
+ * '.' is a key of the iteration, as is a property of <code>$</code> in an expression.
+ * @author Charl Thiem
+ */
+public class Conditional implements TemplateLine {
+
+	/**
+	 * Context key the condition depends on
+	 */
+	private String contextKey;
+
+	/**
+	 * Boolean expression the condition depends on
+	 */
+	private String expression;
+
+	/**
+	 * Lines printed when the condition is true
+	 */
+	private List<TemplateLine> lines = new ArrayList<>();
+
+	/**
+	 * Lines printed when the condition is false
+	 */
+	private List<TemplateLine> elseLines = new ArrayList<>();
+
+	/**
+	 * Gets context key.
+	 *
+	 * @return the context key
+	 */
+	public String getContextKey() {
+		return contextKey;
+	}
+
+	/**
+	 * Sets context key.
+	 *
+	 * @param contextKey the context key
+	 */
+	public void setContextKey(String contextKey) {
+		this.contextKey = contextKey;
+	}
+
+	/**
+	 * Gets expression.
+	 *
+	 * @return the expression
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * Sets expression.
+	 *
+	 * @param expression the expression
+	 */
+	public void setExpression(String expression) {
+		this.expression = expression;
+	}
+
+	/**
+	 * Gets lines.
+	 *
+	 * @return the lines
+	 */
+	public List<TemplateLine> getLines() {
+		return lines;
+	}
+
+	/**
+	 * Sets lines.
+	 *
+	 * @param lines the lines
+	 */
+	public void setLines(List<TemplateLine> lines) {
+		this.lines = lines;
+	}
+
+	/**
+	 * Gets else lines.
+	 *
+	 * @return the else lines
+	 */
+	public List<TemplateLine> getElseLines() {
+		return elseLines;
+	}
+
+	/**
+	 * Sets else lines.
+	 *
+	 * @param elseLines the else lines
+	 */
+	public void setElseLines(List<TemplateLine> elseLines) {
+		this.elseLines = elseLines;
+	}
+}
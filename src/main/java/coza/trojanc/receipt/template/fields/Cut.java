@@ -0,0 +1,26 @@
+package coza.trojanc.receipt.template.fields;
+
+import coza.trojanc.receipt.shared.CutMode;
+
+/**
+ * A line that feeds the paper past the cutter and cuts it.
+ * @author Charl Thiem
+ */
+public class Cut implements TemplateLine {
+
+	private CutMode mode = CutMode.PARTIAL;
+
+	public Cut(){}
+
+	public Cut(CutMode mode){
+		this.mode = mode;
+	}
+
+	public CutMode getMode() {
+		return mode;
+	}
+
+	public void setMode(CutMode mode) {
+		this.mode = mode;
+	}
+}
@@ -0,0 +1,48 @@
+package coza.trojanc.receipt.template.fields;
+
+/**
+ * A line that includes the lines of a named template fragment.
+ * <p>
+ * Includes are resolved when the template is compiled.
+ * @author Charl Thiem
+ */
+public class Include implements TemplateLine {
+
+	/**
+	 * Name of the fragment to include
+	 */
+	private String fragment;
+
+	public Include(){}
+
+	public Include(String fragment){
+		this.fragment = fragment;
+	}
+
+	/**
+	 * Gets the name of the fragment to include.
+	 *
+	 * @return the fragment name
+	 */
+	public String getFragment() {
+		return fragment;
+	}
+
+	/**
+	 * Sets the name of the fragment to include.
+	 *
+	 * @param fragment the fragment name
+	 */
+	public void setFragment(String fragment) {
+		this.fragment = fragment;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder()
+			.append("Include[")
+			.append("fragment=").append(this.fragment)
+			.append("]")
+			.toString();
+	}
+}
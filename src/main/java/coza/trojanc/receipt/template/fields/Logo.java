@@ -0,0 +1,63 @@
+package coza.trojanc.receipt.template.fields;
+
+import coza.trojanc.receipt.format.RasterCache;
+import coza.trojanc.receipt.shared.Align;
+
+/**
+ * A line that prints an image, such as the logo of a store.
+ * <p>
+ * The image is kept encoded (PNG, GIF, BMP or JPEG). Builders that print images decode it once per width and
+ * cache the result, keyed by the hash of the image taken when it is set. The image must not be changed in place,
+ * set a new image instead.
+ * @author Charl Thiem
+ */
+public class Logo implements TemplateLine {
+
+	/**
+	 * The encoded image
+	 */
+	private byte[] image;
+
+	/**
+	 * Alignment of the image on the paper
+	 */
+	private Align alignment = Align.CENTER;
+
+	/**
+	 * Hash of the image, computed when the image is set
+	 */
+	private volatile long imageHash;
+
+	public Logo(){}
+
+	public Logo(byte[] image){
+		this.setImage(image);
+	}
+
+	public byte[] getImage() {
+		return image;
+	}
+
+	public void setImage(byte[] image) {
+		this.imageHash = image == null ? 0 : RasterCache.hash(image);
+		this.image = image;
+	}
+
+	/**
+	 * Gets the hash of the image, which is computed when the image is set so builders caching images do not hash
+	 * it on every print.
+	 *
+	 * @return the hash of the image, as given by {@link RasterCache#hash(byte[])}
+	 */
+	public long imageHash() {
+		return imageHash;
+	}
+
+	public Align getAlignment() {
+		return alignment;
+	}
+
+	public void setAlignment(Align alignment) {
+		this.alignment = alignment;
+	}
+}
@@ -0,0 +1,27 @@
+package coza.trojanc.receipt.template.fields;
+
+/**
+ * A line that sends a pulse to open the cash drawer connected to the printer.
+ * @author Charl Thiem
+ */
+public class OpenDrawer implements TemplateLine {
+
+	/**
+	 * Connector pin of the drawer, 0 for the first drawer and 1 for the second
+	 */
+	private int pin;
+
+	public OpenDrawer(){}
+
+	public OpenDrawer(int pin){
+		this.pin = pin;
+	}
+
+	public int getPin() {
+		return pin;
+	}
+
+	public void setPin(int pin) {
+		this.pin = pin;
+	}
+}
@@ -0,0 +1,33 @@
+package coza.trojanc.receipt.template.fields;
+
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+
+/**
+ * A line printing a QR code.
+ * @author Charl Thiem
+ */
+public class QrCode extends AbstractCodeLine {
+
+	/**
+	 * Size of a module of the code in dots
+	 */
+	private int moduleSize = 6;
+
+	private QrErrorCorrection errorCorrection = QrErrorCorrection.M;
+
+	public int getModuleSize() {
+		return moduleSize;
+	}
+
+	public void setModuleSize(int moduleSize) {
+		this.moduleSize = moduleSize;
+	}
+
+	public QrErrorCorrection getErrorCorrection() {
+		return errorCorrection;
+	}
+
+	public void setErrorCorrection(QrErrorCorrection errorCorrection) {
+		this.errorCorrection = errorCorrection;
+	}
+}
@@ -0,0 +1,61 @@
+package coza.trojanc.receipt.template.fields;
+
+import coza.trojanc.receipt.shared.TableColumn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A line of a table, where every text item is a cell laid out in its own column. A cell longer than its column
+ * wraps within the column, and the line takes as many printed lines as its longest cell.
+ * @author Charl Thiem
+ */
+public class Table extends Line {
+
+	private List<TableColumn> columns = new ArrayList<>();
+
+	/**
+	 * Number of spaces between two columns
+	 */
+	private int spacing = 1;
+
+	public Table(){
+		super();
+	}
+
+	public Table(List<TableColumn> columns, int spacing){
+		super();
+		this.columns = columns;
+		this.setSpacing(spacing);
+	}
+
+	public List<TableColumn> getColumns() {
+		return columns;
+	}
+
+	public void setColumns(List<TableColumn> columns) {
+		this.columns = columns;
+	}
+
+	public int getSpacing() {
+		return spacing;
+	}
+
+	public void setSpacing(int spacing) {
+		if(spacing < 0){
+			throw new IllegalArgumentException("Spacing between columns can not be negative");
+		}
+		this.spacing = spacing;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder()
+		.append("Table[columns=").append(columns).append(",cells=");
+		getLineItems().forEach(templateTextItem -> {
+			sb.append(templateTextItem.toString());
+		});
+		sb.append("]");
+		return sb.toString();
+	}
+}
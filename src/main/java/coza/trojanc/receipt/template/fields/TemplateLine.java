@@ -13,8 +13,16 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 @JsonSubTypes({
 		@JsonSubTypes.Type(value = Feed.class, name = "feed"),
 		@JsonSubTypes.Type(value = Line.class, name = "line"),
+		@JsonSubTypes.Type(value = Table.class, name = "table"),
 		@JsonSubTypes.Type(value = FillLine.class, name = "fillLine"),
+		@JsonSubTypes.Type(value = Logo.class, name = "logo"),
+		@JsonSubTypes.Type(value = Barcode.class, name = "barcode"),
+		@JsonSubTypes.Type(value = QrCode.class, name = "qrCode"),
+		@JsonSubTypes.Type(value = Cut.class, name = "cut"),
+		@JsonSubTypes.Type(value = OpenDrawer.class, name = "openDrawer"),
 		@JsonSubTypes.Type(value = RepeatBlock.class, name = "repeatBlock"),
+		@JsonSubTypes.Type(value = Include.class, name = "include"),
+		@JsonSubTypes.Type(value = Conditional.class, name = "conditional"),
 })
 public interface TemplateLine {
 }
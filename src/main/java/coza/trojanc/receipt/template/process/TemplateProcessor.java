@@ -3,11 +3,18 @@ package coza.trojanc.receipt.template.process;
 import coza.trojanc.receipt.context.ContextMap;
 import coza.trojanc.receipt.template.PrintTemplate;
 
+import java.util.Map;
+
 /**
  * @author Charl Thiem
  */
 public interface TemplateProcessor {
 
+	/**
+	 * Station of the single ticket of a routed template in which no repeat iteration has a station
+	 */
+	String DEFAULT_STATION = "";
+
 	/**
 	 * Process a template which does not require any variables from a context
 	 * @param template Template to process
@@ -22,4 +29,16 @@ public interface TemplateProcessor {
 	 * @return The processed template.
 	 */
 	ProcessedTemplate process(PrintTemplate template, ContextMap context);
+
+	/**
+	 * Process a template into a ticket for every station the iterations of its repeat blocks are routed to, in a
+	 * single pass. Iterations without a station are on every ticket, as are the items outside repeat blocks,
+	 * which are processed once and shared by the tickets.
+	 * @param template Template to process
+	 * @param context Context to use for variables.
+	 * @param routingKey Key of the station within a repeat iteration, such as <code>.station</code>
+	 * @return The tickets by station, in the order of the first item of every station. When no iteration has a
+	 * station, a single ticket of every item by {@link #DEFAULT_STATION}.
+	 */
+	Map<String, ProcessedTemplate> route(PrintTemplate template, ContextMap context, String routingKey);
 }
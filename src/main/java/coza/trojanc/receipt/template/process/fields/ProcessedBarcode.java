@@ -0,0 +1,44 @@
+package coza.trojanc.receipt.template.process.fields;
+
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+
+/**
+ * @author Charl Thiem
+ */
+public class ProcessedBarcode implements ProcessedLineItem {
+
+	private BarcodeType type;
+
+	private String data;
+
+	private int height;
+
+	private Align alignment = Align.CENTER;
+
+	public ProcessedBarcode(){
+	}
+
+	public ProcessedBarcode(BarcodeType type, String data, int height, Align alignment){
+		this.type = type;
+		this.data = data;
+		this.height = height;
+		this.alignment = alignment;
+	}
+
+	public BarcodeType getType() {
+		return type;
+	}
+
+	public String getData() {
+		return data;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public Align getAlignment() {
+		return alignment;
+	}
+}
@@ -0,0 +1,22 @@
+package coza.trojanc.receipt.template.process.fields;
+
+import coza.trojanc.receipt.shared.CutMode;
+
+/**
+ * @author Charl Thiem
+ */
+public class ProcessedCut implements ProcessedLineItem {
+
+	private CutMode mode = CutMode.PARTIAL;
+
+	public ProcessedCut(){
+	}
+
+	public ProcessedCut(CutMode mode){
+		this.mode = mode;
+	}
+
+	public CutMode getMode() {
+		return mode;
+	}
+}
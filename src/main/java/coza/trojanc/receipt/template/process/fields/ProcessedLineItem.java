@@ -13,7 +13,13 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 @JsonSubTypes({
 		@JsonSubTypes.Type(value = ProcessedFeed.class, name = "feed"),
 		@JsonSubTypes.Type(value = ProcessedLine.class, name = "line"),
+		@JsonSubTypes.Type(value = ProcessedTable.class, name = "table"),
 		@JsonSubTypes.Type(value = ProcessedFillLine.class, name = "fillLine"),
+		@JsonSubTypes.Type(value = ProcessedLogo.class, name = "logo"),
+		@JsonSubTypes.Type(value = ProcessedBarcode.class, name = "barcode"),
+		@JsonSubTypes.Type(value = ProcessedQrCode.class, name = "qrCode"),
+		@JsonSubTypes.Type(value = ProcessedCut.class, name = "cut"),
+		@JsonSubTypes.Type(value = ProcessedOpenDrawer.class, name = "openDrawer"),
 })
 public interface ProcessedLineItem {
 }
@@ -0,0 +1,52 @@
+package coza.trojanc.receipt.template.process.fields;
+
+import coza.trojanc.receipt.format.RasterCache;
+import coza.trojanc.receipt.shared.Align;
+
+/**
+ * @author Charl Thiem
+ */
+public class ProcessedLogo implements ProcessedLineItem {
+
+	private byte[] image;
+
+	private Align alignment = Align.CENTER;
+
+	/**
+	 * Hash of the image, <code>null</code> until it is given or first needed
+	 */
+	private volatile Long imageHash;
+
+	public ProcessedLogo(){
+	}
+
+	public ProcessedLogo(byte[] image, Align alignment){
+		this.image = image;
+		this.alignment = alignment;
+	}
+
+	public ProcessedLogo(byte[] image, long imageHash, Align alignment){
+		this(image, alignment);
+		this.imageHash = imageHash;
+	}
+
+	public byte[] getImage() {
+		return image;
+	}
+
+	public Align getAlignment() {
+		return alignment;
+	}
+
+	/**
+	 * @return the hash of the image, as given by {@link RasterCache#hash(byte[])}
+	 */
+	public long imageHash() {
+		Long hash = imageHash;
+		if (hash == null) {
+			hash = RasterCache.hash(image);
+			imageHash = hash;
+		}
+		return hash;
+	}
+}
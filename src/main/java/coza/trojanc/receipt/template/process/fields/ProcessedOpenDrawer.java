@@ -0,0 +1,20 @@
+package coza.trojanc.receipt.template.process.fields;
+
+/**
+ * @author Charl Thiem
+ */
+public class ProcessedOpenDrawer implements ProcessedLineItem {
+
+	private int pin;
+
+	public ProcessedOpenDrawer(){
+	}
+
+	public ProcessedOpenDrawer(int pin){
+		this.pin = pin;
+	}
+
+	public int getPin() {
+		return pin;
+	}
+}
@@ -0,0 +1,44 @@
+package coza.trojanc.receipt.template.process.fields;
+
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+
+/**
+ * @author Charl Thiem
+ */
+public class ProcessedQrCode implements ProcessedLineItem {
+
+	private String data;
+
+	private int moduleSize;
+
+	private QrErrorCorrection errorCorrection;
+
+	private Align alignment = Align.CENTER;
+
+	public ProcessedQrCode(){
+	}
+
+	public ProcessedQrCode(String data, int moduleSize, QrErrorCorrection errorCorrection, Align alignment){
+		this.data = data;
+		this.moduleSize = moduleSize;
+		this.errorCorrection = errorCorrection;
+		this.alignment = alignment;
+	}
+
+	public String getData() {
+		return data;
+	}
+
+	public int getModuleSize() {
+		return moduleSize;
+	}
+
+	public QrErrorCorrection getErrorCorrection() {
+		return errorCorrection;
+	}
+
+	public Align getAlignment() {
+		return alignment;
+	}
+}
@@ -0,0 +1,33 @@
+package coza.trojanc.receipt.template.process.fields;
+
+import coza.trojanc.receipt.shared.TableColumn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A processed table line, the texts of the line are its cells.
+ * @author Charl Thiem
+ */
+public class ProcessedTable extends ProcessedLine {
+
+	private List<TableColumn> columns = new ArrayList<>();
+
+	private int spacing = 1;
+
+	public ProcessedTable(){
+	}
+
+	public ProcessedTable(List<TableColumn> columns, int spacing){
+		this.columns = columns;
+		this.spacing = spacing;
+	}
+
+	public List<TableColumn> getColumns() {
+		return columns;
+	}
+
+	public int getSpacing() {
+		return spacing;
+	}
+}
@@ -3,14 +3,31 @@ package coza.trojanc.receipt.template.process.impl;
 import coza.trojanc.receipt.context.ContextMap;
 import coza.trojanc.receipt.context.impl.DefaultContextMap;
 import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.compile.CompiledConditional;
+import coza.trojanc.receipt.template.compile.CompiledFragment;
 import coza.trojanc.receipt.template.fields.*;
 import coza.trojanc.receipt.template.process.ProcessedTemplate;
 import coza.trojanc.receipt.template.process.TemplateProcessor;
+import coza.trojanc.receipt.template.process.fields.ProcessedBarcode;
+import coza.trojanc.receipt.template.process.fields.ProcessedCut;
 import coza.trojanc.receipt.template.process.fields.ProcessedFeed;
 import coza.trojanc.receipt.template.process.fields.ProcessedFillLine;
 import coza.trojanc.receipt.template.process.fields.ProcessedLine;
+import coza.trojanc.receipt.template.process.fields.ProcessedLineItem;
+import coza.trojanc.receipt.template.process.fields.ProcessedLogo;
+import coza.trojanc.receipt.template.process.fields.ProcessedOpenDrawer;
+import coza.trojanc.receipt.template.process.fields.ProcessedQrCode;
+import coza.trojanc.receipt.template.process.fields.ProcessedTable;
 import coza.trojanc.receipt.template.process.fields.ProcessedText;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 import static coza.trojanc.receipt.context.ContextResolver.ARRAY_LENGTH_SUFFIX;
 
 /**
@@ -18,6 +35,16 @@ import static coza.trojanc.receipt.context.ContextResolver.ARRAY_LENGTH_SUFFIX;
  */
 public class DefaultTemplateProcessor implements TemplateProcessor {
 
+	/**
+	 * Pool used to process the iterations of large repeat blocks, <code>null</code> to process sequentially.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Maximum number of repeat block iterations processed by a single partition.
+	 */
+	private final int partitionSize;
+
 	/**
 	 * The resulting processed template.
 	 */
@@ -29,48 +56,163 @@ public class DefaultTemplateProcessor implements TemplateProcessor {
 	private ContextMap context;
 
 	/**
-	 * Process a template item.
-	 * @param item The template item to process.
+	 * Tickets the template is routed into, <code>null</code> when not routing.
+	 */
+	private StationTickets routing;
+
+	/**
+	 * Creates a new instance of a <code>DefaultTemplateProcessor</code> that processes sequentially.
+	 */
+	public DefaultTemplateProcessor(){
+		this(null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new instance of a <code>DefaultTemplateProcessor</code> that partitions the iterations of
+	 * repeat blocks larger than <code>partitionSize</code> across the <code>pool</code>.
+	 * @param pool Pool to process partitions in.
+	 * @param partitionSize Maximum number of iterations processed by a single partition.
 	 */
-	private void processTemplateItem(TemplateLine item){
-		this.processTemplateItem(item, null);
+	public DefaultTemplateProcessor(ForkJoinPool pool, int partitionSize){
+		if(partitionSize < 1){
+			throw new IllegalArgumentException("Partition size must be at least 1");
+		}
+		this.pool = pool;
+		this.partitionSize = partitionSize;
 	}
 
-	private void processTemplateItem(TemplateLine item, String repeatPrefix){
+	/**
+	 * Process a template item.
+	 * @param item The template item to process.
+	 * @param repeatPrefix Prefix of the repeat iteration the item is processed in, <code>null</code> when not repeating.
+	 * @param items List to add the processed items to.
+	 */
+	private void processTemplateItem(TemplateLine item, String repeatPrefix, List<ProcessedLineItem> items){
 
 		// If it is a feed
 		if(Feed.class.isAssignableFrom(item.getClass())){
 			Feed feed = (Feed)item;
 			for(int i = 0 ; i < feed.getFeedAmount(); i++){
-				processedTemplate.getItems().add(new ProcessedFeed());
+				items.add(new ProcessedFeed());
 			}
 		}
 
+		else if(Table.class.isAssignableFrom(item.getClass())){
+			Table table = (Table)item;
+			processLine(table, new ProcessedTable(table.getColumns(), table.getSpacing()), repeatPrefix, items);
+		}
+
 		else if(Line.class.isAssignableFrom(item.getClass())){
-			processLine((Line)item, repeatPrefix);
+			processLine((Line)item, new ProcessedLine(), repeatPrefix, items);
 		}
 
 		else if(FillLine.class.isAssignableFrom(item.getClass())){
-			processFillLine((FillLine)item);
+			processFillLine((FillLine)item, items);
+		}
+
+		else if(Logo.class.isAssignableFrom(item.getClass())){
+			Logo logo = (Logo)item;
+			items.add(new ProcessedLogo(logo.getImage(), logo.imageHash(), logo.getAlignment()));
+		}
+
+		else if(Barcode.class.isAssignableFrom(item.getClass())){
+			Barcode barcode = (Barcode)item;
+			items.add(new ProcessedBarcode(barcode.getType(), getCodeData(barcode, repeatPrefix), barcode.getHeight(), barcode.getAlignment()));
+		}
+
+		else if(QrCode.class.isAssignableFrom(item.getClass())){
+			QrCode qrCode = (QrCode)item;
+			items.add(new ProcessedQrCode(getCodeData(qrCode, repeatPrefix), qrCode.getModuleSize(), qrCode.getErrorCorrection(), qrCode.getAlignment()));
+		}
+
+		else if(Cut.class.isAssignableFrom(item.getClass())){
+			items.add(new ProcessedCut(((Cut)item).getMode()));
+		}
+
+		else if(OpenDrawer.class.isAssignableFrom(item.getClass())){
+			items.add(new ProcessedOpenDrawer(((OpenDrawer)item).getPin()));
 		}
 
 		else if(RepeatBlock.class.isAssignableFrom(item.getClass())){
-			processRepeatBlock((RepeatBlock)item);
+			processRepeatBlock((RepeatBlock)item, items);
+		}
+
+		else if(CompiledFragment.class.isAssignableFrom(item.getClass())){
+			processFragment((CompiledFragment)item, repeatPrefix, items);
+		}
+
+		else if(CompiledConditional.class.isAssignableFrom(item.getClass())){
+			((CompiledConditional)item).select(context, repeatPrefix).forEach(line -> processTemplateItem(line, repeatPrefix, items));
+		}
+
+		else if(Include.class.isAssignableFrom(item.getClass())){
+			throw new IllegalArgumentException("Template must be compiled to include fragment: " + ((Include)item).getFragment());
+		}
+
+		else if(Conditional.class.isAssignableFrom(item.getClass())){
+			throw new IllegalArgumentException("Template must be compiled to process conditionals");
 		}
 
 	}
 
 
+	/**
+	 * Process a compiled fragment. Static fragments were processed when compiled, and their items are shared.
+	 * @param fragment The fragment to process
+	 */
+	private void processFragment(CompiledFragment fragment, String repeatPrefix, List<ProcessedLineItem> items){
+		if(fragment.isStatic()){
+			items.addAll(fragment.getProcessedItems());
+		}
+		else{
+			fragment.getLines().forEach(line -> processTemplateItem(line, repeatPrefix, items));
+		}
+	}
+
 	/**
 	 * Process a repeat block
 	 * @param repeatBlock The repeat block to process
 	 */
-	private void processRepeatBlock(RepeatBlock repeatBlock){
+	private void processRepeatBlock(RepeatBlock repeatBlock, List<ProcessedLineItem> items){
 		final String keyPrefix = repeatBlock.getRepeatOn();
 		final int repeatSize = Integer.parseInt(context.get(keyPrefix+ARRAY_LENGTH_SUFFIX));
+		if(routing != null && items == routing.shared){
+			routeRepeatIterations(repeatBlock, repeatSize);
+		}
+		else if(pool != null && repeatSize > partitionSize){
+			items.addAll(pool.invoke(new RepeatPartition(repeatBlock, 0, repeatSize)));
+		}
+		else{
+			processRepeatIterations(repeatBlock, 0, repeatSize, items);
+		}
+	}
+
+	/**
+	 * Process a range of iterations of a repeat block
+	 * @param repeatBlock The repeat block to process
+	 * @param from First iteration to process (inclusive)
+	 * @param to Last iteration to process (exclusive)
+	 * @param items List to add the processed items to.
+	 */
+	private void processRepeatIterations(RepeatBlock repeatBlock, int from, int to, List<ProcessedLineItem> items){
+		final String keyPrefix = repeatBlock.getRepeatOn();
+		for(int idx = from ; idx < to; idx++) {
+			final String iterationPrefix = keyPrefix + "[" + idx + "]";
+			repeatBlock.getLines().forEach(line -> processTemplateItem(line, iterationPrefix, items));
+		}
+	}
+
+	/**
+	 * Process the iterations of a repeat block into the items of the stations they are routed to.
+	 * @param repeatBlock The repeat block to process
+	 * @param repeatSize Number of iterations
+	 */
+	private void routeRepeatIterations(RepeatBlock repeatBlock, int repeatSize){
+		final String keyPrefix = repeatBlock.getRepeatOn();
 		for(int idx = 0 ; idx < repeatSize; idx++) {
-			int iteration = idx;
-			repeatBlock.getLines().forEach(line -> processTemplateItem(line, keyPrefix + "[" + iteration + "]"));
+			final String iterationPrefix = keyPrefix + "[" + idx + "]";
+			final List<ProcessedLineItem> items = routing.itemsOf(context.get(getContextKey(routing.routingKey, iterationPrefix)));
+			repeatBlock.getLines().forEach(line -> processTemplateItem(line, iterationPrefix, items));
 		}
 	}
 
@@ -78,17 +220,17 @@ public class DefaultTemplateProcessor implements TemplateProcessor {
 	 * Process a fill line.
 	 * @param fillLine
 	 */
-	private void processFillLine(FillLine fillLine){
-		processedTemplate.getItems().add(new ProcessedFillLine(fillLine.getCharacter()));
+	private void processFillLine(FillLine fillLine, List<ProcessedLineItem> items){
+		items.add(new ProcessedFillLine(fillLine.getCharacter()));
 	}
 
 	/**
 	 * Process a line that can contain text
 	 * @param line The line to process
+	 * @param processedLine The processed line to add the texts to
 	 */
-	private void processLine(Line line, String repeatPrefix){
-		ProcessedLine processedLine = new ProcessedLine();
-		processedTemplate.getItems().add(processedLine);
+	private void processLine(Line line, ProcessedLine processedLine, String repeatPrefix, List<ProcessedLineItem> items){
+		items.add(processedLine);
 
 		line.getLineItems().forEach(lineItem -> {
 			if (Text.class.isAssignableFrom(lineItem.getClass())) {
@@ -114,19 +256,31 @@ public class DefaultTemplateProcessor implements TemplateProcessor {
 		processedText.setAlignment(text.getAlignment());
 		processedText.setMode(text.getMode());
 		processedText.setOffset(text.getOffset());
+		processedText.setText(context.get(getContextKey(text.getContextKey(), repeatPrefix)));
+		processedLine.getLineItems().add(processedText);
+	}
+
+	/**
+	 * Gets the data of a code, from the context when it is dynamic.
+	 */
+	private String getCodeData(AbstractCodeLine code, String repeatPrefix){
+		if(code.isDynamic()){
+			return context.get(getContextKey(code.getContextKey(), repeatPrefix));
+		}
+		return code.getData();
+	}
 
-		String contextKey;
+	/**
+	 * Gets the key of a context value, within the repeat iteration it is processed in.
+	 */
+	private static String getContextKey(String key, String repeatPrefix){
 		if(repeatPrefix == null){
-			contextKey = text.getContextKey();
+			return key;
 		}
-		else{
-			contextKey = repeatPrefix;
-			if(!(text.getContextKey() == null || text.getContextKey().length() == 0)){
-				contextKey += text.getContextKey();
-			}
+		if(key == null || key.length() == 0){
+			return repeatPrefix;
 		}
-		processedText.setText(context.get(contextKey));
-		processedLine.getLineItems().add(processedText);
+		return repeatPrefix + key;
 	}
 
 
@@ -140,7 +294,146 @@ public class DefaultTemplateProcessor implements TemplateProcessor {
 		this.processedTemplate = new ProcessedTemplate();
 		this.context = context;
 
-		template.getLines().forEach(this::processTemplateItem);
+		template.getLines().forEach(line -> processTemplateItem(line, null, processedTemplate.getItems()));
 		return processedTemplate;
 	}
+
+	@Override
+	public Map<String, ProcessedTemplate> route(PrintTemplate template, ContextMap context, String routingKey) {
+		this.context = context;
+		this.routing = new StationTickets(routingKey);
+		try{
+			template.getLines().forEach(line -> processTemplateItem(line, null, routing.shared));
+			return routing.tickets();
+		}
+		finally{
+			this.routing = null;
+		}
+	}
+
+	/**
+	 * The items of the tickets a template is routed into. Items on every ticket are kept once, and the items of
+	 * a station are kept with the position in the shared items they are printed at.
+	 */
+	private static class StationTickets {
+
+		private final String routingKey;
+
+		/** Items on every ticket */
+		private final List<ProcessedLineItem> shared = new ArrayList<>();
+
+		/** Items of single stations, in the order they were processed */
+		private final List<StationItems> stationItems = new ArrayList<>();
+
+		/** Last items of every station, in the order of the first item of every station */
+		private final Map<String, StationItems> lastItems = new LinkedHashMap<>();
+
+		StationTickets(String routingKey){
+			this.routingKey = routingKey;
+		}
+
+		/**
+		 * Gets the list to add the items of a station to.
+		 * @param station The station, <code>null</code> or empty for every station
+		 */
+		List<ProcessedLineItem> itemsOf(String station){
+			if(station == null || station.isEmpty()){
+				return shared;
+			}
+			StationItems items = lastItems.get(station);
+			if(items == null || items.position != shared.size()){
+				items = new StationItems(station, shared.size());
+				stationItems.add(items);
+				lastItems.put(station, items);
+			}
+			return items.items;
+		}
+
+		/**
+		 * Puts the tickets together, sharing the processed items. Without stations, the shared items are the
+		 * ticket of the default station.
+		 */
+		Map<String, ProcessedTemplate> tickets(){
+			final Map<String, ProcessedTemplate> tickets = new LinkedHashMap<>();
+			if(lastItems.isEmpty()){
+				final ProcessedTemplate ticket = new ProcessedTemplate();
+				ticket.setItems(shared);
+				tickets.put(DEFAULT_STATION, ticket);
+				return tickets;
+			}
+			final Map<String, List<ProcessedLineItem>> ticketItems = new HashMap<>();
+			final Map<String, Integer> positions = new HashMap<>();
+			for(String station : lastItems.keySet()){
+				final ProcessedTemplate ticket = new ProcessedTemplate();
+				tickets.put(station, ticket);
+				ticketItems.put(station, ticket.getItems());
+				positions.put(station, 0);
+			}
+			for(StationItems items : stationItems){
+				final List<ProcessedLineItem> ticket = ticketItems.get(items.station);
+				ticket.addAll(shared.subList(positions.get(items.station), items.position));
+				ticket.addAll(items.items);
+				positions.put(items.station, items.position);
+			}
+			for(String station : lastItems.keySet()){
+				ticketItems.get(station).addAll(shared.subList(positions.get(station), shared.size()));
+			}
+			return tickets;
+		}
+	}
+
+	/**
+	 * Items of a station, printed at a position in the shared items.
+	 */
+	private static class StationItems {
+
+		private final String station;
+
+		private final int position;
+
+		private final List<ProcessedLineItem> items = new ArrayList<>();
+
+		StationItems(String station, int position){
+			this.station = station;
+			this.position = position;
+		}
+	}
+
+	/**
+	 * A partition of the iterations of a repeat block. Each partition processes into its own list, the lists
+	 * are concatenated in iteration order.
+	 */
+	private class RepeatPartition extends RecursiveTask<List<ProcessedLineItem>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RepeatBlock repeatBlock;
+
+		private final int from;
+
+		private final int to;
+
+		RepeatPartition(RepeatBlock repeatBlock, int from, int to){
+			this.repeatBlock = repeatBlock;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<ProcessedLineItem> compute() {
+			if(to - from <= partitionSize){
+				List<ProcessedLineItem> items = new ArrayList<>((to - from) * repeatBlock.getLines().size());
+				processRepeatIterations(repeatBlock, from, to, items);
+				return items;
+			}
+			final int middle = (from + to) >>> 1;
+			RepeatPartition head = new RepeatPartition(repeatBlock, from, middle);
+			RepeatPartition tail = new RepeatPartition(repeatBlock, middle, to);
+			head.fork();
+			List<ProcessedLineItem> tailItems = tail.compute();
+			List<ProcessedLineItem> items = head.join();
+			items.addAll(tailItems);
+			return items;
+		}
+	}
 }
@@ -0,0 +1,208 @@
+package coza.trojanc.receipt;
+
+import coza.trojanc.receipt.context.impl.DefaultContextMap;
+import coza.trojanc.receipt.format.impl.HtmlFormatBuilder;
+import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
+import coza.trojanc.receipt.format.PrintFormatBuilder;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.shared.LineBreaker;
+import coza.trojanc.receipt.shared.LineWrap;
+import coza.trojanc.receipt.shared.PrintStringUtil;
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.compile.OutputSizeEstimator;
+import coza.trojanc.receipt.template.compile.impl.DefaultTemplateCompiler;
+import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import coza.trojanc.receipt.template.process.impl.DefaultTemplateProcessor;
+
+import java.io.CharArrayWriter;
+
+/**
+ * Repeatable timings of the paths of the format builders that are tuned for speed. The build has no JMH harness,
+ * so the benchmark is run by hand after the tests are compiled:
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt) coza.trojanc.receipt.FormatBuilderBenchmark
+ * </pre>
+ * Every case is warmed up and then timed in rounds, the best round is reported. It is not named as a test, so the
+ * build does not run it.
+ * @author Charl Thiem
+ */
+public final class FormatBuilderBenchmark {
+
+	private static final int WARMUP_ROUNDS = 5;
+
+	private static final int ROUNDS = 10;
+
+	private static final String TEXT = "Large pepperoni pizza with extra cheese, olives and a side of garlic bread with a cold drink";
+
+	/**
+	 * Results are added up, so the timed work can not be left out
+	 */
+	private static long sink;
+
+	private FormatBuilderBenchmark(){
+	}
+
+	public static void main(String[] args){
+		wrapping();
+		html();
+		presizing();
+		System.out.println("(" + sink + ")");
+	}
+
+	/**
+	 * Wrapping a text with {@link PrintStringUtil#getLines(String, int, int[])} against {@link LineBreaker}, on
+	 * its own and laid out by a builder.
+	 */
+	private static void wrapping(){
+		final LineBreaker breaker = new LineBreaker();
+		report("wrap getLines", 100_000, () -> sink += PrintStringUtil.getLines(TEXT, 20, (int[]) null).length);
+		report("wrap LineBreaker", 100_000, () -> {
+			breaker.reset(TEXT, 20);
+			while (breaker.next()) {
+				sink += breaker.getLineEnd();
+			}
+		});
+		report("layout 10 wrapped texts", 10_000, () -> {
+			final PlainTextFormatBuilder builder = new PlainTextFormatBuilder(20);
+			for (int i = 0; i < 10; i++) {
+				builder.left(TEXT, LineWrap.WRAP).nl();
+			}
+			sink += ((String) builder.getFormat()).length();
+		});
+	}
+
+	/**
+	 * Printing a receipt as HTML, into a string and streamed to a writer, against printing it as plain text.
+	 */
+	private static void html(){
+		final ProcessedTemplate receipt = new DefaultTemplateProcessor().process(compiledTemplate(), context(200));
+		final PrinterService printerService = new PrinterService();
+		report("200 items plain text", 1_000, () -> {
+			final PlainTextFormatBuilder builder = new PlainTextFormatBuilder(42);
+			printerService.print(receipt, builder);
+			sink += ((String) builder.getFormat()).length();
+		});
+		report("200 items html", 1_000, () -> {
+			final HtmlFormatBuilder builder = new HtmlFormatBuilder(42);
+			printerService.print(receipt, builder);
+			sink += ((String) builder.getFormat()).length();
+		});
+		final CharArrayWriter out = new CharArrayWriter();
+		report("200 items html streamed", 1_000, () -> {
+			out.reset();
+			final HtmlFormatBuilder builder = new HtmlFormatBuilder(42);
+			builder.streamTo(out);
+			printerService.print(receipt, builder);
+			builder.getFormat();
+			sink += out.size();
+		});
+	}
+
+	/**
+	 * Printing a large receipt into a builder that grows its output against one presized from the estimate of
+	 * {@link OutputSizeEstimator}, with the number of times the output grew and the chars it copied.
+	 */
+	private static void presizing(){
+		final PrintTemplate template = compiledTemplate();
+		final DefaultContextMap context = context(2000);
+		final ProcessedTemplate receipt = new DefaultTemplateProcessor().process(template, context);
+		final PrinterService printerService = new PrinterService();
+		for (boolean presize : new boolean[]{false, true}) {
+			final GrowthCounting builder = new GrowthCounting();
+			if (presize) {
+				builder.expectLines(OutputSizeEstimator.estimateLines(template, context));
+			}
+			printerService.print(receipt, builder);
+			System.out.println(String.format("2000 items %-9s grew %d times, copying %d chars",
+					presize ? "presized" : "growing", builder.growths, builder.copied));
+		}
+		report("2000 items growing", 100, () -> {
+			final PlainTextFormatBuilder builder = new PlainTextFormatBuilder(42);
+			printerService.print(receipt, builder);
+			sink += ((String) builder.getFormat()).length();
+		});
+		report("2000 items presized", 100, () -> {
+			final PlainTextFormatBuilder builder = new PlainTextFormatBuilder(42);
+			builder.expectLines(OutputSizeEstimator.estimateLines(template, context));
+			printerService.print(receipt, builder);
+			sink += ((String) builder.getFormat()).length();
+		});
+	}
+
+	/**
+	 * Counts the times the output grows, and the chars copied into the grown output.
+	 */
+	private static final class GrowthCounting extends PlainTextFormatBuilder {
+
+		private int capacity;
+
+		private int growths;
+
+		private long copied;
+
+		GrowthCounting(){
+			super(42);
+			this.capacity = this.builder.capacity();
+		}
+
+		@Override
+		protected void appendNewLine(){
+			final int length = this.builder.length();
+			super.appendNewLine();
+			if (this.builder.capacity() != this.capacity) {
+				this.growths++;
+				this.copied += length;
+				this.capacity = this.builder.capacity();
+			}
+		}
+
+		@Override
+		public PrintFormatBuilder expectLines(int lines){
+			super.expectLines(lines);
+			this.capacity = this.builder.capacity();
+			return this;
+		}
+	}
+
+	private static PrintTemplate compiledTemplate(){
+		return new DefaultTemplateCompiler().compile(TestUtils.createTemplate());
+	}
+
+	/**
+	 * Creates the context of the test template with a number of sold items.
+	 */
+	private static DefaultContextMap context(int items){
+		final DefaultContextMap context = new DefaultContextMap();
+		context.add(TestUtils.CTX_TRADER_NAME, "Trader");
+		context.add(TestUtils.CTX_TRANSACTION_DATE, "2016-01-01");
+		context.add(TestUtils.CTX_SOLD_ITEMS_LENGTH, String.valueOf(items));
+		for (int i = 0; i < items; i++) {
+			context.add("soldItems[" + i + "].name", "Item " + i);
+			context.add("soldItems[" + i + "].value", i + ".00");
+		}
+		return context;
+	}
+
+	/**
+	 * Prints the best time of an operation in nanoseconds.
+	 */
+	private static void report(String name, int operations, Runnable operation){
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			time(operations, operation);
+		}
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			best = Math.min(best, time(operations, operation));
+		}
+		System.out.println(String.format("%-32s %10d ns/op", name, best));
+	}
+
+	private static long time(int operations, Runnable operation){
+		final long start = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			operation.run();
+		}
+		return (System.nanoTime() - start) / operations;
+	}
+}
@@ -0,0 +1,101 @@
+package coza.trojanc.receipt.format;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.format.impl.EpsonPrintFormatBuilder;
+import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
+import coza.trojanc.receipt.printer.PrinterService;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link FormatBuilderPool}
+ * @author Charl Thiem
+ */
+public class FormatBuilderPoolTest {
+
+	private static Object print(PrintFormatBuilder builder){
+		new PrinterService().print(TestUtils.getProcessedTemplate(), builder);
+		return builder.getFormat();
+	}
+
+	@Test
+	public void testReusedBuilderMatchesNewBuilder(){
+		final String expected = (String)print(new PlainTextFormatBuilder(32));
+		final byte[] expectedEpson = (byte[])print(new EpsonPrintFormatBuilder(32));
+
+		FormatBuilderPool pool = new FormatBuilderPool(2);
+		PlainTextFormatBuilder first;
+		try(FormatBuilderPool.Lease<PlainTextFormatBuilder> lease = pool.borrowPlainText(32)){
+			first = lease.get();
+			assertEquals(expected, print(lease.get()));
+		}
+		try(FormatBuilderPool.Lease<PlainTextFormatBuilder> lease = pool.borrowPlainText(32)){
+			assertSame(first, lease.get());
+			assertEquals(expected, print(lease.get()));
+		}
+		for(int i = 0 ; i < 2; i++){
+			try(FormatBuilderPool.Lease<EpsonPrintFormatBuilder> lease = pool.borrowEpson(32)){
+				assertArrayEquals(expectedEpson, (byte[])print(lease.get()));
+			}
+		}
+
+		assertEquals(4, pool.getBorrowCount());
+		assertEquals(2, pool.getCreateCount());
+		assertEquals(4, pool.getReturnCount());
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	@Test
+	public void testBuildersArePooledPerKind(){
+		FormatBuilderPool pool = new FormatBuilderPool(1);
+		FormatBuilderPool.Lease<PlainTextFormatBuilder> narrow = pool.borrowPlainText(32);
+		FormatBuilderPool.Lease<PlainTextFormatBuilder> sanitizing = pool.borrowPlainText(32, "[#]", '*');
+		FormatBuilderPool.Lease<PlainTextFormatBuilder> wide = pool.borrowPlainText(42);
+		FormatBuilderPool.Lease<PlainTextFormatBuilder> narrowSecond = pool.borrowPlainText(32);
+		assertEquals(4, pool.getCreateCount());
+		assertEquals(42, wide.get().getLineWidth());
+
+		narrow.close();
+		narrowSecond.close();
+		sanitizing.close();
+		wide.close();
+		assertEquals(1, pool.getDiscardCount());
+		assertEquals(3, pool.getIdleCount());
+
+		FormatBuilderPool.Lease<PlainTextFormatBuilder> lease = pool.borrowPlainText(32, "[#]", '*');
+		assertEquals(4, pool.getCreateCount());
+		lease.get().left("#");
+		assertEquals("*                               ", lease.get().getFormat());
+		assertThrows(IllegalStateException.class, narrow::get);
+	}
+
+	@Test
+	public void testLeaseReturnedOnce(){
+		FormatBuilderPool pool = new FormatBuilderPool(2);
+		FormatBuilderPool.Lease<PlainTextFormatBuilder> lease = pool.borrowPlainText(32);
+		lease.get().setWrapCache(new WrapCache(8));
+		lease.close();
+		lease.close();
+		assertEquals(1, pool.getReturnCount());
+		assertEquals(1, pool.getIdleCount());
+
+		// The next borrower gets the builder without the wrap cache of the last one
+		try(FormatBuilderPool.Lease<PlainTextFormatBuilder> next = pool.borrowPlainText(32)){
+			assertNull(next.get().getWrapCache());
+			assertEquals(0, pool.getIdleCount());
+		}
+	}
+
+	@Test
+	public void testResetClearsPagination(){
+		final StringBuilder pages = new StringBuilder();
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(10);
+		builder.paginateByLines(pages::append, 1);
+		builder.left("paged").nl();
+		builder.reset();
+		builder.left("kept");
+		assertEquals("paged     \n", pages.toString());
+		assertEquals("kept      ", builder.getFormat());
+	}
+}
@@ -0,0 +1,90 @@
+package coza.trojanc.receipt.format;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.shared.LineBreaker;
+import coza.trojanc.receipt.shared.LineWrap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link WrapCache}
+ * @author Charl Thiem
+ */
+public class WrapCacheTest {
+
+	private static final String TEXT = "Large pepperoni pizza with extra cheese";
+
+	private static String print(PlainTextFormatBuilder builder){
+		new PrinterService().print(TestUtils.getProcessedTemplate(), builder);
+		builder.left(TEXT, LineWrap.WRAP).nl();
+		builder.insertRight(TEXT, 20, LineWrap.WRAP).nl();
+		return (String) builder.getFormat();
+	}
+
+	@Test
+	public void testSameLayout(){
+		final String expected = print(new PlainTextFormatBuilder(32));
+		WrapCache cache = new WrapCache(64);
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(32);
+		builder.setWrapCache(cache);
+		assertEquals(expected, print(builder));
+		final long misses = cache.getMissCount();
+		assertTrue(misses > 0);
+
+		// The cache is not kept for the next document, a builder uses it again once it is set
+		builder.reset();
+		assertNull(builder.getWrapCache());
+		builder.setWrapCache(cache);
+		assertEquals(expected, print(builder));
+		assertEquals(misses, cache.getMissCount());
+		assertTrue(cache.getHitCount() >= misses);
+		assertTrue(cache.getHitRatio() >= 0.5);
+	}
+
+	@Test
+	public void testForkSharesCache(){
+		WrapCache cache = new WrapCache(64);
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(32);
+		builder.setWrapCache(cache);
+		PlainTextFormatBuilder partition = (PlainTextFormatBuilder) builder.fork();
+		assertSame(cache, partition.getWrapCache());
+		partition.left(TEXT, LineWrap.WRAP);
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testReplay(){
+		WrapCache cache = new WrapCache(4);
+		LineBreaker breaker = new LineBreaker();
+		LineBreaker reference = new LineBreaker();
+		for (int i = 0; i < 2; i++) {
+			cache.reset(breaker, TEXT, 10, null);
+			reference.reset(TEXT, 10);
+			while (reference.next()) {
+				assertTrue(breaker.next());
+				assertEquals(reference.getLineStart(), breaker.getLineStart());
+				assertEquals(reference.getLineEnd(), breaker.getLineEnd());
+			}
+			assertFalse(breaker.next());
+		}
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testEviction(){
+		WrapCache cache = new WrapCache(1);
+		LineBreaker breaker = new LineBreaker();
+		for (int width = 1; width <= 100; width++) {
+			cache.reset(breaker, TEXT, width, null);
+		}
+		assertTrue(cache.size() <= 16);
+		assertEquals(100 - cache.size(), cache.getEvictionCount());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertThrows(IllegalArgumentException.class, () -> new WrapCache(0));
+	}
+}
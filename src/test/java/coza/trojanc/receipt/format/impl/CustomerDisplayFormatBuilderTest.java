@@ -0,0 +1,63 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.format.CodePage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link CustomerDisplayFormatBuilder}
+ * @author Charl Thiem
+ */
+public class CustomerDisplayFormatBuilderTest {
+
+	private static byte[] bytes(Object... parts){
+		StringBuilder builder = new StringBuilder();
+		for(Object part : parts){
+			if(part instanceof Integer){
+				builder.append((char)(int)(Integer)part);
+			}
+			else{
+				builder.append(part);
+			}
+		}
+		return builder.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private static byte[] show(CustomerDisplayFormatBuilder builder, String item, String price){
+		builder.left(item);
+		builder.nl();
+		builder.insertLeft("Total", 0);
+		builder.insertRight(price, 19);
+		builder.nl();
+		return (byte[]) builder.getFormat();
+	}
+
+	@Test
+	public void testOnlyChangesSent(){
+		CustomerDisplayFormatBuilder builder = new CustomerDisplayFormatBuilder();
+		assertArrayEquals(bytes(0x0C, "Hake", 0x1F, 0x24, 1, 2, "Total", 0x1F, 0x24, 16, 2, "12.50"),
+				show(builder, "Hake", "12.50"));
+		assertEquals(0, show(builder, "Hake", "12.50").length);
+		assertArrayEquals(bytes(0x1F, 0x24, 1, 1, "Chips", 0x1F, 0x24, 17, 2, "3"),
+				show(builder, "Chips", "13.50"));
+		// Unchanged chars closer than a cursor move are written again
+		assertArrayEquals(bytes(0x1F, 0x24, 16, 2, "23.59"), show(builder, "Chips", "23.59"));
+	}
+
+	@Test
+	public void testInvalidate(){
+		CustomerDisplayFormatBuilder builder = new CustomerDisplayFormatBuilder(4, 1, CodePage.CP437);
+		builder.left("abé€");
+		assertArrayEquals(bytes(0x0C, "ab", 0x82, "?"), (byte[]) builder.getFormat());
+		builder.left("ab");
+		builder.nl();
+		builder.left("below");
+		assertArrayEquals(bytes(0x1F, 0x24, 3, 1, "  "), (byte[]) builder.getFormat());
+		builder.invalidate();
+		builder.right("ab");
+		assertArrayEquals(bytes(0x0C, 0x1F, 0x24, 3, 1, "ab"), (byte[]) builder.getFormat());
+	}
+}
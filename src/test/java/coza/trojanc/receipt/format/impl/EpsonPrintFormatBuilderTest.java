@@ -0,0 +1,324 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.context.impl.DefaultContextMap;
+import coza.trojanc.receipt.format.CodePage;
+import coza.trojanc.receipt.format.OutputStreamPageConsumer;
+import coza.trojanc.receipt.format.RasterCache;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.LineWrap;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.builder.PrintTemplateBuilder;
+import coza.trojanc.receipt.template.fields.Logo;
+import coza.trojanc.receipt.template.loader.impl.JsonTemplateDefinitionLoader;
+import coza.trojanc.receipt.template.process.impl.DefaultTemplateProcessor;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link EpsonPrintFormatBuilder}
+ * @author Charl Thiem
+ */
+public class EpsonPrintFormatBuilderTest {
+
+	private static byte[] bytes(int... values){
+		byte[] bytes = new byte[values.length];
+		for(int i = 0 ; i < values.length; i++){
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+	@Test
+	public void testAsciiText(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(4);
+		builder.left("ab").nl();
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', 'b', 0x0A), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testCodePageSwitchedOnlyWhenNeeded(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(8);
+		// é is in CP437, € is not, CP858 has both
+		builder.left("é€é中");
+		assertArrayEquals(bytes(0x1B, 0x40, 0x82, 0x1B, 0x74, 19, 0xD5, 0x82, '?'), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testCodePageTables(){
+		for(CodePage codePage : CodePage.values()){
+			if(!Charset.isSupported(codePage.getCharsetName())){
+				continue;
+			}
+			Charset charset = Charset.forName(codePage.getCharsetName());
+			for(int b = 0x20; b <= 0xFF; b++){
+				String decoded = new String(new byte[]{(byte) b}, charset);
+				if(decoded.charAt(0) != '\uFFFD' && b != 0x7F){
+					assertEquals(decoded.getBytes(charset)[0] & 0xFF,
+							codePage.encode(decoded.charAt(0)), codePage + " byte " + b);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPaginatedBytes() throws IOException {
+		EpsonPrintFormatBuilder expected = new EpsonPrintFormatBuilder(32);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), expected);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(32);
+		builder.paginateByLines(new OutputStreamPageConsumer(out, StandardCharsets.UTF_8), 2);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), builder);
+		assertEquals(0, ((byte[])builder.getFormat()).length);
+		assertArrayEquals((byte[])expected.getFormat(), out.toByteArray());
+
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		EpsonPrintFormatBuilder streamed = new EpsonPrintFormatBuilder(32);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), streamed);
+		streamed.writeTo(written);
+		assertArrayEquals((byte[])expected.getFormat(), written.toByteArray());
+	}
+
+	@Test
+	public void testModeOnlyChangedOnTransitions(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(12);
+		builder.mode(Mode.BOLD).insertLeft("TOTAL", 0);
+		builder.insertRight("5.00", 11);
+		builder.nl();
+		builder.mode(Mode.NORMAL).insertLeft("x", 0);
+		builder.nl();
+		assertArrayEquals(bytes(0x1B, 0x40,
+				0x1B, 0x21, 0x08, 'T', 'O', 'T', 'A', 'L', ' ', ' ', ' ', '5', '.', '0', '0', 0x0A,
+				0x1B, 0x21, 0x00, 'x', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ', 0x0A), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testUnderlinedSpaces(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(5);
+		builder.mode(Mode.UNDERLINE).insertLeft("a b", 0);
+		assertArrayEquals(bytes(0x1B, 0x40, 0x1B, 0x21, 0x80, 'a', ' ', 'b', 0x1B, 0x21, 0x00, ' ', ' '), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testDoubleWidthLines(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(12);
+		builder.mode(Mode.DOUBLE_SIZE).center("Shop name").nl();
+		builder.left("x").nl();
+		assertArrayEquals(bytes(0x1B, 0x40, 0x1B, 0x61, 0x01, 0x1B, 0x21, 0x30, 'S', 'h', 'o', 'p', 0x0A, 'n', 'a', 'm', 'e', 0x0A,
+				0x1B, 0x61, 0x00, 'x', 0x0A), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testTemplateMode(){
+		PrintTemplate template = new PrintTemplateBuilder()
+				.line().text("Total").mode(Mode.BOLD)
+				.line().text("Thanks")
+				.build();
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(8);
+		new PrinterService().print(new DefaultTemplateProcessor().process(template), builder);
+		assertArrayEquals(bytes(0x1B, 0x40, 0x1B, 0x21, 0x08, 'T', 'o', 't', 'a', 'l', 0x0A, 0x1B, 0x21, 0x00, 'T', 'h', 'a', 'n', 'k', 's', 0x0A),
+				(byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testTrimTrailingSpaces(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(6);
+		builder.trimTrailingSpaces(true);
+		builder.insertLeft("ab", 0);
+		builder.nl();
+		builder.mode(Mode.UNDERLINE).insertLeft("cd  ", 0, LineWrap.NO_WRAP);
+		builder.nl();
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', 'b', 0x0A, 0x1B, 0x21, 0x80, 'c', 'd', ' ', ' ', 0x0A),
+				(byte[])builder.getFormat());
+	}
+
+	private static byte[] png(int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, width, height);
+		graphics.setColor(Color.BLACK);
+		graphics.fillRect(0, 0, width / 2, height);
+		graphics.dispose();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testLogo() throws IOException {
+		byte[] logo = png(200, 20);
+		PrintTemplate template = new PrintTemplateBuilder()
+				.logo(logo)
+				.line().text("Shop")
+				.build();
+		RasterCache cache = new RasterCache(4);
+
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(8);
+		builder.setRasterCache(cache);
+		new PrinterService().print(new DefaultTemplateProcessor().process(template), builder);
+		byte[] bytes = (byte[])builder.getFormat();
+
+		// 8 columns of 12 dots, the image is scaled to 96x10 dots
+		byte[] header = bytes(0x1B, 0x40, 0x1B, 0x61, 0x01, 0x1D, 0x76, 0x30, 0x00, 12, 0, 10, 0);
+		assertArrayEquals(header, Arrays.copyOf(bytes, header.length));
+		assertEquals((byte) 0xFF, bytes[header.length]);
+		assertEquals((byte) 0x00, bytes[header.length + 11]);
+		assertEquals(header.length + 120 + 3 + 5, bytes.length);
+		assertEquals(1, cache.getMissCount());
+
+		// Printed again from the cache
+		EpsonPrintFormatBuilder again = new EpsonPrintFormatBuilder(8);
+		again.setRasterCache(cache);
+		new PrinterService().print(new DefaultTemplateProcessor().process(template), again);
+		assertArrayEquals(bytes, (byte[])again.getFormat());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.size());
+
+		// Another density is cached separately
+		EpsonPrintFormatBuilder doubleWidth = new EpsonPrintFormatBuilder(8);
+		doubleWidth.setRasterCache(cache);
+		doubleWidth.setRasterDensity(EpsonPrintFormatBuilder.Raster_Density.DOUBLE_WIDTH);
+		doubleWidth.image(logo, Align.LEFT);
+		assertArrayEquals(bytes(0x1B, 0x40, 0x1D, 0x76, 0x30, 0x01, 6, 0, 5, 0),
+				Arrays.copyOf((byte[])doubleWidth.getFormat(), 10));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testRasterCacheKeyedOnContent() throws IOException {
+		byte[] logo = png(16, 2);
+		RasterCache cache = new RasterCache(4);
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(8);
+		builder.setRasterCache(cache);
+		builder.image(logo, RasterCache.hash(logo), Align.LEFT);
+
+		// A copy of the image hits, an image of the same length that differs misses
+		byte[] copy = Arrays.copyOf(logo, logo.length);
+		builder.image(copy, Align.LEFT);
+		assertEquals(1, cache.getHitCount());
+		copy[copy.length - 1]++;
+		builder.image(copy, Align.LEFT);
+		assertEquals(2, cache.getMissCount());
+
+		Logo line = new Logo(logo);
+		assertEquals(RasterCache.hash(logo), line.imageHash());
+		line.setImage(copy);
+		assertEquals(RasterCache.hash(copy), line.imageHash());
+	}
+
+	@Test
+	public void testLogoOptimized() throws IOException {
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(8);
+		builder.setOptimizer(new EscPosOptimizer());
+		builder.insertLeft("a", 0);
+		builder.image(png(16, 2), Align.CENTER);
+		builder.left("b").nl().nl().nl().nl();
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', 0x0A, 0x1B, 0x61, 0x01, 0x1D, 0x76, 0x30, 0x00, 2, 0, 2, 0,
+				0xFF, 0x00, 0xFF, 0x00, 0x1B, 0x61, 0x00, 'b', 0x1B, 0x64, 4), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testResetRestoresSettings(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(8);
+		final RasterCache cache = builder.getRasterCache();
+		builder.setOptimizer(new EscPosOptimizer());
+		builder.setDotsPerLine(200);
+		builder.setRasterDensity(EpsonPrintFormatBuilder.Raster_Density.QUADRUPLE);
+		builder.setRasterCache(new RasterCache(1));
+		builder.reset();
+		assertNull(builder.getOptimizer());
+		assertEquals(96, builder.getDotsPerLine());
+		assertEquals(EpsonPrintFormatBuilder.Raster_Density.NORMAL, builder.getRasterDensity());
+		assertSame(cache, builder.getRasterCache());
+		builder.left("b").nl().nl();
+		assertArrayEquals(bytes(0x1B, 0x40, 'b', 0x0A, 0x0A), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testLogoIgnoredByPlainText() throws IOException {
+		PrintTemplate template = new PrintTemplateBuilder()
+				.logo(png(10, 10))
+				.line().text("Shop")
+				.build();
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(6);
+		new PrinterService().print(new DefaultTemplateProcessor().process(template), builder);
+		assertEquals("Shop  \n", builder.getFormat());
+	}
+
+	@Test
+	public void testLoadLogo() throws IOException {
+		byte[] logo = png(10, 10);
+		JsonTemplateDefinitionLoader loader = new JsonTemplateDefinitionLoader();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		loader.write(new PrintTemplateBuilder().logo(logo, Align.RIGHT).build(), out);
+		Logo loaded = (Logo)loader.load(out.toString()).getLines().get(0);
+		assertArrayEquals(logo, loaded.getImage());
+		assertEquals(Align.RIGHT, loaded.getAlignment());
+	}
+
+	@Test
+	public void testBarcode(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(8);
+		builder.insertLeft("a", 0);
+		builder.barcode(BarcodeType.EAN8, "1234567", 50, Align.CENTER);
+		builder.barcode(BarcodeType.CODE128, "AB", 50, Align.CENTER);
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', ' ', ' ', ' ', ' ', ' ', ' ', ' ', 0x0A,
+				0x1B, 0x61, 0x01, 0x1D, 0x68, 50, 0x1D, 0x48, 0x02, 0x1D, 0x6B, 68, 7, '1', '2', '3', '4', '5', '6', '7',
+				0x1D, 0x6B, 73, 4, '{', 'B', 'A', 'B'), (byte[])builder.getFormat());
+
+		assertThrows(IllegalArgumentException.class, () -> builder.barcode(BarcodeType.CODE39, "\u00e9", 50, Align.CENTER));
+	}
+
+	@Test
+	public void testQrCode(){
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(8);
+		builder.qrCode("ab", 4, QrErrorCorrection.Q, Align.LEFT);
+		assertArrayEquals(bytes(0x1B, 0x40,
+				0x1D, 0x28, 0x6B, 0x04, 0x00, 0x31, 0x41, 0x32, 0x00,
+				0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x43, 4,
+				0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x45, 0x32,
+				0x1D, 0x28, 0x6B, 5, 0x00, 0x31, 0x50, 0x30, 'a', 'b',
+				0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x51, 0x30), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testCodesInTemplate(){
+		PrintTemplate template = new PrintTemplateBuilder()
+				.barcode(BarcodeType.CODE39, "123")
+				.dynamicQrCode("url")
+				.line().text("End")
+				.build();
+		DefaultContextMap context = new DefaultContextMap();
+		context.add("url", "https://r.example/1");
+
+		PlainTextFormatBuilder plainText = new PlainTextFormatBuilder(20);
+		new PrinterService().print(new DefaultTemplateProcessor().process(template, context), plainText);
+		assertEquals("         123        \n https://r.example/1\nEnd                 \n", plainText.getFormat());
+
+		EpsonPrintFormatBuilder epson = new EpsonPrintFormatBuilder(20);
+		epson.setOptimizer(new EscPosOptimizer());
+		new PrinterService().print(new DefaultTemplateProcessor().process(template, context), epson);
+		byte[] bytes = (byte[])epson.getFormat();
+		String printed = new String(bytes, StandardCharsets.ISO_8859_1);
+		assertTrue(printed.contains("\u001Dk\u0045\u0003123"));
+		assertTrue(printed.contains("https://r.example/1\u001D(k"));
+		assertTrue(printed.endsWith("\u001Ba\u0000End\n"));
+	}
+}
@@ -0,0 +1,137 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.format.ByteArrayBuilder;
+import coza.trojanc.receipt.printer.PrinterService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link EscPosOptimizer}
+ * @author Charl Thiem
+ */
+public class EscPosOptimizerTest {
+
+	private static byte[] bytes(int... values){
+		byte[] bytes = new byte[values.length];
+		for(int i = 0 ; i < values.length; i++){
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+	@Test
+	public void testCancelledCommandsDropped(){
+		byte[] optimized = new EscPosOptimizer().optimize(bytes(0x1B, 0x40,
+				0x1B, 0x21, 0x08, 0x1B, 0x61, 0x01, 0x1B, 0x21, 0x00, 0x1B, 0x61, 0x00, 'a', 0x0A));
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', 0x0A), optimized);
+	}
+
+	@Test
+	public void testStateKeptAcrossLines(){
+		byte[] optimized = new EscPosOptimizer().optimize(bytes(0x1B, 0x40,
+				0x1B, 0x21, 0x08, 'a', 0x0A, 0x1B, 0x21, 0x00, 0x0A, 0x1B, 0x21, 0x08, 'b'));
+		assertArrayEquals(bytes(0x1B, 0x40, 0x1B, 0x21, 0x08, 'a', 0x0A, 0x0A, 'b'), optimized);
+	}
+
+	@Test
+	public void testLineFeedRuns(){
+		EscPosOptimizer optimizer = new EscPosOptimizer();
+		assertArrayEquals(bytes('a', 0x0A, 0x0A, 0x0A), optimizer.optimize(bytes('a', 0x0A, 0x0A, 0x0A)));
+		assertArrayEquals(bytes('a', 0x1B, 0x64, 5, 'b'), optimizer.optimize(bytes('a', 0x0A, 0x0A, 0x0A, 0x1B, 0x64, 2, 'b')));
+		byte[] feeds = new byte[300];
+		Arrays.fill(feeds, (byte) 0x0A);
+		assertArrayEquals(bytes(0x1B, 0x64, 255, 0x1B, 0x64, 45), optimizer.optimize(feeds));
+	}
+
+	@Test
+	public void testTrailingSpaces(){
+		EscPosOptimizer optimizer = new EscPosOptimizer();
+		// Left aligned
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', ' ', 'b', 0x0A, 0x0A),
+				optimizer.optimize(bytes(0x1B, 0x40, 'a', ' ', 'b', ' ', ' ', 0x0A, ' ', ' ', 0x0A)));
+		// Right aligned spaces move the text
+		assertArrayEquals(bytes(0x1B, 0x40, 0x1B, 0x61, 0x02, 'a', ' ', 0x0A),
+				optimizer.optimize(bytes(0x1B, 0x40, 0x1B, 0x61, 0x02, 'a', ' ', 0x0A)));
+		// Underlined spaces are printed
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', 0x1B, 0x21, 0x80, ' ', 0x0A),
+				optimizer.optimize(bytes(0x1B, 0x40, 'a', 0x1B, 0x21, 0x80, ' ', 0x0A)));
+		// Unknown alignment
+		assertArrayEquals(bytes('a', ' ', 0x0A), optimizer.optimize(bytes('a', ' ', 0x0A)));
+	}
+
+	@Test
+	public void testCodePageOnlyForNonAscii(){
+		byte[] optimized = new EscPosOptimizer().optimize(bytes(0x1B, 0x40,
+				0x1B, 0x74, 19, 'a', 0x1B, 0x74, 16, 'b', 0x80, 0x1B, 0x74, 19, 'c'));
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', 'b', 0x1B, 0x74, 16, 0x80, 'c', 0x1B, 0x74, 19), optimized);
+	}
+
+	@Test
+	public void testUnknownCommandCopied(){
+		byte[] input = bytes(0x1B, 0x40, 'a', ' ', 0x10, 0x04, 0x01, 0x1B, 0x21, 0x00, 0x0A, 0x0A, 0x0A, 0x0A);
+		byte[] optimized = new EscPosOptimizer().optimize(input);
+		assertArrayEquals(input, optimized);
+	}
+
+	@Test
+	public void testBytesSaved(){
+		EscPosOptimizer optimizer = new EscPosOptimizer();
+		ByteArrayBuilder out = new ByteArrayBuilder();
+		assertEquals(3, optimizer.optimize(bytes(0x1B, 0x40, 'a', ' ', ' ', ' ', 0x0A), 0, 7, out));
+		assertEquals(4, out.length());
+		assertEquals(3, optimizer.getBytesSaved());
+	}
+
+	@Test
+	public void testSampleReceipt(){
+		EpsonPrintFormatBuilder plain = new EpsonPrintFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), plain);
+		byte[] unoptimized = (byte[])plain.getFormat();
+
+		EscPosOptimizer optimizer = new EscPosOptimizer();
+		EpsonPrintFormatBuilder optimizing = new EpsonPrintFormatBuilder(42);
+		optimizing.setOptimizer(optimizer);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), optimizing);
+		byte[] optimized = (byte[])optimizing.getFormat();
+
+		assertTrue(optimized.length < unoptimized.length);
+		assertEquals(unoptimized.length - optimized.length, optimizer.getBytesSaved());
+		assertEquals(printed(unoptimized), printed(optimized));
+		// Optimizing again saves nothing more
+		assertArrayEquals(optimized, new EscPosOptimizer().optimize(optimized));
+	}
+
+	/**
+	 * Text of every printed line, without trailing spaces
+	 */
+	private static List<String> printed(byte[] commands){
+		List<String> lines = new ArrayList<>();
+		StringBuilder line = new StringBuilder();
+		for(int i = 0; i < commands.length; i++){
+			if(commands[i] == 0x1B){
+				if(commands[i + 1] == 0x64){
+					for(int n = 0; n < commands[i + 2]; n++){
+						lines.add(line.toString().replaceAll(" +$", ""));
+						line.setLength(0);
+					}
+				}
+				i += (commands[i + 1] == 0x40 ? 1 : 2);
+			}
+			else if(commands[i] == 0x0A){
+				lines.add(line.toString().replaceAll(" +$", ""));
+				line.setLength(0);
+			}
+			else{
+				line.append((char) (commands[i] & 0xFF));
+			}
+		}
+		lines.add(line.toString());
+		return lines;
+	}
+}
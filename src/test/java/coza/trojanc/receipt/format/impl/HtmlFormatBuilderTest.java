@@ -0,0 +1,84 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.Mode;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link HtmlFormatBuilder}
+ * @author Charl Thiem
+ */
+public class HtmlFormatBuilderTest {
+
+	@Test
+	public void testAlignedLines(){
+		HtmlFormatBuilder builder = new HtmlFormatBuilder(10);
+		builder.mode(Mode.BOLD).center("Fish & Co").nl();
+		builder.mode(Mode.NORMAL).right("<1>").nl();
+		builder.nl();
+		builder.left("a\"b'");
+		assertEquals("<div class=\"center\"><span class=\"b\">Fish &amp; Co</span></div>\n"
+				+ "<div class=\"right\">&lt;1&gt;</div>\n"
+				+ "<div></div>\n"
+				+ "<div>a&quot;b&#39;</div>", builder.getFormat());
+	}
+
+	@Test
+	public void testComposedLine(){
+		HtmlFormatBuilder builder = new HtmlFormatBuilder(12);
+		builder.mode(Mode.BOLD).insertLeft("TOTAL", 0);
+		builder.mode(Mode.DOUBLE_SIZE).insertRight("5&0", 11);
+		builder.nl();
+		builder.mode(Mode.UNDERLINE).insertLeft("a b", 0);
+		builder.nl();
+		assertEquals("<div><span class=\"b\">TOTAL    </span><span class=\"dh\">5&amp;0</span></div>\n"
+				+ "<div><span class=\"u\">a b</span></div>\n", builder.getFormat());
+	}
+
+	@Test
+	public void testImageAndCut(){
+		HtmlFormatBuilder builder = new HtmlFormatBuilder(10);
+		builder.left("a");
+		builder.image(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A}, null);
+		builder.image(new byte[]{1, 2, 3}, null);
+		builder.cut(CutMode.FULL);
+		assertEquals("<div>a</div>\n<div class=\"center\"><img src=\"data:image/png;base64,iVBORw0KGgo=\"></div>\n<hr class=\"cut\">\n",
+				builder.getFormat());
+	}
+
+	@Test
+	public void testStreamToWriter(){
+		HtmlFormatBuilder expected = new HtmlFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), expected);
+
+		StringWriter out = new StringWriter();
+		HtmlFormatBuilder streaming = new HtmlFormatBuilder(42);
+		streaming.streamTo(out);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), streaming);
+		assertEquals("", streaming.getFormat());
+		assertEquals(expected.getFormat(), out.toString());
+	}
+
+	@Test
+	public void testSameTextAsPlainText(){
+		PlainTextFormatBuilder plainText = new PlainTextFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), plainText);
+		HtmlFormatBuilder html = new HtmlFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), html);
+
+		assertEquals(trimmedLines((String) plainText.getFormat()),
+				trimmedLines(((String) html.getFormat()).replaceAll("<[^>]*>", "").replace("&#39;", "'").replace("&amp;", "&")));
+	}
+
+	private static String trimmedLines(String text){
+		return Arrays.stream(text.split("\n")).map(String::trim).collect(Collectors.joining("\n"));
+	}
+}
@@ -0,0 +1,117 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.format.OutputStreamPageConsumer;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test for the paginated mode of {@link PlainTextFormatBuilder}
+ * @author Charl Thiem
+ */
+public class PlainTextFormatBuilderPaginationTest {
+
+	private static String print(PlainTextFormatBuilder builder){
+		ProcessedTemplate processedTemplate = TestUtils.getProcessedTemplate();
+		new PrinterService().print(processedTemplate, builder);
+		return (String)builder.getFormat();
+	}
+
+	@Test
+	public void testPaginateByLines(){
+		final String expected = print(new PlainTextFormatBuilder(30));
+
+		final List<String> pages = new ArrayList<>();
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(30);
+		builder.paginateByLines(page -> pages.add(page.toString()), 3);
+		assertEquals("", print(builder));
+
+		assertTrue(pages.size() > 1);
+		pages.forEach(page -> assertTrue(page.split("\n", -1).length - 1 <= 3));
+		assertEquals(expected, String.join("", pages));
+	}
+
+	@Test
+	public void testJoinKeepsPageSize(){
+		final List<String> pages = new ArrayList<>();
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(4);
+		assertTrue(builder.isPartitionable());
+		builder.paginateByLines(page -> pages.add(page.toString()), 2);
+		assertFalse(builder.isPartitionable());
+
+		PlainTextFormatBuilder partition = (PlainTextFormatBuilder) builder.fork();
+		for(int i = 0; i < 5; i++){
+			partition.left(String.valueOf(i)).nl();
+		}
+		partition.left("end");
+		builder.join(partition);
+		assertEquals("", builder.getFormat());
+		assertEquals(Arrays.asList("0   \n1   \n", "2   \n3   \n", "4   \nend "), pages);
+	}
+
+	@Test
+	public void testPaginateBySize(){
+		final String expected = print(new PlainTextFormatBuilder(30));
+
+		final List<String> pages = new ArrayList<>();
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(30);
+		builder.paginateBySize(page -> pages.add(page.toString()), 64);
+		print(builder);
+
+		assertTrue(pages.size() > 1);
+		pages.forEach(page -> assertTrue(page.endsWith("\n")));
+		assertEquals(expected, String.join("", pages));
+	}
+
+	@Test
+	public void testPaginateToOutputStream(){
+		final String expected = print(new PlainTextFormatBuilder(30));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(30);
+		builder.paginateByLines(new OutputStreamPageConsumer(out, StandardCharsets.UTF_8, 16), 2);
+		print(builder);
+
+		assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testStreamToChannel(){
+		final String expected = print(new PlainTextFormatBuilder(30));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(30);
+		builder.streamTo(Channels.newChannel(out), StandardCharsets.UTF_8);
+		print(builder);
+
+		assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testStreamWritesCompletedLines(){
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(5);
+		builder.streamTo(out, StandardCharsets.UTF_8);
+
+		builder.left("first");
+		builder.nl();
+		assertEquals("first\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+		builder.insertLeft("next", 0);
+		assertEquals("first\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+		builder.nl();
+		assertEquals("first\nnext \n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+}
@@ -1,12 +1,23 @@
 package coza.trojanc.receipt.format.impl;
 
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.context.ContextMap;
 import coza.trojanc.receipt.format.PrintBuilderTestCases;
 import coza.trojanc.receipt.format.PrintBuilderTestCasesLoader;
 import coza.trojanc.receipt.format.PrintFormatBuilder;
 import coza.trojanc.receipt.loader.YamlLoader;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
 import coza.trojanc.receipt.shared.LineWrap;
 import coza.trojanc.receipt.shared.PrintStringUtil;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.compile.OutputSizeEstimator;
+import coza.trojanc.receipt.template.compile.impl.DefaultTemplateCompiler;
+import coza.trojanc.receipt.template.process.impl.DefaultTemplateProcessor;
 import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
 
 import java.io.IOException;
@@ -15,6 +26,7 @@ import java.util.List;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Charl Thiem
@@ -108,4 +120,123 @@ public class PlainTextFormatBuilderTest {
 		});
 		return tests;
 	}
-}
\ No newline at end of file
+
+	private static String trimLines(String text){
+		StringBuilder trimmed = new StringBuilder();
+		for(String line : text.split("\n", -1)){
+			trimmed.append(PrintStringUtil.rtrim(line)).append('\n');
+		}
+		return trimmed.substring(0, trimmed.length() - 1);
+	}
+
+	@TestFactory
+	public List<DynamicTest> testTrimmedAlignment() throws IOException {
+		YamlLoader<PrintBuilderTestCases> loader = new PrintBuilderTestCasesLoader();
+		PrintBuilderTestCases test = loader.load(getClass().getResourceAsStream("/plaintext-align-results.yml"));
+		List<DynamicTest> tests = new ArrayList<>();
+		test.getTests().forEach(testInstance -> {
+			tests.add(DynamicTest.dynamicTest(alignTestDescription(testInstance, "trimmed"), () -> {
+				PlainTextFormatBuilder builder = new PlainTextFormatBuilder(testInstance.getLineWidth());
+				builder.trimTrailingSpaces(true);
+				builder.left(testInstance.getText(), testInstance.getLineWrap()).nl();
+				builder.center(testInstance.getText(), testInstance.getLineWrap()).nl();
+				builder.right(testInstance.getText(), testInstance.getLineWrap());
+				String expected = trimLines(testInstance.getResultLeft().replaceAll("\\|", "") + "\n"
+						+ testInstance.getResultCenter().replaceAll("\\|", "") + "\n"
+						+ testInstance.getResultRight().replaceAll("\\|", ""));
+				assertEquals(expected, builder.getFormat());
+			}));
+		});
+		return tests;
+	}
+
+	@Test
+	public void testTrimmedReceipt(){
+		PlainTextFormatBuilder padded = new PlainTextFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), padded);
+		String paddedReceipt = (String)padded.getFormat();
+
+		PlainTextFormatBuilder trimmed = new PlainTextFormatBuilder(42);
+		trimmed.trimTrailingSpaces(true);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), trimmed);
+		String trimmedReceipt = (String)trimmed.getFormat();
+
+		assertEquals(trimLines(paddedReceipt), trimmedReceipt);
+		assertTrue(trimmedReceipt.length() < paddedReceipt.length());
+	}
+
+	@Test
+	public void testWideCharsKeepColumns(){
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(12);
+		builder.insertLeft("\u5546\u54C1\u4EF7", 0).insertRight("9.99", 11).nl();
+		builder.insertLeft("Tea", 0).insertRight("1.00", 11).nl();
+		String[] lines = ((String) builder.getFormat()).split("\n");
+		assertEquals("\u5546\u54C1\u4EF7  9.99", lines[0]);
+		assertEquals("Tea     1.00", lines[1]);
+	}
+
+	@Test
+	public void testWideCharsSanitized(){
+		// A character class is expanded into a sanitizer, other patterns are matched on the line
+		for(String regex : new String[]{"[\\p{C}#]", "\\p{C}|#", "#+|\\p{C}+"}){
+			PlainTextFormatBuilder builder = new PlainTextFormatBuilder(8, regex, '?');
+			builder.insertLeft("\u5546\u54C1", 0).insertRight("#9", 7);
+			assertEquals("\u5546\u54C1  ?9", builder.getFormat());
+		}
+	}
+
+	@Test
+	public void testFillerInTextReplaced(){
+		// A U+FFFF in a text is not taken for the second column of a wide char
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(8);
+		builder.insertLeft("a\uFFFFb", 0).insertRight("\u5546\uFFFF", 7);
+		assertEquals("a\uFFFDb  \u5546\uFFFD", builder.getFormat());
+
+		HtmlFormatBuilder html = new HtmlFormatBuilder(4);
+		html.insertLeft("a\uFFFFb", 0);
+		assertTrue(((String) html.getFormat()).contains("a\uFFFDb"));
+	}
+
+	@Test
+	public void testCodeDataOnOwnLine(){
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(8);
+		builder.insertLeft("Ref", 0);
+		builder.barcode(BarcodeType.CODE39, "123", 50, Align.RIGHT);
+		builder.insertRight("Pay", 7);
+		builder.qrCode("url", 4, QrErrorCorrection.M, Align.LEFT);
+		assertEquals("Ref     \n     123\n     Pay\nurl     \n", builder.getFormat());
+	}
+
+	@Test
+	public void testExpectLinesAvoidsGrowing(){
+		final PrintTemplate template = new DefaultTemplateCompiler().compile(TestUtils.createTemplate());
+		final ContextMap context = TestUtils.createResolvedVariables();
+		for(boolean presize : new boolean[]{false, true}){
+			final int[] growths = new int[1];
+			PlainTextFormatBuilder builder = new PlainTextFormatBuilder(42){
+				private int capacity = this.builder.capacity();
+
+				@Override
+				protected void appendNewLine(){
+					super.appendNewLine();
+					if(this.builder.capacity() != this.capacity){
+						growths[0]++;
+						this.capacity = this.builder.capacity();
+					}
+				}
+
+				@Override
+				public PrintFormatBuilder expectLines(int lines){
+					super.expectLines(lines);
+					this.capacity = this.builder.capacity();
+					return this;
+				}
+			};
+			if(presize){
+				builder.expectLines(OutputSizeEstimator.estimateLines(template, context));
+			}
+			new PrinterService().print(new DefaultTemplateProcessor().process(template, context), builder);
+			assertEquals(presize, growths[0] == 0);
+		}
+	}
+}
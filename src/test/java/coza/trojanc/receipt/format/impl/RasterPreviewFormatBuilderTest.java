@@ -0,0 +1,94 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.format.GlyphAtlas;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.shared.Mode;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link RasterPreviewFormatBuilder}
+ * @author Charl Thiem
+ */
+public class RasterPreviewFormatBuilderTest {
+
+	private static final GlyphAtlas ATLAS = GlyphAtlas.of(RasterPreviewFormatBuilder.DEFAULT_FONT);
+
+	private static byte[] pixels(BufferedImage image){
+		return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Number of black dots in a rectangle
+	 */
+	private static int ink(BufferedImage image, int x, int y, int width, int height){
+		int ink = 0;
+		for(int row = y; row < y + height; row++){
+			for(int column = x; column < x + width; column++){
+				if(image.getRaster().getSample(column, row, 0) == 0){
+					ink++;
+				}
+			}
+		}
+		return ink;
+	}
+
+	@Test
+	public void testLines(){
+		final int cellWidth = ATLAS.getCellWidth();
+		final int cellHeight = ATLAS.getCellHeight();
+		RasterPreviewFormatBuilder builder = new RasterPreviewFormatBuilder(6);
+		builder.left("Hi").nl();
+		builder.mode(Mode.DOUBLE_HEIGHT).insertRight("X", 5);
+		builder.nl();
+		BufferedImage image = (BufferedImage) builder.getFormat();
+
+		assertEquals(6 * cellWidth + 16, image.getWidth());
+		assertEquals(3 * cellHeight + 16, image.getHeight());
+		assertTrue(ink(image, 8, 8, 2 * cellWidth, cellHeight) > 0);
+		assertEquals(0, ink(image, 8 + 2 * cellWidth, 8, 4 * cellWidth, cellHeight));
+		// The double height glyph covers both rows of its line
+		assertTrue(ink(image, 8 + 5 * cellWidth, 8 + cellHeight, cellWidth, cellHeight) > 0);
+		assertTrue(ink(image, 8 + 5 * cellWidth, 8 + 2 * cellHeight, cellWidth, cellHeight) > 0);
+	}
+
+	@Test
+	public void testCanvasReused(){
+		RasterPreviewFormatBuilder builder = new RasterPreviewFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), builder);
+		BufferedImage first = (BufferedImage) builder.getFormat();
+
+		builder.reset();
+		builder.left("x").nl();
+		builder.reset();
+		new PrinterService().print(TestUtils.getProcessedTemplate(), builder);
+		BufferedImage second = (BufferedImage) builder.getFormat();
+
+		assertEquals(first.getHeight(), second.getHeight());
+		assertArrayEquals(pixels(first), pixels(second));
+		assertSame(ATLAS, GlyphAtlas.of(RasterPreviewFormatBuilder.DEFAULT_FONT));
+	}
+
+	@Test
+	public void testWritePng() throws IOException {
+		RasterPreviewFormatBuilder builder = new RasterPreviewFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), builder);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		builder.writePng(out);
+
+		BufferedImage expected = (BufferedImage) builder.getFormat();
+		BufferedImage read = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(expected.getWidth(), read.getWidth());
+		assertEquals(expected.getHeight(), read.getHeight());
+		assertEquals(ink(expected, 0, 0, expected.getWidth(), expected.getHeight()), ink(read, 0, 0, read.getWidth(), read.getHeight()));
+	}
+}
@@ -0,0 +1,106 @@
+package coza.trojanc.receipt.format.impl;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.format.CodePage;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.BarcodeType;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.Mode;
+import coza.trojanc.receipt.shared.QrErrorCorrection;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link StarPrintFormatBuilder}
+ * @author Charl Thiem
+ */
+public class StarPrintFormatBuilderTest {
+
+	private static byte[] bytes(int... values){
+		byte[] bytes = new byte[values.length];
+		for(int i = 0 ; i < values.length; i++){
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+	@Test
+	public void testAlignment(){
+		StarPrintFormatBuilder builder = new StarPrintFormatBuilder(4);
+		builder.center("ab").nl();
+		builder.center("cd").nl();
+		builder.left("e").nl();
+		assertArrayEquals(bytes(0x1B, 0x40, 0x1B, 0x1D, 0x61, 0x01, 'a', 'b', 0x0A, 'c', 'd', 0x0A,
+				0x1B, 0x1D, 0x61, 0x00, 'e', 0x0A), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testOnlyChangedModesSent(){
+		StarPrintFormatBuilder builder = new StarPrintFormatBuilder(12);
+		builder.mode(Mode.BOLD).left("a").nl();
+		builder.mode(Mode.DOUBLE_HEIGHT).left("b").nl();
+		builder.mode(Mode.UNDERLINE).left("c").nl();
+		builder.mode(Mode.NORMAL).left("d").nl();
+		assertArrayEquals(bytes(0x1B, 0x40,
+				0x1B, 0x45, 'a', 0x0A,
+				0x1B, 0x46, 0x1B, 0x69, 0x01, 0x00, 'b', 0x0A,
+				0x1B, 0x2D, 0x01, 0x1B, 0x69, 0x00, 0x00, 'c', 0x0A,
+				0x1B, 0x2D, 0x00, 'd', 0x0A), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testCodePageSelectedForFirstNonAscii(){
+		StarPrintFormatBuilder builder = new StarPrintFormatBuilder(8);
+		// The code page after initializing depends on the printer, so even CP437 is selected
+		builder.left("aé€é");
+		assertArrayEquals(bytes(0x1B, 0x40, 'a', 0x1B, 0x1D, 0x74, 1, 0x82, 0x1B, 0x1D, 0x74, 4, 0xD5, 0x82), (byte[])builder.getFormat());
+
+		assertThrows(IllegalArgumentException.class, () -> new StarPrintFormatBuilder(8, CodePage.CP850));
+	}
+
+	@Test
+	public void testDeviceCommands(){
+		StarPrintFormatBuilder builder = new StarPrintFormatBuilder(8);
+		builder.barcode(BarcodeType.CODE128, "AB", 50, Align.CENTER);
+		builder.qrCode("ab", 4, QrErrorCorrection.Q, Align.CENTER);
+		builder.cut(CutMode.PARTIAL);
+		builder.openDrawer(1);
+		assertArrayEquals(bytes(0x1B, 0x40, 0x1B, 0x1D, 0x61, 0x01,
+				0x1B, 0x62, 6, 0x02, 0x02, 50, 'A', 'B', 0x1E,
+				0x1B, 0x1D, 0x79, 0x53, 0x30, 0x02,
+				0x1B, 0x1D, 0x79, 0x53, 0x31, 0x02,
+				0x1B, 0x1D, 0x79, 0x53, 0x32, 4,
+				0x1B, 0x1D, 0x79, 0x44, 0x31, 0x00, 2, 0, 'a', 'b',
+				0x1B, 0x1D, 0x79, 0x50,
+				0x1B, 0x64, 0x03,
+				0x1A), (byte[])builder.getFormat());
+	}
+
+	@Test
+	public void testSameTextAsEpson(){
+		StarPrintFormatBuilder star = new StarPrintFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), star);
+		EpsonPrintFormatBuilder epson = new EpsonPrintFormatBuilder(42);
+		new PrinterService().print(TestUtils.getProcessedTemplate(), epson);
+		assertEquals(text((byte[])epson.getFormat()), text((byte[])star.getFormat()));
+	}
+
+	/**
+	 * Printable bytes of a command stream of the sample receipt, which only has ASCII, alignment and mode commands
+	 */
+	private static String text(byte[] commands){
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < commands.length; i++){
+			if(commands[i] == 0x1B){
+				final int command = commands[i + 1] == 0x1D ? commands[i + 2] : commands[i + 1];
+				i += (command == 0x40 || command == 0x45 || command == 0x46) ? 1 : (command == 0x69 ? 3 : (commands[i + 1] == 0x1D ? 3 : 2));
+			}
+			else{
+				text.append((char) commands[i]);
+			}
+		}
+		return text.toString();
+	}
+}
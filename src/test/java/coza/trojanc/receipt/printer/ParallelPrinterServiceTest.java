@@ -0,0 +1,98 @@
+package coza.trojanc.receipt.printer;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.context.ContextMap;
+import coza.trojanc.receipt.context.impl.DefaultContextMap;
+import coza.trojanc.receipt.format.PrintFormatBuilder;
+import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import coza.trojanc.receipt.template.process.impl.DefaultTemplateProcessor;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static coza.trojanc.receipt.TestUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that partitioned processing and layout of repeat blocks produces the same output as the
+ * sequential path.
+ * @author Charl Thiem
+ */
+public class ParallelPrinterServiceTest {
+
+	private static final String WORD_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+	private static String randomText(Random random, int maxWords){
+		StringBuilder sb = new StringBuilder();
+		final int words = 1 + random.nextInt(maxWords);
+		for(int w = 0 ; w < words; w++){
+			if(w > 0){
+				sb.append(random.nextInt(5) == 0 ? "  " : " ");
+			}
+			final int length = 1 + random.nextInt(random.nextInt(8) == 0 ? 50 : 10);
+			for(int c = 0 ; c < length; c++){
+				sb.append(WORD_CHARS.charAt(random.nextInt(WORD_CHARS.length())));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static ContextMap randomContext(Random random, int items){
+		ContextMap context = new DefaultContextMap();
+		context.add(CTX_TRADER_NAME, randomText(random, 6));
+		context.add(CTX_TRANSACTION_DATE, "2017-01-01");
+		context.add(CTX_SOLD_ITEMS_LENGTH, Integer.toString(items));
+		for(int idx = 0 ; idx < items; idx++){
+			context.add("soldItems[" + idx + "].name", randomText(random, 8));
+			context.add("soldItems[" + idx + "].value", Integer.toString(random.nextInt(100000)) + "." + random.nextInt(10) + random.nextInt(10));
+		}
+		return context;
+	}
+
+	private static String print(PrintTemplate template, ContextMap context, int width, ForkJoinPool pool, int partitionSize){
+		ProcessedTemplate processedTemplate;
+		PrinterService printerService;
+		if(pool == null){
+			processedTemplate = new DefaultTemplateProcessor().process(template, context);
+			printerService = new PrinterService();
+		}
+		else{
+			processedTemplate = new DefaultTemplateProcessor(pool, partitionSize).process(template, context);
+			printerService = new PrinterService(pool, partitionSize);
+		}
+		PrintFormatBuilder builder = new PlainTextFormatBuilder(width);
+		printerService.print(processedTemplate, builder);
+		return (String)builder.getFormat();
+	}
+
+	@TestFactory
+	public List<DynamicTest> testParallelEquivalence(){
+		final PrintTemplate template = TestUtils.createTemplate();
+		List<DynamicTest> tests = new ArrayList<>();
+		for(int seed = 0 ; seed < 20; seed++){
+			final Random random = new Random(seed);
+			final int items = random.nextInt(2000);
+			final int width = 20 + random.nextInt(30);
+			final int partitionSize = 1 + random.nextInt(64);
+			final ContextMap context = randomContext(random, items);
+			tests.add(DynamicTest.dynamicTest(String.format("%d items at width %d in partitions of %d", items, width, partitionSize), () -> {
+				final String expected = print(template, context, width, null, 0);
+				// Dynamic tests run after the factory returns, so every test has a pool of its own
+				final ForkJoinPool pool = new ForkJoinPool(4);
+				try{
+					assertEquals(expected, print(template, context, width, pool, partitionSize));
+				}
+				finally{
+					pool.shutdown();
+				}
+			}));
+		}
+		return tests;
+	}
+}
@@ -1,10 +1,25 @@
 package coza.trojanc.receipt.printer;
 
 import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.format.impl.EpsonPrintFormatBuilder;
+import coza.trojanc.receipt.format.impl.EscPosOptimizer;
+import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
 import coza.trojanc.receipt.printer.impl.PlainTextPrinter;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.shared.CutMode;
+import coza.trojanc.receipt.shared.TableColumn;
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.builder.PrintTemplateBuilder;
 import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import coza.trojanc.receipt.template.process.impl.DefaultTemplateProcessor;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 /**
  * @author Charl Thiem
  */
@@ -20,4 +35,57 @@ public class PrinterServiceTest {
 		System.out.println(">" + printedText + "<");
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void printBatchWithCuts() throws Exception {
+		PrintTemplate template = new PrintTemplateBuilder()
+				.openDrawer()
+				.line().text("Hi")
+				.build();
+		ProcessedTemplate processed = new DefaultTemplateProcessor().process(template);
+
+		EpsonPrintFormatBuilder epson = new EpsonPrintFormatBuilder(4);
+		new PrinterService().print(Arrays.asList(processed, processed), epson, CutMode.PARTIAL);
+		byte[] receipt = {0x1B, 0x70, 0x00, 25, (byte) 250, 'H', 'i', 0x0A, 0x1D, 0x56, 0x42, 0x00};
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(new byte[]{0x1B, 0x40});
+		expected.write(receipt);
+		expected.write(receipt);
+		assertArrayEquals(expected.toByteArray(), (byte[])epson.getFormat());
+
+		// Plain text has no paper to cut or drawer to open
+		PlainTextFormatBuilder plainText = new PlainTextFormatBuilder(4);
+		new PrinterService().print(Arrays.asList(processed, processed), plainText, CutMode.FULL);
+		assertEquals("Hi  \nHi  \n", plainText.getFormat());
+	}
+
+	@Test
+	public void printCutInTemplate() throws Exception {
+		PrintTemplate template = new PrintTemplateBuilder()
+				.line().text("Hi")
+				.cut(CutMode.FULL)
+				.build();
+		EpsonPrintFormatBuilder epson = new EpsonPrintFormatBuilder(4);
+		epson.setOptimizer(new EscPosOptimizer());
+		new PrinterService().print(new DefaultTemplateProcessor().process(template), epson);
+		assertArrayEquals(new byte[]{0x1B, 0x40, 'H', 'i', 0x0A, 0x1D, 0x56, 0x41, 0x00}, (byte[])epson.getFormat());
+	}
+
+	@Test
+	public void printTable() throws Exception {
+		PrintTemplate template = new PrintTemplateBuilder()
+				.table(new TableColumn(2, Align.RIGHT), new TableColumn(0, Align.LEFT), new TableColumn(5, Align.RIGHT, false))
+				.text("2").text("Large pepperoni pizza").text("123.45")
+				.table(new TableColumn(2, Align.RIGHT), new TableColumn(0, Align.CENTER), new TableColumn(5, Align.RIGHT, false))
+				.text("10").text("Tea").text("9.50")
+				.build();
+		PlainTextFormatBuilder plainText = new PlainTextFormatBuilder(20);
+		new PrinterService().print(new DefaultTemplateProcessor().process(template), plainText);
+		// The description wraps in its column without touching the price, a price too long for its column is
+		// not cut but shown as not fitting
+		assertEquals(
+				" 2 Large       #####\n" +
+				"   pepperoni        \n" +
+				"   pizza            \n" +
+				"10     Tea      9.50\n", plainText.getFormat());
+	}
+}
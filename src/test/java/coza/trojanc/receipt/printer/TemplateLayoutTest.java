@@ -0,0 +1,60 @@
+package coza.trojanc.receipt.printer;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.format.impl.EpsonPrintFormatBuilder;
+import coza.trojanc.receipt.shared.PrintStringUtil;
+import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit test for {@link TemplateLayout}
+ * @author Charl Thiem
+ */
+public class TemplateLayoutTest {
+
+	private static final String CHARS = "abcdefghij   \n";
+
+	@Test
+	public void testLinesMatchWithBreakPositions(){
+		Random random = new Random(30);
+		for(int i = 0 ; i < 2000; i++){
+			StringBuilder sb = new StringBuilder();
+			final int length = random.nextInt(80);
+			for(int c = 0 ; c < length; c++){
+				sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+			}
+			final String text = sb.toString();
+			final int[] breakPositions = PrintStringUtil.getBreakPositions(text);
+			for(int width = 1 ; width < 50; width++){
+				assertArrayEquals(PrintStringUtil.getLines(text, width, ""), PrintStringUtil.getLines(text, width, breakPositions),
+						"Width " + width + " of \"" + text + "\"");
+			}
+		}
+	}
+
+	@Test
+	public void testLayoutAtSeveralWidths(){
+		TemplateLayout layout = SimplePlainTextPrinterService.createLayout(TestUtils.createTemplate(), TestUtils.createResolvedVariables());
+		for(int width = 20 ; width <= 48; width++){
+			assertEquals(
+					SimplePlainTextPrinterService.createReceipt(width, TestUtils.createTemplate(), TestUtils.createResolvedVariables()),
+					SimplePlainTextPrinterService.createReceipt(width, layout));
+		}
+	}
+
+	@Test
+	public void testEpsonLayout(){
+		ProcessedTemplate processedTemplate = TestUtils.getProcessedTemplate();
+		EpsonPrintFormatBuilder expected = new EpsonPrintFormatBuilder(32);
+		new PrinterService().print(processedTemplate, expected);
+
+		EpsonPrintFormatBuilder builder = new EpsonPrintFormatBuilder(32);
+		new TemplateLayout(processedTemplate).layout(builder);
+		assertArrayEquals((byte[])expected.getFormat(), (byte[])builder.getFormat());
+	}
+}
@@ -0,0 +1,89 @@
+package coza.trojanc.receipt.shared;
+
+import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link CharacterSanitizer}
+ * @author Charl Thiem
+ */
+public class CharacterSanitizerTest {
+
+	private static final String[] CLASSES = {
+			"[\\x00-\\x1F]",
+			"[^\\x20-\\x7E]",
+			"[a-f&&[^c]]",
+			"[\\[\\]]",
+			"\\p{Cntrl}",
+			"\\s",
+	};
+
+	@Test
+	public void testExpandedMatchesRegex(){
+		Random random = new Random(32);
+		for (String regex : CLASSES){
+			Pattern pattern = Pattern.compile(regex);
+			CharacterSanitizer sanitizer = CharacterSanitizer.fromPattern(pattern, '?');
+			assertNotNull(sanitizer, regex);
+			for (int i = 0 ; i < 200; i++){
+				char[] chars = new char[random.nextInt(40)];
+				for (int c = 0 ; c < chars.length; c++){
+					chars[c] = (char)(random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0xD800));
+				}
+				String str = new String(chars);
+				assertEquals(pattern.matcher(str).replaceAll("?"), sanitizer.sanitize(str), regex);
+			}
+		}
+	}
+
+	@Test
+	public void testIsCharacterClass(){
+		assertTrue(CharacterSanitizer.isCharacterClass("[abc]"));
+		assertTrue(CharacterSanitizer.isCharacterClass("[a-z&&[^e]]"));
+		assertTrue(CharacterSanitizer.isCharacterClass("\\p{Cntrl}"));
+		assertFalse(CharacterSanitizer.isCharacterClass("[abc]+"));
+		assertFalse(CharacterSanitizer.isCharacterClass("[a][b]"));
+		assertFalse(CharacterSanitizer.isCharacterClass("ab"));
+		assertNull(CharacterSanitizer.fromPattern(Pattern.compile("ab"), '?'));
+	}
+
+	@Test
+	public void testCleanStringIsReturned(){
+		CharacterSanitizer sanitizer = CharacterSanitizer.fromRanges('?', '\u0000', '\u001F', '\u007F', 'ÿ');
+		String clean = "Nothing to replace";
+		assertSame(clean, sanitizer.sanitize(clean));
+		assertEquals("a?b?c", sanitizer.sanitize("a\tbéc"));
+		assertThrows(IllegalArgumentException.class, () -> CharacterSanitizer.fromRanges('?', 'z', 'a'));
+	}
+
+	@Test
+	public void testBuilderSanitizesLines(){
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(10, "[#]", '*');
+		builder.left("#1 item").nl().right("#");
+		assertEquals("*1 item   \n         *", builder.getFormat());
+
+		// Every char of a longer match is replaced, so the columns of the line stay in place
+		PlainTextFormatBuilder fallback = new PlainTextFormatBuilder(10, "#+", '*');
+		fallback.insertLeft("##1", 0).insertRight("##", 9);
+		assertEquals("**1     **", fallback.getFormat());
+	}
+
+	@Test
+	public void testPatternCacheIsBounded(){
+		Pattern pattern = Pattern.compile("[#]");
+		CharacterSanitizer sanitizer = CharacterSanitizer.fromPattern(pattern, '*');
+		assertSame(sanitizer, CharacterSanitizer.fromPattern(Pattern.compile("[#]"), '*'));
+		// Other patterns push the least recently used one out
+		for (char c = 'a' ; c < 'a' + 20; c++){
+			CharacterSanitizer.fromPattern(Pattern.compile("[" + c + "]"), '*');
+		}
+		CharacterSanitizer expanded = CharacterSanitizer.fromPattern(pattern, '*');
+		assertNotSame(sanitizer, expanded);
+		assertEquals("*1", expanded.sanitize("#1"));
+	}
+}
@@ -0,0 +1,91 @@
+package coza.trojanc.receipt.shared;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link LineBreaker}
+ * @author Charl Thiem
+ */
+public class LineBreakerTest {
+
+	private static final String CHARS = "abcdefghij   \n\t";
+
+	/**
+	 * Wraps with {@link PrintStringUtil#getLine(String, int, int, int[], int[], int[], int[], String)}.
+	 */
+	private static List<String> referenceLines(String str, int width){
+		List<String> lines = new ArrayList<>();
+		final int[] start = new int[1];
+		final int[] end = new int[1];
+		final int[] length = new int[1];
+		final int[] tab = new int[1];
+		while (PrintStringUtil.getLine(str, str.length(), width, start, end, length, tab, "")) {
+			lines.add(str.substring(start[0], start[0] + length[0]));
+			start[0] = end[0];
+		}
+		return lines;
+	}
+
+	private static List<String> breakerLines(LineBreaker lineBreaker, CharSequence text){
+		List<String> lines = new ArrayList<>();
+		while (lineBreaker.next()) {
+			lines.add(text.subSequence(lineBreaker.getLineStart(), lineBreaker.getLineEnd()).toString());
+		}
+		return lines;
+	}
+
+	@Test
+	public void testMatchesGetLine(){
+		Random random = new Random(31);
+		LineBreaker lineBreaker = new LineBreaker();
+		for(int i = 0 ; i < 2000; i++){
+			StringBuilder sb = new StringBuilder();
+			final int length = random.nextInt(80);
+			for(int c = 0 ; c < length; c++){
+				sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+			}
+			final String text = sb.toString();
+			final int[] breakPositions = PrintStringUtil.getBreakPositions(text);
+			for(int width = 1 ; width < 50; width++){
+				final List<String> expected = referenceLines(text, width);
+				assertEquals(expected, breakerLines(lineBreaker.reset(text, width), text), "Width " + width + " of \"" + text + "\"");
+				assertEquals(expected, breakerLines(lineBreaker.reset(text, 0, text.length(), width, breakPositions), text),
+						"Width " + width + " of \"" + text + "\" with break positions");
+			}
+		}
+	}
+
+	@Test
+	public void testRange(){
+		final String text = "xx this is a very long line yy";
+		final String range = text.substring(3, text.length() - 3);
+		LineBreaker lineBreaker = new LineBreaker();
+		assertEquals(referenceLines(range, 6), breakerLines(lineBreaker.reset(text, 3, text.length() - 3, 6, null), text));
+		assertEquals(referenceLines(range, 6),
+				breakerLines(lineBreaker.reset(text, 3, text.length() - 3, 6, PrintStringUtil.getBreakPositions(text)), text));
+	}
+
+	@Test
+	public void testWideChars(){
+		// Every char takes two columns, the combining mark none
+		final String text = "\u5546\u54C1 \u4EF7\u683C\u5F88\u597D e\u0301e\u0301e\u0301";
+		LineBreaker lineBreaker = new LineBreaker();
+		final List<String> expected = Arrays.asList("\u5546\u54C1", "\u4EF7\u683C", "\u5F88\u597D", "e\u0301e\u0301e\u0301");
+		assertEquals(expected, breakerLines(lineBreaker.reset(text, 5), text));
+		assertEquals(expected, breakerLines(lineBreaker.reset(text, 0, text.length(), 5, PrintStringUtil.getBreakPositions(text)), text));
+		// A char wider than the line is put on a line of its own
+		assertEquals(Arrays.asList("\u5546", "\u54C1"), breakerLines(lineBreaker.reset("\u5546\u54C1", 1), "\u5546\u54C1"));
+	}
+
+	@Test
+	public void testInvalidWidth(){
+		assertThrows(IllegalArgumentException.class, () -> new LineBreaker().reset("text", 0));
+	}
+}
@@ -258,4 +258,48 @@ public class PrintStringUtilTest {
 		assertEquals(expected, value);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void insertWideChars() throws Exception {
+		final char F = DisplayWidth.FILLER;
+		char[] line = PrintStringUtil.getLineBuffer(8);
+		PrintStringUtil.insertLeftAligned(line, 1, "\u5546\u54C1x", 8);
+		assertEquals(" \u5546" + F + "\u54C1" + F + "x  ", new String(line));
+
+		line = PrintStringUtil.getLineBuffer(8);
+		PrintStringUtil.insertRightAligned(line, 7, "a\u5546\u54C1", 8);
+		assertEquals("   a\u5546" + F + "\u54C1" + F, new String(line));
+
+		// A wide char is not split when the value is cut
+		line = PrintStringUtil.getLineBuffer(8);
+		PrintStringUtil.insertLeftAligned(line, 0, "\u5546\u54C1", 3);
+		assertEquals("\u5546" + F + "      ", new String(line));
+
+		line = PrintStringUtil.getLineBuffer(8);
+		PrintStringUtil.insertCenterAligned(line, 4, "\u5546\u54C1", 4);
+		assertEquals("  \u5546" + F + "\u54C1" + F + "  ", new String(line));
+
+		// Nor at the end of the line, nor by text written over half of it
+		line = PrintStringUtil.getLineBuffer(4);
+		PrintStringUtil.insertLeftAligned(line, 3, "\u5546", 4);
+		assertEquals("    ", new String(line));
+		PrintStringUtil.insertLeftAligned(line, 0, "\u5546\u54C1", 4);
+		PrintStringUtil.insertLeftAligned(line, 1, "x", 4);
+		assertEquals(" x\u54C1" + F, new String(line));
+	}
+
+	@Test
+	public void insertCombiningAndSurrogates() throws Exception {
+		char[] line = PrintStringUtil.getLineBuffer(4);
+		PrintStringUtil.insertRightAligned(line, 3, "cafe\u0301", 4);
+		assertEquals("caf\u00E9", new String(line));
+
+		line = PrintStringUtil.getLineBuffer(4);
+		PrintStringUtil.insertLeftAligned(line, 0, "\uD83D\uDE00ab", 3);
+		assertEquals("\uD83D\uDE00a ", new String(line));
+
+		assertEquals(4, DisplayWidth.of("\u5546\u54C1", 0, 2));
+		assertEquals(3, DisplayWidth.of("e\u0301\uFF21", 0, 3));
+		assertTrue(DisplayWidth.isNarrow("\u00E9t\u00E9", 0, 3));
+	}
+
+}
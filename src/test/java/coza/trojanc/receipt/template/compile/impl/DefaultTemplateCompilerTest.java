@@ -0,0 +1,298 @@
+package coza.trojanc.receipt.template.compile.impl;
+
+import coza.trojanc.receipt.TestUtils;
+import coza.trojanc.receipt.context.ContextMap;
+import coza.trojanc.receipt.context.impl.DefaultContextMap;
+import coza.trojanc.receipt.printer.SimplePlainTextPrinterService;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.builder.PrintTemplateBuilder;
+import coza.trojanc.receipt.template.compile.CompiledConditional;
+import coza.trojanc.receipt.template.compile.CompiledFragment;
+import coza.trojanc.receipt.template.compile.FragmentRegistry;
+import coza.trojanc.receipt.template.compile.OutputSizeEstimator;
+import coza.trojanc.receipt.template.fields.Conditional;
+import coza.trojanc.receipt.template.fields.RepeatBlock;
+import coza.trojanc.receipt.template.loader.impl.JsonTemplateDefinitionLoader;
+import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import coza.trojanc.receipt.template.process.impl.DefaultTemplateProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static coza.trojanc.receipt.TestUtils.CTX_TRADER_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link DefaultTemplateCompiler}
+ * @author Charl Thiem
+ */
+public class DefaultTemplateCompilerTest {
+
+	private static PrintTemplate header(){
+		return new PrintTemplateBuilder().name("header")
+				.line()
+				.dynamicText(CTX_TRADER_NAME).align(Align.CENTER)
+				.include("footer")
+				.build();
+	}
+
+	private static PrintTemplate footer(){
+		return new PrintTemplateBuilder().name("footer")
+				.fillLine('=')
+				.line()
+				.text("Thank you").align(Align.CENTER)
+				.build();
+	}
+
+	private static FragmentRegistry registry(){
+		FragmentRegistry registry = new FragmentRegistry();
+		registry.register(header());
+		registry.register(footer());
+		return registry;
+	}
+
+	@Test
+	public void testIncludeMatchesInlinedLines(){
+		PrintTemplate template = new PrintTemplateBuilder().name("included")
+				.include("header")
+				.line()
+				.text("Body")
+				.include("footer")
+				.build();
+		PrintTemplate inlined = new PrintTemplateBuilder().name("inlined")
+				.line()
+				.dynamicText(CTX_TRADER_NAME).align(Align.CENTER)
+				.fillLine('=')
+				.line()
+				.text("Thank you").align(Align.CENTER)
+				.line()
+				.text("Body")
+				.fillLine('=')
+				.line()
+				.text("Thank you").align(Align.CENTER)
+				.build();
+
+		PrintTemplate compiled = new DefaultTemplateCompiler(registry()).compile(template);
+		assertEquals(
+				SimplePlainTextPrinterService.createReceipt(30, inlined, TestUtils.createResolvedVariables()),
+				SimplePlainTextPrinterService.createReceipt(30, compiled, TestUtils.createResolvedVariables()));
+	}
+
+	@Test
+	public void testStaticFragmentIsShared(){
+		DefaultTemplateCompiler compiler = new DefaultTemplateCompiler(registry());
+		PrintTemplate first = compiler.compile(new PrintTemplateBuilder().name("first").include("footer").build());
+		PrintTemplate second = compiler.compile(new PrintTemplateBuilder().name("second").line().text("x").include("footer").build());
+
+		CompiledFragment firstFooter = (CompiledFragment)first.getLines().get(0);
+		CompiledFragment secondFooter = (CompiledFragment)second.getLines().get(1);
+		assertSame(firstFooter, secondFooter);
+		assertTrue(firstFooter.isStatic());
+
+		ProcessedTemplate processedFirst = new DefaultTemplateProcessor().process(first);
+		ProcessedTemplate processedSecond = new DefaultTemplateProcessor().process(second);
+		assertSame(processedFirst.getItems().get(0), processedSecond.getItems().get(1));
+	}
+
+	@Test
+	public void testDynamicFragmentIsNotStatic(){
+		PrintTemplate compiled = new DefaultTemplateCompiler(registry()).compile(new PrintTemplateBuilder().include("header").build());
+		assertFalse(((CompiledFragment)compiled.getLines().get(0)).isStatic());
+	}
+
+	@Test
+	public void testRecursiveInclude(){
+		FragmentRegistry registry = new FragmentRegistry();
+		registry.register(new PrintTemplateBuilder().name("a").include("b").build());
+		registry.register(new PrintTemplateBuilder().name("b").include("a").build());
+		assertThrows(IllegalArgumentException.class, () ->
+				new DefaultTemplateCompiler(registry).compile(new PrintTemplateBuilder().include("a").build()));
+	}
+
+	@Test
+	public void testUnknownFragment(){
+		assertThrows(IllegalArgumentException.class, () ->
+				new DefaultTemplateCompiler().compile(new PrintTemplateBuilder().include("missing").build()));
+	}
+
+	@Test
+	public void testUncompiledInclude(){
+		assertThrows(IllegalArgumentException.class, () ->
+				new DefaultTemplateProcessor().process(new PrintTemplateBuilder().include("footer").build()));
+	}
+
+	@Test
+	public void testLoadInclude() throws IOException {
+		JsonTemplateDefinitionLoader loader = new JsonTemplateDefinitionLoader();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		loader.write(new PrintTemplateBuilder().name("json").include("footer").build(), out);
+		PrintTemplate loaded = loader.load(out.toString());
+		PrintTemplate compiled = new DefaultTemplateCompiler(registry()).compile(loaded);
+		assertEquals("footer", ((CompiledFragment)compiled.getLines().get(0)).getName());
+	}
+
+	private static PrintTemplate conditionalTemplate(){
+		return new PrintTemplateBuilder().name("conditional")
+				.when("loyaltyEnabled")
+					.line().text("Loyalty")
+				.end()
+				.whenExpression("paymentType == 'CARD'")
+					.line().text("Card")
+				.otherwise()
+					.line().text("Cash")
+				.end()
+				.whenExpression("printTips && tip != null")
+					.line().dynamicText("tip")
+				.end()
+				.build();
+	}
+
+	private static String print(PrintTemplate template, ContextMap context){
+		return SimplePlainTextPrinterService.createReceipt(10, template, context);
+	}
+
+	@Test
+	public void testStaticConditionsAreFolded(){
+		Map<String, Object> configuration = new HashMap<>();
+		configuration.put("loyaltyEnabled", false);
+		configuration.put("paymentType", "CARD");
+		configuration.put("printTips", true);
+		PrintTemplate compiled = new DefaultTemplateCompiler(new FragmentRegistry(), configuration).compile(conditionalTemplate());
+
+		// Loyalty folded away, card folded to its line, tip depends on the context
+		assertEquals(2, compiled.getLines().size());
+		assertTrue(compiled.getLines().get(1) instanceof CompiledConditional);
+
+		ContextMap context = new DefaultContextMap();
+		assertEquals("Card      \n", print(compiled, context));
+		context.add("tip", "5.00");
+		assertEquals("Card      \n5.00      \n", print(compiled, context));
+	}
+
+	@Test
+	public void testDynamicConditions(){
+		PrintTemplate compiled = new DefaultTemplateCompiler().compile(conditionalTemplate());
+		assertEquals(3, compiled.getLines().size());
+
+		ContextMap context = new DefaultContextMap();
+		context.add("paymentType", "CASH");
+		assertEquals("Cash      \n", print(compiled, context));
+
+		context.add("loyaltyEnabled", "true");
+		context.add("paymentType", "CARD");
+		context.add("printTips", "true");
+		context.add("tip", "1.00");
+		assertEquals("Loyalty   \nCard      \n1.00      \n", print(compiled, context));
+	}
+
+	@Test
+	public void testFragmentsCompiledPerConfiguration(){
+		FragmentRegistry registry = new FragmentRegistry();
+		registry.register("conditional", conditionalTemplate());
+		PrintTemplate template = new PrintTemplateBuilder().name("including").include("conditional").build();
+		Map<String, Object> card = new HashMap<>();
+		card.put("paymentType", "CARD");
+		Map<String, Object> cash = new HashMap<>();
+		cash.put("paymentType", "CASH");
+
+		ContextMap context = new DefaultContextMap();
+		assertEquals("Card      \n", print(new DefaultTemplateCompiler(registry, card).compile(template), context));
+		assertEquals("Cash      \n", print(new DefaultTemplateCompiler(registry, cash).compile(template), context));
+		assertSame(registry.getCompiled("conditional", card), new DefaultTemplateCompiler(registry, card).compile(template).getLines().get(0));
+	}
+
+	@Test
+	public void testExpressionOnIteration(){
+		PrintTemplate template = new PrintTemplateBuilder().name("repeat")
+				.repeat("items")
+					.line().dynamicText(".name")
+				.end()
+				.build();
+		Conditional bulk = new Conditional();
+		bulk.setExpression("$.qty > 1");
+		bulk.getLines().addAll(new PrintTemplateBuilder().line().text("bulk").build().getLines());
+		((RepeatBlock)template.getLines().get(0)).getLines().add(bulk);
+
+		DefaultContextMap context = new DefaultContextMap();
+		context.add("items[].$$length", "2");
+		context.add("items[0].name", "Ribs");
+		context.add("items[0].qty", "3");
+		context.add("items[1].name", "Beer");
+		context.add("items[1].qty", "1");
+		assertEquals("Ribs      \nbulk      \nBeer      \n", print(new DefaultTemplateCompiler().compile(template), context));
+	}
+
+	@Test
+	public void testLoadConditional() throws IOException {
+		JsonTemplateDefinitionLoader loader = new JsonTemplateDefinitionLoader();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		loader.write(conditionalTemplate(), out);
+		PrintTemplate compiled = new DefaultTemplateCompiler().compile(loader.load(out.toString()));
+
+		ContextMap context = new DefaultContextMap();
+		context.add("paymentType", "CARD");
+		assertEquals("Card      \n", print(compiled, context));
+	}
+
+	@Test
+	public void testDynamicCodeIsNotStatic(){
+		FragmentRegistry registry = new FragmentRegistry();
+		registry.register(new PrintTemplateBuilder().name("static").qrCode("https://r.example").build());
+		registry.register(new PrintTemplateBuilder().name("dynamic").dynamicQrCode("url").build());
+		PrintTemplate compiled = new DefaultTemplateCompiler(registry).compile(
+				new PrintTemplateBuilder().include("static").include("dynamic").build());
+		assertTrue(((CompiledFragment)compiled.getLines().get(0)).isStatic());
+		assertFalse(((CompiledFragment)compiled.getLines().get(1)).isStatic());
+	}
+
+	@Test
+	public void testEstimateLines(){
+		final PrintTemplate template = new DefaultTemplateCompiler().compile(TestUtils.createTemplate());
+		final ContextMap context = TestUtils.createResolvedVariables();
+		final String receipt = SimplePlainTextPrinterService.createReceipt(42, template, context);
+		final int lines = receipt.length() - receipt.replace("\n", "").length();
+		assertEquals(lines, OutputSizeEstimator.estimateLines(template, context));
+
+		// Every element of a repeated array adds the lines of the block
+		DefaultContextMap twice = new DefaultContextMap(0);
+		twice.add(TestUtils.CTX_SOLD_ITEMS_LENGTH, "4");
+		DefaultContextMap none = new DefaultContextMap(0);
+		assertTrue(OutputSizeEstimator.estimateLines(template, twice) > OutputSizeEstimator.estimateLines(template, none));
+		assertThrows(IllegalArgumentException.class, () -> OutputSizeEstimator.estimateLines(header(), context));
+	}
+
+	@Test
+	public void testLateCompileNotCached(){
+		PrintTemplate old = footer();
+		FragmentRegistry other = new FragmentRegistry();
+		other.register(old);
+		CompiledFragment stale = (CompiledFragment)new DefaultTemplateCompiler(other)
+				.compile(new PrintTemplateBuilder().include("footer").build()).getLines().get(0);
+		FragmentRegistry registry = new FragmentRegistry();
+		registry.register(old);
+
+		// A compile of the old definition finishing after the fragment was replaced
+		registry.register(new PrintTemplateBuilder().name("footer").line().text("New").build());
+		assertSame(stale, registry.putCompiled(stale, old, new HashMap<>()));
+		assertNull(registry.getCompiled("footer", new HashMap<>()));
+		assertEquals("New       \n", print(new DefaultTemplateCompiler(registry).compile(
+				new PrintTemplateBuilder().include("footer").build()), new DefaultContextMap(0)));
+	}
+
+	@Test
+	public void testEstimateStaticFragmentFeeds(){
+		FragmentRegistry registry = new FragmentRegistry();
+		registry.register(new PrintTemplateBuilder().name("gap").feed(2).build());
+		final PrintTemplate template = new DefaultTemplateCompiler(registry).compile(
+				new PrintTemplateBuilder().feed().include("gap").build());
+		assertTrue(((CompiledFragment)template.getLines().get(1)).isStatic());
+		final ContextMap context = new DefaultContextMap(0);
+		final String receipt = print(template, context);
+		assertEquals(15, receipt.length() - receipt.replace("\n", "").length());
+		assertEquals(15, OutputSizeEstimator.estimateLines(template, context));
+	}
+}
@@ -0,0 +1,85 @@
+package coza.trojanc.receipt.template.process.impl;
+
+import coza.trojanc.receipt.context.impl.DefaultContextMap;
+import coza.trojanc.receipt.format.impl.PlainTextFormatBuilder;
+import coza.trojanc.receipt.printer.PrinterService;
+import coza.trojanc.receipt.shared.Align;
+import coza.trojanc.receipt.template.PrintTemplate;
+import coza.trojanc.receipt.template.builder.PrintTemplateBuilder;
+import coza.trojanc.receipt.template.process.ProcessedTemplate;
+import coza.trojanc.receipt.template.process.TemplateProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link DefaultTemplateProcessor}
+ * @author Charl Thiem
+ */
+public class DefaultTemplateProcessorTest {
+
+	private static PrintTemplate orderTemplate(){
+		return new PrintTemplateBuilder().name("order")
+				.line()
+					.text("Table").align(Align.LEFT)
+					.dynamicText("table").align(Align.RIGHT)
+				.repeat("items")
+					.line()
+						.dynamicText(".name").align(Align.LEFT)
+				.end()
+				.fillLine('-')
+				.build();
+	}
+
+	private static DefaultContextMap order(String... items){
+		DefaultContextMap context = new DefaultContextMap();
+		context.add("table", "7");
+		context.add("items[].$$length", String.valueOf(items.length / 2));
+		for(int i = 0; i < items.length / 2; i++){
+			context.add("items[" + i + "].name", items[2 * i]);
+			context.add("items[" + i + "].station", items[2 * i + 1]);
+		}
+		return context;
+	}
+
+	private static String print(ProcessedTemplate ticket){
+		PlainTextFormatBuilder builder = new PlainTextFormatBuilder(10);
+		new PrinterService().print(ticket, builder);
+		return (String) builder.getFormat();
+	}
+
+	@Test
+	public void testRoute(){
+		DefaultContextMap context = order("Steak", "grill", "Beer", "bar", "Bread", null, "Ribs", "grill");
+		Map<String, ProcessedTemplate> tickets = new DefaultTemplateProcessor().route(orderTemplate(), context, ".station");
+
+		assertEquals(Arrays.asList("grill", "bar"), new ArrayList<>(tickets.keySet()));
+		assertEquals("Table    7\nSteak     \nBread     \nRibs      \n----------\n", print(tickets.get("grill")));
+		assertEquals("Table    7\nBeer      \nBread     \n----------\n", print(tickets.get("bar")));
+		// Items outside the routed iterations are processed once
+		assertSame(tickets.get("grill").getItems().get(0), tickets.get("bar").getItems().get(0));
+	}
+
+	@Test
+	public void testRouteMatchesProcess(){
+		DefaultContextMap context = order("Steak", "grill", "Ribs", "grill");
+		DefaultTemplateProcessor processor = new DefaultTemplateProcessor();
+		Map<String, ProcessedTemplate> tickets = processor.route(orderTemplate(), context, ".station");
+		assertEquals(1, tickets.size());
+		assertEquals(print(processor.process(orderTemplate(), context)), print(tickets.get("grill")));
+	}
+
+	@Test
+	public void testRouteWithoutStations(){
+		DefaultContextMap context = order("Bread", "", "Water", null);
+		DefaultTemplateProcessor processor = new DefaultTemplateProcessor();
+		Map<String, ProcessedTemplate> tickets = processor.route(orderTemplate(), context, ".station");
+		assertEquals(Collections.singleton(TemplateProcessor.DEFAULT_STATION), tickets.keySet());
+		assertEquals(print(processor.process(orderTemplate(), context)), print(tickets.get(TemplateProcessor.DEFAULT_STATION)));
+	}
+}